@@ -0,0 +1,57 @@
+package com.verizon.upgrade.cache;
+
+import com.verizon.upgrade.dto.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the read caches with the configured TTL and size
+ * ({@code cache.ttl-seconds}, {@code cache.max-entries}) and keeps them by name
+ * for the stats and eviction endpoints.
+ */
+@Component
+public class CacheRegistry {
+
+    @Value("${cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${cache.max-entries:500}")
+    private int maxEntries;
+
+    private final Map<String, ReadThroughCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    public <K, V> ReadThroughCache<K, V> create(String name) {
+        ReadThroughCache<K, V> cache = new ReadThroughCache<>(name, maxEntries, Duration.ofSeconds(ttlSeconds));
+        if (caches.putIfAbsent(name, cache) != null)
+            throw new IllegalStateException("Cache already exists: " + name);
+        return cache;
+    }
+
+    public List<CacheStats> stats() {
+        return caches.values().stream()
+                .map(ReadThroughCache::stats)
+                .sorted((a, b) -> a.getName().compareTo(b.getName()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Empties the named cache; false if there is no such cache.
+     */
+    public boolean invalidate(String name) {
+        ReadThroughCache<?, ?> cache = caches.get(name);
+        if (cache == null)
+            return false;
+        cache.invalidateAll();
+        return true;
+    }
+
+    public void invalidateAll() {
+        caches.values().forEach(ReadThroughCache::invalidateAll);
+    }
+}
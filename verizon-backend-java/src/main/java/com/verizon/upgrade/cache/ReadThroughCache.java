@@ -0,0 +1,156 @@
+package com.verizon.upgrade.cache;
+
+import com.verizon.upgrade.dto.CacheStats;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Small read-through cache: entries live for a fixed TTL, the least recently
+ * used entry is dropped once {@code maxEntries} is exceeded, and concurrent
+ * misses on the same key share one load.
+ * <p>
+ * An invalidation drops the entry even while it is loading; the load still
+ * answers the callers waiting on it but is not kept, so a read that raced a
+ * write can't put stale data back.
+ */
+public class ReadThroughCache<K, V> {
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    // Access-ordered for LRU eviction; guarded by this
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ReadThroughCache(String name, int maxEntries, Duration ttl) {
+        this.name = name;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * The cached value for the key, loading it with {@code loader} on a miss.
+     * A null result is returned but not cached.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Entry<V> entry;
+        boolean loading = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.isExpired(System.nanoTime())) {
+                entries.remove(key);
+                expirations.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry<>();
+                entries.put(key, entry);
+                evictOverflow();
+                loading = true;
+                misses.increment();
+            } else {
+                hits.increment();
+            }
+        }
+
+        if (loading) {
+            V value;
+            try {
+                value = loader.apply(key);
+            } catch (RuntimeException | Error e) {
+                loadFailures.increment();
+                remove(key, entry);
+                entry.value.completeExceptionally(e);
+                throw e;
+            }
+            if (value == null)
+                remove(key, entry);
+            entry.expiresAt = System.nanoTime() + ttlNanos;
+            entry.value.complete(value);
+            return value;
+        }
+
+        try {
+            return entry.value.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        if (entries.remove(key) != null)
+            invalidations.increment();
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations.add(entries.size());
+        entries.clear();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CacheStats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return CacheStats.builder()
+                .name(name)
+                .size(size)
+                .maxEntries(maxEntries)
+                .ttlSeconds(Duration.ofNanos(ttlNanos).getSeconds())
+                .hits(hitCount)
+                .misses(missCount)
+                .hitRatio(requests == 0 ? 0 : (double) hitCount / requests)
+                .loadFailures(loadFailures.sum())
+                .evictions(evictions.sum())
+                .expirations(expirations.sum())
+                .invalidations(invalidations.sum())
+                .build();
+    }
+
+    private synchronized void remove(K key, Entry<V> entry) {
+        // Only if it is still this load's entry, not one added after an invalidation
+        entries.remove(key, entry);
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static class Entry<V> {
+        final CompletableFuture<V> value = new CompletableFuture<>();
+        // Set just before the value completes; an entry still loading never expires
+        volatile long expiresAt;
+
+        boolean isExpired(long now) {
+            return value.isDone() && now - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.verizon.upgrade.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * The inventory and audit tables used IDENTITY ids before moving to pooled
+ * sequences (needed for JDBC insert batching). In a database created before
+ * that, the new sequences start at 1 while the tables already hold rows, so
+ * each sequence is moved past its table's highest id on startup.
+ * <p>
+ * This runs as the last step of building Hibernate's session factory, after
+ * the schema update and before the entity manager factory is handed to any
+ * bean. Nothing can allocate an id from a sequence before it is moved, and
+ * no pooled optimizer holds a block taken from the old value.
+ */
+@Component
+@Slf4j
+public class IdSequenceAlignment implements HibernatePropertiesCustomizer, SessionFactoryObserver {
+
+    // Must match allocationSize on the entities' @SequenceGenerator
+    private static final int ALLOCATION_SIZE = 50;
+
+    private static final String[][] SEQUENCES = {
+            { "applications_seq", "applications" },
+            { "environments_seq", "environments" },
+            { "servers_seq", "servers" },
+            { "components_seq", "components" },
+            { "audit_logs_seq", "audit_logs" },
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.SESSION_FACTORY_OBSERVER, this);
+    }
+
+    @Override
+    public void sessionFactoryCreated(SessionFactory factory) {
+        align();
+    }
+
+    void align() {
+        for (String[] entry : SEQUENCES) {
+            String sequence = entry[0];
+            String table = entry[1];
+            Long next = jdbcTemplate.queryForObject("select next value for " + sequence, Long.class);
+            Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from " + table, Long.class);
+            // The pooled optimizer hands out (next - ALLOCATION_SIZE, next]
+            if (next != null && maxId != null && maxId > 0 && next - ALLOCATION_SIZE < maxId) {
+                long restart = maxId + ALLOCATION_SIZE;
+                jdbcTemplate.execute("alter sequence " + sequence + " restart with " + restart);
+                log.info("Moved {} to {} past existing ids in {}", sequence, restart, table);
+            }
+        }
+    }
+}
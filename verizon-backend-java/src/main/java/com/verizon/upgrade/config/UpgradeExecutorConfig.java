@@ -0,0 +1,28 @@
+package com.verizon.upgrade.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread pool for the database work around upgrade runs: loading targets,
+ * recording state changes and outcomes. Playbook processes don't hold one of
+ * these threads while they run.
+ */
+@Configuration
+public class UpgradeExecutorConfig {
+
+    @Bean(name = "upgradeExecutor")
+    public ThreadPoolTaskExecutor upgradeExecutor(
+            @Value("${upgrade.max-concurrency:10}") int maxConcurrency,
+            @Value("${upgrade.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrency);
+        executor.setMaxPoolSize(maxConcurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("upgrade-");
+        executor.initialize();
+        return executor;
+    }
+}
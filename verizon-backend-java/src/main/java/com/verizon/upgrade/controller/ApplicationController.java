@@ -1,10 +1,13 @@
 package com.verizon.upgrade.controller;
 
+import com.verizon.upgrade.dto.InventoryChanges;
 import com.verizon.upgrade.model.Application;
 import com.verizon.upgrade.service.DataService;
+import com.verizon.upgrade.service.InventoryRevisions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -17,25 +20,52 @@ public class ApplicationController {
     @Autowired
     private DataService dataService;
 
+    @Autowired
+    private InventoryRevisions revisions;
+
+    // GETs carry the inventory revision as their ETag; an If-None-Match that
+    // still matches gets a 304 before anything is loaded or serialized.
+
     @GetMapping
-    public List<Application> getAllApplications() {
-        return dataService.getAllApplications();
+    public ResponseEntity<List<Application>> getAllApplications(WebRequest request) {
+        String etag = revisions.etag();
+        if (request.checkNotModified(etag)) {
+            return null; // 304, headers already set
+        }
+        return ResponseEntity.ok().eTag(etag).body(dataService.getAllApplications());
+    }
+
+    /**
+     * Applications added, changed or deleted after inventory revision
+     * {@code since} (the {@code revision} of the previous response).
+     */
+    @GetMapping("/changes")
+    public InventoryChanges getChanges(@RequestParam long since) {
+        return dataService.getChangesSince(since);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Application> getApplication(@PathVariable Long id) {
+    public ResponseEntity<Application> getApplication(@PathVariable Long id, WebRequest request) {
+        String etag = revisions.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
         Application app = dataService.getApplicationById(id);
         if (app != null) {
-            return ResponseEntity.ok(app);
+            return ResponseEntity.ok().eTag(etag).body(app);
         }
         return ResponseEntity.notFound().build();
     }
 
     @GetMapping("/vast/{vastId}")
-    public ResponseEntity<Application> getApplicationByVastId(@PathVariable String vastId) {
+    public ResponseEntity<Application> getApplicationByVastId(@PathVariable String vastId, WebRequest request) {
+        String etag = revisions.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
         Application app = dataService.getApplicationByVastId(vastId);
         if (app != null) {
-            return ResponseEntity.ok(app);
+            return ResponseEntity.ok().eTag(etag).body(app);
         }
         return ResponseEntity.notFound().build();
     }
@@ -1,32 +1,268 @@
 package com.verizon.upgrade.controller;
 
+import com.verizon.upgrade.dto.ArtifactUploadRequest;
+import com.verizon.upgrade.dto.ArtifactUploadStatus;
 import com.verizon.upgrade.model.SoftwareArtifact;
 import com.verizon.upgrade.service.ArtifactService;
+import com.verizon.upgrade.service.ArtifactUploadService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/artifacts")
 @CrossOrigin(origins = "*")
 public class ArtifactController {
+    // Tomcat's sendfile request attributes (as used by its DefaultServlet)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private ArtifactService artifactService;
 
+    @Autowired
+    private ArtifactUploadService uploadService;
+
     @PostMapping("/upload")
-    public SoftwareArtifact uploadArtifact(
+    public ResponseEntity<SoftwareArtifact> uploadArtifact(
             @RequestParam("name") String name,
             @RequestParam("version") String version,
             @RequestParam("type") String type,
             @RequestParam("file") MultipartFile file) throws Exception {
 
-        return artifactService.upload(name, version, type, file);
+        try {
+            return ResponseEntity.ok(artifactService.upload(name, version, type, file));
+        } catch (IllegalArgumentException e) {
+            // type/version/filename escaping the repository directory
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping
     public List<SoftwareArtifact> getArtifacts() {
         return artifactService.getAll();
     }
+
+    /**
+     * Starts a chunked upload for large binaries: PUT each chunk's raw bytes to
+     * {@code /uploads/{uploadId}/chunks/{index}}, then POST
+     * {@code /uploads/{uploadId}/complete}. After a failure, GET the upload
+     * for the chunks still missing and send only those.
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<ArtifactUploadStatus> startUpload(@RequestBody ArtifactUploadRequest request)
+            throws IOException {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(uploadService.start(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<ArtifactUploadStatus> getUpload(@PathVariable String uploadId) {
+        ArtifactUploadStatus status = uploadService.status(uploadId);
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+
+    @PutMapping(value = "/uploads/{uploadId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<ArtifactUploadStatus> putChunk(@PathVariable String uploadId, @PathVariable int index,
+            HttpServletRequest request) throws IOException {
+        try {
+            ArtifactUploadStatus status = uploadService.writeChunk(uploadId, index, request.getInputStream());
+            return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+        } catch (IllegalArgumentException e) {
+            // Index out of range or body not the chunk's length
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            // Same chunk being sent concurrently
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<SoftwareArtifact> completeUpload(@PathVariable String uploadId) throws IOException {
+        try {
+            SoftwareArtifact artifact = uploadService.complete(uploadId);
+            return artifact == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(artifact);
+        } catch (IllegalStateException e) {
+            // Chunks still missing; GET the upload for which
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (ArtifactUploadService.ChecksumMismatchException e) {
+            return ResponseEntity.unprocessableEntity().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId) throws IOException {
+        return uploadService.abort(uploadId) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Download for target hosts ({@code upgrade.repo-url}). Supports a single
+     * byte range for resuming, with the SHA-256 as ETag.
+     */
+    @GetMapping("/files/{type}/{version}/{filename:.+}")
+    public void downloadFile(@PathVariable String type, @PathVariable String version,
+            @PathVariable String filename, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        SoftwareArtifact artifact = artifactService.find(type, version, filename);
+        if (artifact == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        try (ArtifactService.BlobRead read = artifactService.startRead(artifact.getSha256())) {
+            Path file = artifactService.contentPath(artifact);
+            if (file == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            send(file, artifact.getSha256(), artifact.getFilename(), request, response);
+        }
+    }
+
+    @GetMapping("/blobs/{sha256}")
+    public void downloadBlob(@PathVariable String sha256, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        try (ArtifactService.BlobRead read = artifactService.startRead(sha256)) {
+            Path file = artifactService.blobPath(sha256);
+            if (file == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            send(file, sha256, sha256, request, response);
+        }
+    }
+
+    /**
+     * Writes the file, or the requested range of it, without going through a
+     * heap buffer: through Tomcat's sendfile where the connector supports it
+     * (the kernel copies file to socket and no request thread is held), else
+     * with {@link FileChannel#transferTo}.
+     */
+    private void send(Path file, String sha256, String filename, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        long length = Files.size(file);
+        String etag = sha256 == null ? null : "\"" + sha256 + "\"";
+
+        if (etag != null && etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length; // exclusive
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // A range only applies to the version the client already has part of
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + start + "-" + (end - 1) + "/" + length);
+            }
+        }
+
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(end - start);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(filename, StandardCharsets.UTF_8).build().toString());
+        if (etag != null)
+            response.setHeader(HttpHeaders.ETAG, etag);
+        if ("HEAD".equals(request.getMethod()) || start == end)
+            return;
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toRealPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, out);
+            }
+        }
+    }
+
+    /**
+     * {start, end} (end exclusive) for a single "bytes=" range, an empty array
+     * to send the whole file (ranges not understood or several at once, which
+     * a server may ignore), or null if the range is unsatisfiable.
+     */
+    static long[] parseRange(String header, long length) {
+        if (!header.regionMatches(true, 0, "bytes=", 0, "bytes=".length()) || header.indexOf(',') >= 0)
+            return new long[0];
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0)
+            return new long[0];
+        long first = digits(spec.substring(0, dash).trim());
+        long last = digits(spec.substring(dash + 1).trim());
+        if (first == -1) {
+            // Suffix range: the last N bytes
+            if (last < 0)
+                return new long[0];
+            if (last == 0 || length == 0)
+                return null;
+            return new long[] { Math.max(0, length - last), length };
+        }
+        if (first < 0 || last < -1 || (last >= 0 && last < first))
+            return new long[0];
+        if (first >= length)
+            return null;
+        long end = last == -1 || last >= length - 1 ? length : last + 1;
+        return new long[] { first, end };
+    }
+
+    /**
+     * The value of a string of ASCII digits, -1 if it is empty, or -2 if it
+     * is not a number (anything but digits, or too large for a long).
+     */
+    private static long digits(String s) {
+        if (s.isEmpty())
+            return -1;
+        long n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9' || n > (Long.MAX_VALUE - (c - '0')) / 10)
+                return -2;
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
 }
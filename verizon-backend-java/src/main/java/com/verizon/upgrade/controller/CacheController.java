@@ -0,0 +1,36 @@
+package com.verizon.upgrade.controller;
+
+import com.verizon.upgrade.cache.CacheRegistry;
+import com.verizon.upgrade.dto.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/cache")
+@CrossOrigin(origins = "*")
+public class CacheController {
+    @Autowired
+    private CacheRegistry cacheRegistry;
+
+    @GetMapping
+    public List<CacheStats> getStats() {
+        return cacheRegistry.stats();
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> evictAll() {
+        cacheRegistry.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/{name}")
+    public ResponseEntity<Void> evict(@PathVariable String name) {
+        if (cacheRegistry.invalidate(name)) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+}
@@ -1,21 +1,66 @@
 package com.verizon.upgrade.controller;
 
+import com.verizon.upgrade.dto.AuditLogSummary;
+import com.verizon.upgrade.dto.HistoryPage;
 import com.verizon.upgrade.model.AuditLog;
 import com.verizon.upgrade.service.AuditService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/history")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = HistoryController.NEXT_CURSOR)
 public class HistoryController {
+    static final String NEXT_CURSOR = "X-Next-Cursor";
+    private static final int MAX_PAGE_SIZE = 1000;
+
     @Autowired
     private AuditService auditService;
 
+    /**
+     * Newest entries first, without log output. Still a plain array; when there
+     * are more entries the {@code X-Next-Cursor} header holds the value to pass
+     * as {@code before} for the next page.
+     */
     @GetMapping
-    public List<AuditLog> getHistory(@RequestParam(required = false) String serverId) {
-        return auditService.getHistory(serverId);
+    public ResponseEntity<List<AuditLogSummary>> getHistory(@RequestParam(required = false) String serverId,
+            @RequestParam(required = false) String software,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "100") int size,
+            WebRequest request) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        String etag = auditService.etag();
+        if (request.checkNotModified(etag)) {
+            return null; // 304, headers already set
+        }
+        HistoryPage page = auditService.getHistory(serverId, software, status, from, to, before, size);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag);
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getEntries());
+    }
+
+    /**
+     * A single entry including its log output.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<AuditLog> getEntry(@PathVariable Long id) {
+        AuditLog entry = auditService.getEntry(id);
+        if (entry != null) {
+            return ResponseEntity.ok(entry);
+        }
+        return ResponseEntity.notFound().build();
     }
 }
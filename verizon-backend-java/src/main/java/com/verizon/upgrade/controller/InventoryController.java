@@ -0,0 +1,132 @@
+package com.verizon.upgrade.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.verizon.upgrade.dto.*;
+import com.verizon.upgrade.service.InventoryDriftService;
+import com.verizon.upgrade.service.InventoryImportService;
+import com.verizon.upgrade.service.InventoryRevisions;
+import com.verizon.upgrade.service.InventoryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.function.Supplier;
+
+/**
+ * Flat, paged inventory reads. {@code GET /api/applications} still returns the
+ * full nested tree.
+ */
+@RestController
+@RequestMapping("/api/inventory")
+@CrossOrigin(origins = "*")
+@Slf4j
+public class InventoryController {
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private InventoryImportService inventoryImportService;
+
+    @Autowired
+    private InventoryDriftService driftService;
+
+    @Autowired
+    private InventoryRevisions revisions;
+
+    /**
+     * Same shape as the dashboard's flattened inventory: applications,
+     * environments and servers (with their components), paged by application.
+     */
+    @GetMapping
+    public ResponseEntity<InventoryPage> getInventory(@RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size, WebRequest request) {
+        return conditional(request, () -> inventoryService.snapshot(page, size));
+    }
+
+    /**
+     * Bulk import from a CSV (header row with vastId, application, environment,
+     * hostname, ip, componentName, componentType, currentVersion, targetVersion,
+     * vulnerabilityCount, status, installPath) or a JSON array of the same
+     * fields. Only adds; servers already in the inventory are skipped. An
+     * import that fails part-way answers 500 with what it had committed.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<InventoryImportResult> importInventory(@RequestParam("file") MultipartFile file) {
+        log.info("Received inventory import: {} ({} bytes)", file.getOriginalFilename(), file.getSize());
+        try {
+            InventoryImportResult result = inventoryImportService.importFile(file);
+            return result.isIncomplete() ? ResponseEntity.internalServerError().body(result)
+                    : ResponseEntity.ok(result);
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            InventoryImportResult result = new InventoryImportResult();
+            result.getErrors().add(e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        } catch (Exception e) {
+            log.error("Inventory import of {} failed", file.getOriginalFilename(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/applications")
+    public ResponseEntity<Page<InventoryApplication>> getApplications(@RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size, WebRequest request) {
+        return conditional(request, () -> inventoryService.applications(page, size));
+    }
+
+    @GetMapping("/environments")
+    public ResponseEntity<Page<InventoryEnvironment>> getEnvironments(@RequestParam(required = false) Long appId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size, WebRequest request) {
+        return conditional(request, () -> inventoryService.environments(appId, page, size));
+    }
+
+    @GetMapping("/servers")
+    public ResponseEntity<Page<InventoryServer>> getServers(@RequestParam(required = false) Long appId,
+            @RequestParam(required = false) Long envId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String hostname,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size, WebRequest request) {
+        return conditional(request, () -> inventoryService.servers(appId, envId, status, hostname, page, size));
+    }
+
+    @GetMapping("/components")
+    public ResponseEntity<Page<InventoryComponent>> getComponents(@RequestParam(required = false) Long serverId,
+            @RequestParam(required = false) Long appId,
+            @RequestParam(required = false) Long envId,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size, WebRequest request) {
+        return conditional(request,
+                () -> inventoryService.components(serverId, appId, envId, name, status, page, size));
+    }
+
+    /**
+     * Server and component status counts per environment and component counts
+     * per software type and version, for the whole inventory or one
+     * application or environment: one row per group rather than per server.
+     */
+    @GetMapping("/drift")
+    public ResponseEntity<InventoryDrift> getDrift(@RequestParam(required = false) Long appId,
+            @RequestParam(required = false) Long envId, WebRequest request) {
+        return conditional(request, () -> driftService.drift(appId, envId));
+    }
+
+    /**
+     * Answers with the inventory revision as ETag, or 304 without running the
+     * query when the client's If-None-Match still matches.
+     */
+    private <T> ResponseEntity<T> conditional(WebRequest request, Supplier<T> body) {
+        String etag = revisions.etag();
+        if (request.checkNotModified(etag)) {
+            return null; // 304, headers already set
+        }
+        return ResponseEntity.ok().eTag(etag).body(body.get());
+    }
+}
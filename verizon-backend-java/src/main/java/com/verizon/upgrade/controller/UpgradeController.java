@@ -1,11 +1,38 @@
 package com.verizon.upgrade.controller;
 
-import com.verizon.upgrade.service.AutomationService;
+import com.verizon.upgrade.dto.UpgradeBatchRequest;
+import com.verizon.upgrade.dto.RunLogInfo;
+import com.verizon.upgrade.dto.StageRequest;
+import com.verizon.upgrade.dto.UpgradeBatchStatus;
+import com.verizon.upgrade.dto.UpgradeTarget;
+import com.verizon.upgrade.model.ArtifactStaging;
+import com.verizon.upgrade.model.SoftwareArtifact;
+import com.verizon.upgrade.model.UpgradeRun;
+import com.verizon.upgrade.model.UpgradeRunStatus;
+import com.verizon.upgrade.service.ArtifactService;
+import com.verizon.upgrade.service.ArtifactStagingService;
+import com.verizon.upgrade.service.PlaybookLogService;
+import com.verizon.upgrade.service.UpgradeOrchestrator;
+import com.verizon.upgrade.service.UpgradeRunService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 @RestController
 @RequestMapping("/api/upgrade")
@@ -13,7 +40,19 @@ import java.util.Map;
 public class UpgradeController {
 
     @Autowired
-    private AutomationService automationService;
+    private UpgradeOrchestrator upgradeOrchestrator;
+
+    @Autowired
+    private PlaybookLogService playbookLogService;
+
+    @Autowired
+    private UpgradeRunService upgradeRunService;
+
+    @Autowired
+    private ArtifactStagingService stagingService;
+
+    @Autowired
+    private ArtifactService artifactService;
 
     @PostMapping
     public ResponseEntity<String> triggerUpgrade(@RequestBody Map<String, String> request) {
@@ -22,10 +61,161 @@ public class UpgradeController {
         String targetVersion = request.get("targetVersion");
 
         if (serverId != null && componentName != null && targetVersion != null) {
-            automationService.runUpgrade(serverId, componentName, targetVersion);
+            upgradeOrchestrator.submit(
+                    Collections.singletonList(new UpgradeTarget(serverId, componentName, targetVersion)));
             return ResponseEntity.ok("Upgrade triggered successfully via Automation Engine.");
         }
 
         return ResponseEntity.badRequest().body("Invalid move: missing parameters");
     }
+
+    @PostMapping("/batch")
+    public ResponseEntity<UpgradeBatchStatus> triggerBatchUpgrade(@RequestBody UpgradeBatchRequest request) {
+        List<UpgradeTarget> targets = request.getTargets();
+
+        if (request.getEnvironmentId() != null) {
+            if (request.getComponentName() == null || request.getTargetVersion() == null)
+                return ResponseEntity.badRequest().build();
+            targets = upgradeOrchestrator.targetsForEnvironment(request.getEnvironmentId(),
+                    request.getComponentName(), request.getTargetVersion());
+            if (targets == null)
+                return ResponseEntity.notFound().build();
+        }
+
+        if (targets == null || targets.isEmpty())
+            return ResponseEntity.badRequest().build();
+        for (UpgradeTarget target : targets) {
+            if (target.getServerId() == null || target.getComponentName() == null
+                    || target.getTargetVersion() == null)
+                return ResponseEntity.badRequest().build();
+        }
+
+        boolean waves = "wave".equalsIgnoreCase(request.getMode());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(upgradeOrchestrator.submit(targets, waves));
+    }
+
+    @GetMapping("/batch/{batchId}")
+    public ResponseEntity<UpgradeBatchStatus> getBatch(@PathVariable String batchId) {
+        UpgradeBatchStatus status = upgradeOrchestrator.getBatch(batchId);
+        if (status != null) {
+            return ResponseEntity.ok(status);
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/runs")
+    public List<UpgradeRun> getRuns(@RequestParam(required = false) String batchId,
+            @RequestParam(required = false) UpgradeRunStatus status) {
+        return upgradeRunService.list(batchId, status);
+    }
+
+    @GetMapping("/runs/{id}")
+    public ResponseEntity<UpgradeRun> getRun(@PathVariable Long id) {
+        return upgradeRunService.get(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Cancels a queued run, or stops a running one's playbook (for a wave,
+     * that stops every run in the wave). Stopping is asynchronous: the run
+     * turns CANCELLED once the process has exited.
+     */
+    @PostMapping("/runs/{id}/cancel")
+    public ResponseEntity<UpgradeRun> cancelRun(@PathVariable Long id) {
+        Optional<UpgradeRun> run = upgradeRunService.cancel(id);
+        if (run.isEmpty())
+            return ResponseEntity.notFound().build();
+        if (run.get().getStatus().isTerminal() && run.get().getStatus() != UpgradeRunStatus.CANCELLED)
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(run.get());
+        return ResponseEntity.ok(run.get());
+    }
+
+    /**
+     * Copies an artifact to every server in an environment ahead of the
+     * maintenance window; upgrades then install from the staged copy. Track
+     * per-server progress with GET /api/upgrade/stage.
+     */
+    @PostMapping("/stage")
+    public ResponseEntity<List<ArtifactStaging>> stageArtifact(@RequestBody StageRequest request) {
+        if (request.getEnvironmentId() == null)
+            return ResponseEntity.badRequest().build();
+        SoftwareArtifact artifact = request.getArtifactId() != null ? artifactService.get(request.getArtifactId())
+                : artifactService.findLatest(request.getType(), request.getVersion());
+        if (artifact == null)
+            return ResponseEntity.notFound().build();
+
+        try {
+            List<ArtifactStaging> stagings = stagingService.stage(request.getEnvironmentId(), artifact,
+                    request.isForce());
+            if (stagings == null)
+                return ResponseEntity.notFound().build();
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(stagings);
+        } catch (IllegalStateException e) {
+            // Not checksummed yet, so there is nothing to verify the copies against
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @GetMapping("/stage")
+    public List<ArtifactStaging> getStagings(@RequestParam(required = false) Long environmentId,
+            @RequestParam(required = false) Long artifactId) {
+        return stagingService.list(environmentId, artifactId);
+    }
+
+    @GetMapping("/logs")
+    public List<RunLogInfo> getRunLogs() {
+        return playbookLogService.list();
+    }
+
+    /**
+     * Server-sent events: one "line" event per output line (starting with the
+     * buffered backlog) and an "end" event carrying the exit code.
+     */
+    @GetMapping(value = "/logs/{runId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> tailRunLog(@PathVariable String runId) {
+        SseEmitter emitter = playbookLogService.tail(runId);
+        if (emitter != null) {
+            return ResponseEntity.ok(emitter);
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Full log of a finished run, sent gzip-encoded when the client accepts it.
+     * For a run still in progress this returns the buffered lines so far, with
+     * {@code X-Log-Complete: false}.
+     */
+    @GetMapping("/logs/{runId}")
+    public ResponseEntity<StreamingResponseBody> getRunLog(@PathVariable String runId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        List<String> live = playbookLogService.liveLines(runId);
+        if (live != null) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .header("X-Log-Complete", "false")
+                    .body(out -> {
+                        for (String line : live) {
+                            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                        }
+                    });
+        }
+
+        Path file = playbookLogService.completedLogFile(runId);
+        if (file == null)
+            return ResponseEntity.notFound().build();
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.TEXT_PLAIN)
+                .header("X-Log-Complete", "true");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(out -> Files.copy(file, out));
+        }
+        return response.body(out -> {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                in.transferTo(out);
+            }
+        });
+    }
 }
@@ -1,14 +1,22 @@
 package com.verizon.upgrade.controller;
 
+import com.verizon.upgrade.dto.VulnerabilityCorrelation;
+import com.verizon.upgrade.dto.VulnerabilityJobStatus;
 import com.verizon.upgrade.dto.VulnerabilityResponse;
-import com.verizon.upgrade.service.VulnerabilityService;
+import com.verizon.upgrade.model.VulnerabilityFinding;
+import com.verizon.upgrade.service.VulnerabilityCorrelationService;
+import com.verizon.upgrade.service.VulnerabilityFindingService;
+import com.verizon.upgrade.service.VulnerabilityJobService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/vulnerabilities")
@@ -17,17 +25,77 @@ import java.util.List;
 public class VulnerabilityController {
 
     @Autowired
-    private VulnerabilityService vulnerabilityService;
+    private VulnerabilityFindingService findingService;
+
+    @Autowired
+    private VulnerabilityJobService jobService;
+
+    @Autowired
+    private VulnerabilityCorrelationService correlationService;
 
     @PostMapping("/upload")
     public ResponseEntity<List<VulnerabilityResponse>> uploadExcel(@RequestParam("file") MultipartFile file) {
         log.info("Received Excel upload request: {}", file.getOriginalFilename());
         try {
-            List<VulnerabilityResponse> results = vulnerabilityService.parseVulnerabilityExcel(file);
+            List<VulnerabilityResponse> results = findingService.ingest(file);
             return ResponseEntity.ok(results);
         } catch (Exception e) {
             log.error("Error parsing Excel file", e);
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    @PostMapping("/jobs")
+    public ResponseEntity<VulnerabilityJobStatus> submitJob(@RequestParam("file") MultipartFile file) {
+        log.info("Received Excel upload job request: {}", file.getOriginalFilename());
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobService.submit(file));
+        } catch (RejectedExecutionException e) {
+            log.warn("Vulnerability job queue is full, rejecting {}", file.getOriginalFilename());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            log.error("Error queueing Excel file", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<VulnerabilityJobStatus> getJob(@PathVariable String jobId) {
+        VulnerabilityJobStatus status = jobService.getStatus(jobId);
+        if (status != null) {
+            return ResponseEntity.ok(status);
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/jobs/{jobId}/results")
+    public ResponseEntity<Page<VulnerabilityResponse>> getJobResults(@PathVariable String jobId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size) {
+        Page<VulnerabilityResponse> results = jobService.getResults(jobId, page, size);
+        if (results != null) {
+            return ResponseEntity.ok(results);
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/findings")
+    public Page<VulnerabilityFinding> getFindings(@RequestParam(required = false) String hostname,
+            @RequestParam(required = false) String software,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Long scanId,
+            @RequestParam(defaultValue = "false") boolean includeResolved,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size) {
+        return findingService.search(hostname, software, status, scanId, includeResolved, page, size);
+    }
+
+    @PostMapping("/correlate")
+    public ResponseEntity<VulnerabilityCorrelation> correlate(@RequestParam(required = false) Long scanId) {
+        VulnerabilityCorrelation result = correlationService.correlate(scanId);
+        if (result != null) {
+            return ResponseEntity.ok(result);
+        }
+        return ResponseEntity.notFound().build();
+    }
 }
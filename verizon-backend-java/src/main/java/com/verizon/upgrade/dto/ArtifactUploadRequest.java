@@ -0,0 +1,23 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Starts a chunked upload. {@code size} is the total in bytes; {@code chunkSize}
+ * is optional (the server default is used otherwise). If {@code sha256} is
+ * given the completed file must match it.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArtifactUploadRequest {
+    private String name;
+    private String version;
+    private String type;
+    private String filename;
+    private Long size;
+    private Integer chunkSize;
+    private String sha256;
+}
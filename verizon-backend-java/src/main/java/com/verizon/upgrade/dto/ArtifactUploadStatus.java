@@ -0,0 +1,30 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ArtifactUploadStatus {
+    private String uploadId;
+    private String name;
+    private String version;
+    private String type;
+    private String filename;
+    private long size;
+    private int chunkSize;
+    private int chunkCount;
+    private int receivedChunks;
+    private long receivedBytes;
+    private List<Integer> missingChunks; // what is left to PUT when resuming
+    private String sha256; // expected, if the client gave one
+    private LocalDateTime startedAt;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,29 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * History list row: an audit entry without its log output, which is served
+ * per entry by {@code GET /api/history/{id}}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AuditLogSummary {
+    private Long id;
+    private String serverId;
+    private String hostname;
+    private String softwareName;
+    private String fromVersion;
+    private String toVersion;
+    private String status;
+    private String triggeredBy;
+    private LocalDateTime timestamp;
+    private String runId;
+}
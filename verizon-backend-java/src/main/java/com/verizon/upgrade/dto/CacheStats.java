@@ -0,0 +1,24 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CacheStats {
+    private String name;
+    private int size;
+    private int maxEntries;
+    private long ttlSeconds;
+    private long hits;
+    private long misses;
+    private double hitRatio;
+    private long loadFailures;
+    private long evictions; // dropped to stay within maxEntries
+    private long expirations;
+    private long invalidations;
+}
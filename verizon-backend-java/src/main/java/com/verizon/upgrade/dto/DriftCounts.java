@@ -0,0 +1,21 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Servers or components by status; {@code total} also counts statuses other
+ * than the three below.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DriftCounts {
+    private long total;
+    private long upToDate;
+    private long outdated;
+    private long vulnerable;
+}
@@ -0,0 +1,20 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class EnvironmentDrift {
+    private Long appId;
+    private Long envId;
+    private String envName;
+    private DriftCounts servers;
+    private DriftCounts components;
+    private long vulnerabilities;
+    private long criticalVulnerabilities;
+}
@@ -0,0 +1,17 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class HistoryPage {
+    private List<AuditLogSummary> entries;
+    private Long nextCursor; // pass as "before" for the next page; null on the last page
+}
@@ -0,0 +1,26 @@
+package com.verizon.upgrade.dto;
+
+import com.verizon.upgrade.model.Application;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Applications changed after revision {@code since}. When {@code resync} is
+ * set the delta could not be worked out and {@code applications} holds all
+ * of them instead.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class InventoryChanges {
+    private long since;
+    private long revision; // pass as "since" on the next call
+    private boolean resync;
+    private List<Application> applications; // current state of each changed application
+    private List<Long> deletedApplicationIds;
+}
@@ -0,0 +1,22 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class InventoryComponent {
+    private Long id;
+    private Long serverId;
+    private String name;
+    private String type;
+    private String currentVersion;
+    private String vulnerabilityCount;
+    private String targetVersion;
+    private String status;
+    private String installPath;
+}
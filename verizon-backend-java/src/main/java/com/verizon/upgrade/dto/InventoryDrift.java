@@ -0,0 +1,23 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class InventoryDrift {
+    private Long appId;
+    private Long envId;
+    private DriftCounts servers;
+    private DriftCounts components;
+    private long vulnerabilities;
+    private long criticalVulnerabilities;
+    private List<EnvironmentDrift> environments;
+    private List<SoftwareDrift> software;
+}
@@ -0,0 +1,27 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class InventoryImportResult {
+    private int rowsRead;
+    private int rowsRejected;
+    private int applicationsCreated;
+    private int environmentsCreated;
+    private int serversCreated;
+    private int serversSkipped; // already in the inventory
+    private int componentsCreated;
+    private long durationMs;
+    private boolean incomplete; // stopped part-way; the counts are what was committed
+    @Builder.Default
+    private List<String> errors = new ArrayList<>(); // first few rejected rows, and why an incomplete import stopped
+}
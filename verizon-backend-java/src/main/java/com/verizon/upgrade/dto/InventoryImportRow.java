@@ -0,0 +1,30 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of an inventory import: a component on a server. A server without
+ * components is a row with the component columns left empty; the application
+ * and environment are created on first mention.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class InventoryImportRow {
+    private String vastId;
+    private String application;
+    private String environment; // Prod or Non-Prod
+    private String hostname;
+    private String ip;
+    private String componentName;
+    private String componentType;
+    private String currentVersion;
+    private String targetVersion;
+    private String vulnerabilityCount;
+    private String status;
+    private String installPath;
+}
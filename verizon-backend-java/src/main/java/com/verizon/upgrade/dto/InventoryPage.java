@@ -0,0 +1,25 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of applications with their environments and servers, flattened
+ * into separate lists the way the dashboard consumes them.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class InventoryPage {
+    private List<InventoryApplication> applications;
+    private List<InventoryEnvironment> environments;
+    private List<InventoryServer> servers;
+    private int page;
+    private int size;
+    private long totalApplications;
+}
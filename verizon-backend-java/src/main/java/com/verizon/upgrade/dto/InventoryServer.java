@@ -0,0 +1,31 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Server row. {@code components} is only filled in by the combined
+ * {@code GET /api/inventory} view; the paged server list leaves it null.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class InventoryServer {
+    private Long id;
+    private String hostname;
+    private String ip;
+    private Long appId;
+    private Long envId;
+    private String status;
+    private List<InventoryComponent> components;
+
+    // JPQL constructor expression
+    public InventoryServer(Long id, String hostname, String ip, Long appId, Long envId, String status) {
+        this(id, hostname, ip, appId, envId, status, null);
+    }
+}
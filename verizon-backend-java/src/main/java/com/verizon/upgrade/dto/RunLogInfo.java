@@ -0,0 +1,26 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class RunLogInfo {
+    private String runId;
+    private List<String> serverIds;
+    private List<String> hosts;
+    private String software;
+    private String targetVersion;
+    private long linesWritten;
+    private boolean running;
+    private Integer exitCode; // null while running
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
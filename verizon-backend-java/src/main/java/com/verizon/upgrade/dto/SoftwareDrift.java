@@ -0,0 +1,23 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Components of one software type at one version.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SoftwareDrift {
+    private String type;
+    private String version;
+    // Distinct versions of the type deployed above this one
+    private int versionsBehind;
+    private DriftCounts components;
+    private long vulnerabilities;
+    private long criticalVulnerabilities;
+}
@@ -0,0 +1,21 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Pre-stages an artifact on every server of an environment. The artifact is
+ * given by id, or by type and version (the latest upload). {@code force}
+ * stages again on servers that already have it.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StageRequest {
+    private Long environmentId;
+    private Long artifactId;
+    private String type;
+    private String version;
+    private boolean force;
+}
@@ -0,0 +1,24 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Either an explicit list of targets, or an environment plus the component and
+ * version to roll out to every server in it. {@code mode} is "host" (one
+ * playbook run per server, the default) or "wave" (one run per component and
+ * target version).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UpgradeBatchRequest {
+    private List<UpgradeTarget> targets;
+    private Long environmentId;
+    private String componentName;
+    private String targetVersion;
+    private String mode;
+}
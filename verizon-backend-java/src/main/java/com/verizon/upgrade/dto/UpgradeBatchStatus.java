@@ -0,0 +1,22 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UpgradeBatchStatus {
+    private String batchId;
+    private int total;
+    private int pending;
+    private int succeeded;
+    private int failed;
+    private int cancelled;
+    private LocalDateTime submittedAt;
+}
@@ -0,0 +1,14 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UpgradeTarget {
+    private String serverId;
+    private String componentName;
+    private String targetVersion;
+}
@@ -0,0 +1,27 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class VulnerabilityCorrelation {
+    private Long scanId;
+    private long findings;
+    private long matchedByHostname;
+    private long matchedByIp;
+    private long matchedToComponent; // the finding's directory (or software type) identified the component
+    private long unmatched;
+    private int serversScanned; // inventory servers with at least one finding
+    private int componentsUpdated;
+    private int serversUpdated;
+    private int findingLinksUpdated;
+    private List<String> unmatchedHosts; // sample
+    private long durationMs;
+}
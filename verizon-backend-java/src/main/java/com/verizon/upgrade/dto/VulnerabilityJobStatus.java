@@ -0,0 +1,24 @@
+package com.verizon.upgrade.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class VulnerabilityJobStatus {
+    private String jobId;
+    private String filename;
+    private String status; // QUEUED, RUNNING, COMPLETED, FAILED
+    private long rowsScanned;
+    private long matchesFound;
+    private String error;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+}
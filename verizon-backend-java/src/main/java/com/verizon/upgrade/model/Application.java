@@ -14,7 +14,8 @@ import java.util.List;
 @Table(name = "applications")
 public class Application {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "applications_seq")
+    @SequenceGenerator(name = "applications_seq", sequenceName = "applications_seq", allocationSize = 50)
     private Long id;
     private String name;
     private String vastId;
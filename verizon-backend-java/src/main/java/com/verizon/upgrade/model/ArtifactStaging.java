@@ -0,0 +1,50 @@
+package com.verizon.upgrade.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A software artifact copied to one server ahead of its upgrade. Once STAGED,
+ * upgrades of that server to the artifact's version install from
+ * {@code stagedPath} instead of downloading during the maintenance window.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "artifact_stagings", indexes = {
+        @Index(name = "idx_staging_server_sha", columnList = "serverId, sha256"),
+        @Index(name = "idx_staging_env_artifact", columnList = "environmentId, artifactId")
+})
+public class ArtifactStaging {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long artifactId;
+    // Content that was staged (and verified); a later upload under the same name doesn't match it
+    @Column(length = 64)
+    private String sha256;
+    private Long environmentId;
+    private String serverId;
+    private String hostname;
+    private String stagedPath;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private StagingStatus status;
+
+    // Playbook run whose log is at /api/upgrade/logs/{logRunId}
+    private String logRunId;
+
+    @Column(length = 1000)
+    private String message;
+
+    private LocalDateTime requestedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
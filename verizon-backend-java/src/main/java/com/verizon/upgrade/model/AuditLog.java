@@ -11,10 +11,17 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "audit_logs")
+// Descending, with id as tiebreak, so newest-first history pages read in index order
+@Table(name = "audit_logs", indexes = {
+        @Index(name = "idx_audit_server_time", columnList = "serverId, timestamp DESC, id DESC"),
+        @Index(name = "idx_audit_time", columnList = "timestamp DESC, id DESC")
+})
 public class AuditLog {
+    public static final int LOG_OUTPUT_LENGTH = 2000;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_logs_seq")
+    @SequenceGenerator(name = "audit_logs_seq", sequenceName = "audit_logs_seq", allocationSize = 50)
     private Long id;
 
     private String serverId;
@@ -22,10 +29,13 @@ public class AuditLog {
     private String softwareName;
     private String fromVersion;
     private String toVersion;
-    private String status; // SUCCESS, FAILED, IN_PROGRESS
+    private String status; // SUCCESS, FAILED, TIMED_OUT, CANCELLED, IN_PROGRESS
     private String triggeredBy; // User ID or name
     private LocalDateTime timestamp;
 
-    @Column(length = 2000)
+    // Playbook run whose full log is at /api/upgrade/logs/{runId}
+    private String runId;
+
+    @Column(length = AuditLog.LOG_OUTPUT_LENGTH)
     private String logOutput;
 }
@@ -11,10 +11,13 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "environments")
+@Table(name = "environments", indexes = {
+        @Index(name = "idx_environment_app", columnList = "appId")
+})
 public class Environment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "environments_seq")
+    @SequenceGenerator(name = "environments_seq", sequenceName = "environments_seq", allocationSize = 50)
     private Long id;
     private String name;
     private Long appId;
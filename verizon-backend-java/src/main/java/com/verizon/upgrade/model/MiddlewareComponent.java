@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
+import java.util.Locale;
 
 @Data
 @AllArgsConstructor
@@ -13,13 +14,15 @@ import javax.persistence.*;
 @Table(name = "components")
 public class MiddlewareComponent {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "components_seq")
+    @SequenceGenerator(name = "components_seq", sequenceName = "components_seq", allocationSize = 50)
     private Long id;
 
     private String name;
     private String type;
     private String currentVersion;
     private String vulnerabilityCount; // e.g. "3 Critical" or "0"
+    private Integer criticalCount; // the critical ones in vulnerabilityCount, kept in step with it
     private String targetVersion;
     private String status;
     private String installPath;
@@ -30,8 +33,32 @@ public class MiddlewareComponent {
         this.type = type;
         this.currentVersion = currentVersion;
         this.vulnerabilityCount = vulnerabilityCount;
+        this.criticalCount = criticalCountOf(vulnerabilityCount);
         this.targetVersion = targetVersion;
         this.status = status;
         this.installPath = installPath;
     }
+
+    public void setVulnerabilityCount(String vulnerabilityCount) {
+        this.vulnerabilityCount = vulnerabilityCount;
+        this.criticalCount = criticalCountOf(vulnerabilityCount);
+    }
+
+    /**
+     * The number of critical vulnerabilities a {@code vulnerabilityCount}
+     * names: the number before "Critical" ("3 Critical", "5 (3 Critical)"),
+     * 0 if it names none, or null if there is no value.
+     */
+    public static Integer criticalCountOf(String vulnerabilityCount) {
+        if (vulnerabilityCount == null || vulnerabilityCount.isBlank())
+            return null;
+        int at = vulnerabilityCount.toLowerCase(Locale.ROOT).indexOf("critical");
+        int end = at;
+        while (end > 0 && vulnerabilityCount.charAt(end - 1) == ' ')
+            end--;
+        int start = end;
+        while (start > 0 && Character.isDigit(vulnerabilityCount.charAt(start - 1)) && end - start < 9)
+            start--;
+        return at < 0 || start == end ? 0 : Integer.parseInt(vulnerabilityCount.substring(start, end));
+    }
 }
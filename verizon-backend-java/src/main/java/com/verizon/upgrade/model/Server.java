@@ -11,10 +11,15 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "servers")
+@Table(name = "servers", indexes = {
+        @Index(name = "idx_server_app", columnList = "appId"),
+        @Index(name = "idx_server_env", columnList = "envId"),
+        @Index(name = "idx_server_hostname", columnList = "hostname")
+})
 public class Server {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "servers_seq")
+    @SequenceGenerator(name = "servers_seq", sequenceName = "servers_seq", allocationSize = 50)
     private Long id;
     private String hostname;
     private String ip;
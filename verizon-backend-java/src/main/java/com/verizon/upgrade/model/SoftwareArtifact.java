@@ -11,7 +11,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "software_artifacts")
+@Table(name = "software_artifacts", indexes = {
+        @Index(name = "idx_artifact_sha256", columnList = "sha256")
+})
 public class SoftwareArtifact {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,5 +25,8 @@ public class SoftwareArtifact {
     private String filename;
     private String artifactoryPath;
     private long sizeBytes;
+    // Hex SHA-256 of the content; also its key in the ArtifactStore
+    @Column(length = 64)
+    private String sha256;
     private LocalDateTime uploadedAt;
 }
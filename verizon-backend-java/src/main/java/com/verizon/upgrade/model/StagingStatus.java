@@ -0,0 +1,12 @@
+package com.verizon.upgrade.model;
+
+/**
+ * Lifecycle of an {@link ArtifactStaging}: PENDING, RUNNING, then STAGED (on
+ * the host with its SHA-256 verified) or FAILED.
+ */
+public enum StagingStatus {
+    PENDING,
+    RUNNING,
+    STAGED,
+    FAILED
+}
@@ -0,0 +1,48 @@
+package com.verizon.upgrade.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One component upgrade on one server, tracked from submission to completion.
+ * Runs that went out in the same wave share a {@code logRunId}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "upgrade_runs", indexes = {
+        @Index(name = "idx_run_status", columnList = "status"),
+        @Index(name = "idx_run_batch", columnList = "batchId"),
+        @Index(name = "idx_run_server", columnList = "serverId")
+})
+public class UpgradeRun {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String batchId;
+    private String serverId;
+    private String hostname;
+    private String softwareName;
+    private String targetVersion;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private UpgradeRunStatus status;
+
+    // Playbook run whose log is at /api/upgrade/logs/{logRunId}
+    private String logRunId;
+    private Integer exitCode;
+
+    @Column(length = 1000)
+    private String message;
+
+    private LocalDateTime queuedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
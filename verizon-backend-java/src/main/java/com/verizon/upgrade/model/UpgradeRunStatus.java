@@ -0,0 +1,18 @@
+package com.verizon.upgrade.model;
+
+/**
+ * Lifecycle of an {@link UpgradeRun}: QUEUED, then RUNNING, then exactly one
+ * of the terminal states. A queued run can also be cancelled before it starts.
+ */
+public enum UpgradeRunStatus {
+    QUEUED,
+    RUNNING,
+    SUCCESS,
+    FAILED,
+    TIMED_OUT,
+    CANCELLED;
+
+    public boolean isTerminal() {
+        return this != QUEUED && this != RUNNING;
+    }
+}
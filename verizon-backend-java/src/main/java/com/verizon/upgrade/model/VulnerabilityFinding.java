@@ -0,0 +1,52 @@
+package com.verizon.upgrade.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "vulnerability_findings", indexes = {
+        @Index(name = "idx_finding_hostname", columnList = "hostname"),
+        @Index(name = "idx_finding_software", columnList = "software"),
+        @Index(name = "idx_finding_status", columnList = "status"),
+        @Index(name = "idx_finding_last_scan", columnList = "lastScanId"),
+        @Index(name = "idx_finding_content_hash", columnList = "contentHash", unique = true),
+        @Index(name = "idx_finding_component", columnList = "componentId")
+})
+public class VulnerabilityFinding {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String hostname;
+    private String ipAddress;
+    private String software;
+    private String directory;
+
+    @Column(length = 1000)
+    private String vulnerabilities;
+
+    private String currentVersion;
+    private String targetVersion;
+    private String nearestVersion;
+    private String status; // Ready to Patch, Not Prepared
+    private String action;
+
+    @Column(length = 64)
+    private String contentHash; // SHA-256 of the scan-derived fields
+
+    // Inventory rows the finding was correlated with; null if it matched none
+    private Long serverId;
+    private Long componentId;
+
+    private Long firstScanId;
+    private Long lastScanId;
+    private LocalDateTime firstSeenAt;
+    private LocalDateTime lastSeenAt;
+}
@@ -0,0 +1,28 @@
+package com.verizon.upgrade.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "vulnerability_scans", indexes = @Index(name = "idx_scan_file_hash", columnList = "fileHash"))
+public class VulnerabilityScan {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String filename;
+
+    @Column(length = 64)
+    private String fileHash; // SHA-256 of the uploaded file
+
+    private int findingCount;
+    private int newFindingCount;
+    private LocalDateTime ingestedAt;
+}
@@ -0,0 +1,151 @@
+package com.verizon.upgrade.parser;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads per-host outcomes from the "PLAY RECAP" section of ansible-playbook
+ * output, e.g.
+ *
+ * <pre>
+ * web01 : ok=5 changed=2 unreachable=0 failed=0 skipped=1 rescued=0 ignored=0
+ * </pre>
+ */
+public final class AnsibleRecap {
+
+    private static final String RECAP_HEADER = "PLAY RECAP";
+    private static final Pattern RECAP_LINE = Pattern.compile(
+            "^(\\S+)\\s*:\\s*ok=(\\d+)\\s+changed=(\\d+)\\s+unreachable=(\\d+)\\s+failed=(\\d+)");
+
+    @Getter
+    @AllArgsConstructor
+    public static final class HostResult {
+        private final int ok;
+        private final int changed;
+        private final int unreachable;
+        private final int failed;
+
+        public boolean isSuccess() {
+            return unreachable == 0 && failed == 0;
+        }
+    }
+
+    private AnsibleRecap() {
+    }
+
+    /**
+     * Fed the playbook output a line at a time while it is still running.
+     * Collects the recap result of every host (hosts missing from
+     * {@link #getResults()} never reached the end of the play) and, for the
+     * given hosts, the task lines tagged with {@code [host]} plus the recap
+     * line, for per-host audit entries out of a multi-host run. Only roughly
+     * the last {@code MAX_HOST_CHARS} of each host's lines are kept.
+     */
+    public static final class Collector implements Consumer<String> {
+        private static final int MAX_HOST_CHARS = 64 * 1024;
+
+        private final Map<String, HostResult> results = new HashMap<>();
+        private final Map<String, StringBuilder> hostLines = new HashMap<>();
+        private final Map<String, String> lastTaskShown = new HashMap<>();
+        private String currentTask;
+        private boolean inRecap;
+
+        public Collector(Collection<String> hosts) {
+            for (String host : hosts) {
+                hostLines.put(host, new StringBuilder());
+            }
+        }
+
+        @Override
+        public void accept(String line) {
+            if (line.startsWith(RECAP_HEADER)) {
+                // A later play's recap supersedes an earlier one
+                inRecap = true;
+                results.clear();
+                currentTask = line;
+                return;
+            }
+            if (line.startsWith("TASK [") || line.startsWith("PLAY ")) {
+                inRecap = false;
+                currentTask = line;
+                return;
+            }
+            if (inRecap) {
+                Matcher m = RECAP_LINE.matcher(line.trim());
+                if (m.find()) {
+                    results.put(m.group(1), new HostResult(Integer.parseInt(m.group(2)),
+                            Integer.parseInt(m.group(3)), Integer.parseInt(m.group(4)),
+                            Integer.parseInt(m.group(5))));
+                }
+            }
+            if (hostLines.isEmpty())
+                return;
+            // One lookup per line, however many hosts the run has
+            String host = bracketedHost(line);
+            StringBuilder sb = host == null ? null : hostLines.get(host);
+            if (sb == null) {
+                host = leadingToken(line);
+                sb = host == null ? null : hostLines.get(host);
+            }
+            if (sb == null)
+                return;
+            // Identity check: two tasks may share a name
+            if (currentTask != null && currentTask != lastTaskShown.get(host)) {
+                append(sb, currentTask);
+                lastTaskShown.put(host, currentTask);
+            }
+            append(sb, line);
+        }
+
+        public Map<String, HostResult> getResults() {
+            return results;
+        }
+
+        public String linesForHost(String host) {
+            StringBuilder sb = hostLines.get(host);
+            return sb == null ? "" : sb.toString();
+        }
+
+        /**
+         * The host of a task result line such as {@code ok: [web01]} or
+         * {@code fatal: [web01 -> localhost]: FAILED!}: the first bracketed
+         * token, without its delegation target.
+         */
+        private static String bracketedHost(String line) {
+            int open = line.indexOf('[');
+            if (open < 0)
+                return null;
+            int close = line.indexOf(']', open + 1);
+            if (close < 0)
+                return null;
+            int arrow = line.indexOf(" -> ", open + 1);
+            return line.substring(open + 1, arrow >= 0 && arrow < close ? arrow : close);
+        }
+
+        /**
+         * The host of a recap line such as {@code web01 : ok=5}: everything up
+         * to the first space or colon.
+         */
+        private static String leadingToken(String line) {
+            int end = 0;
+            while (end < line.length() && line.charAt(end) != ' ' && line.charAt(end) != ':')
+                end++;
+            return end == 0 ? null : line.substring(0, end);
+        }
+
+        private void append(StringBuilder sb, String line) {
+            sb.append(line).append('\n');
+            if (sb.length() > MAX_HOST_CHARS) {
+                int cut = sb.indexOf("\n", sb.length() - MAX_HOST_CHARS / 2);
+                sb.delete(0, cut + 1);
+            }
+        }
+    }
+}
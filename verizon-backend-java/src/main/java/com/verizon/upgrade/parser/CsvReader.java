@@ -0,0 +1,113 @@
+package com.verizon.upgrade.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 reader: comma-separated, fields optionally wrapped in
+ * double quotes, {@code ""} for a literal quote, and line breaks allowed inside
+ * quoted fields. Reads one record at a time.
+ */
+public class CsvReader implements Closeable {
+
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos;
+    private int len;
+    private int lineNumber = 1;
+
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * The next record's fields, or null at end of input. Blank lines come
+     * back as a single empty field.
+     */
+    public String[] next() throws IOException {
+        int c = read();
+        if (c < 0)
+            return null;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean fieldStart = true;
+
+        while (true) {
+            if (quoted) {
+                if (c < 0)
+                    throw new IOException("Unterminated quoted field at line " + lineNumber);
+                if (c == '"') {
+                    int p = peek();
+                    if (p == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n')
+                        lineNumber++;
+                    field.append((char) c);
+                }
+            } else if (c < 0 || c == '\n') {
+                if (c == '\n')
+                    lineNumber++;
+                fields.add(field.toString());
+                return fields.toArray(new String[0]);
+            } else if (c == '\r') {
+                // dropped; '\n' ends the record
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                fieldStart = true;
+                c = read();
+                continue;
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+            fieldStart = false;
+            c = read();
+        }
+    }
+
+    /**
+     * Line the reader is on, for error messages.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int read() throws IOException {
+        if (pos == len && !fill())
+            return -1;
+        return buf[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos == len && !fill())
+            return -1;
+        return buf[pos];
+    }
+
+    private boolean fill() throws IOException {
+        len = in.read(buf, 0, buf.length);
+        pos = 0;
+        if (len <= 0) {
+            len = 0;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+package com.verizon.upgrade.parser;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Pulls the install path, reported version and fix version out of a Nessus
+ * "Plugin Output" cell in a single left-to-right walk, without regular
+ * expressions. Matching is ASCII case-insensitive and mirrors the patterns
+ * the parser used before:
+ * <ul>
+ * <li>path: {@code Path\s*:\s*(\S+)}</li>
+ * <li>version: {@code (Reported Version|Installed version)\s*:\s*(\S+)}</li>
+ * <li>fix: {@code (Fixed version|Should be)[^0-9]*([0-9]+(?:\.[0-9a-z]+)+)}</li>
+ * </ul>
+ * The first match of each wins; the walk stops once all three are found.
+ */
+public final class PluginOutputExtractor {
+
+    private static final String PATH = "path";
+    private static final String REPORTED_VERSION = "reported version";
+    private static final String INSTALLED_VERSION = "installed version";
+    private static final String FIXED_VERSION = "fixed version";
+    private static final String SHOULD_BE = "should be";
+
+    public static final Result EMPTY = new Result("", "", "");
+
+    @Getter
+    @AllArgsConstructor
+    public static final class Result {
+        private final String path;
+        private final String reportedVersion;
+        private final String fixVersion;
+    }
+
+    private PluginOutputExtractor() {
+    }
+
+    public static Result extract(String output) {
+        if (output == null || output.isEmpty())
+            return EMPTY;
+
+        String path = null, version = null, fix = null;
+        int len = output.length();
+
+        for (int i = 0; i < len && (path == null || version == null || fix == null); i++) {
+            switch (output.charAt(i) | 0x20) {
+                case 'p':
+                    if (path == null && matchesAt(output, i, PATH))
+                        path = valueAfterColon(output, i + PATH.length());
+                    break;
+                case 'r':
+                    if (version == null && matchesAt(output, i, REPORTED_VERSION))
+                        version = valueAfterColon(output, i + REPORTED_VERSION.length());
+                    break;
+                case 'i':
+                    if (version == null && matchesAt(output, i, INSTALLED_VERSION))
+                        version = valueAfterColon(output, i + INSTALLED_VERSION.length());
+                    break;
+                case 'f':
+                    if (fix == null && matchesAt(output, i, FIXED_VERSION))
+                        fix = dottedNumberAfter(output, i + FIXED_VERSION.length());
+                    break;
+                case 's':
+                    if (fix == null && matchesAt(output, i, SHOULD_BE))
+                        fix = dottedNumberAfter(output, i + SHOULD_BE.length());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return new Result(path == null ? "" : path, version == null ? "" : version, fix == null ? "" : fix);
+    }
+
+    /**
+     * ASCII case-insensitive match of a lower-case keyword at {@code i}, like
+     * the old {@code CASE_INSENSITIVE} patterns. {@code String.regionMatches}
+     * also folds non-ASCII letters, so "ſhould be" would match there.
+     */
+    private static boolean matchesAt(String s, int i, String keyword) {
+        int n = keyword.length();
+        if (i + n > s.length())
+            return false;
+        for (int k = 0; k < n; k++) {
+            char c = s.charAt(i + k);
+            if (c >= 'A' && c <= 'Z')
+                c += 'a' - 'A';
+            if (c != keyword.charAt(k))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * {@code \s*:\s*(\S+)} starting at {@code from}, or null if it doesn't match.
+     */
+    private static String valueAfterColon(String s, int from) {
+        int len = s.length();
+        int i = skipWhitespace(s, from);
+        if (i >= len || s.charAt(i) != ':')
+            return null;
+        i = skipWhitespace(s, i + 1);
+        int start = i;
+        while (i < len && !isWhitespace(s.charAt(i)))
+            i++;
+        return i > start ? s.substring(start, i) : null;
+    }
+
+    /**
+     * {@code [^0-9]*([0-9]+(?:\.[0-9a-z]+)+)} starting at {@code from}, or null if
+     * it doesn't match.
+     */
+    private static String dottedNumberAfter(String s, int from) {
+        int len = s.length();
+        int i = from;
+        while (i < len && !isDigit(s.charAt(i)))
+            i++;
+        int start = i;
+        while (i < len && isDigit(s.charAt(i)))
+            i++;
+        if (i == start)
+            return null;
+
+        int end = -1;
+        while (i + 1 < len && s.charAt(i) == '.' && isAlphanumeric(s.charAt(i + 1))) {
+            i++;
+            while (i < len && isAlphanumeric(s.charAt(i)))
+                i++;
+            end = i;
+        }
+        return end == -1 ? null : s.substring(start, end);
+    }
+
+    private static int skipWhitespace(String s, int i) {
+        while (i < s.length() && isWhitespace(s.charAt(i)))
+            i++;
+        return i;
+    }
+
+    // Same set as regex \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
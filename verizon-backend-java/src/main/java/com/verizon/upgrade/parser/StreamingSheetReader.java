@@ -0,0 +1,107 @@
+package com.verizon.upgrade.parser;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Reads the first sheet of an .xlsx file with the POI SAX (event) API.
+ * Only the current row is held in memory, and the shared strings table is
+ * kept in a temp file ({@link TempFileSharedStrings}), so the heap cost does
+ * not grow with the size of the sheet.
+ */
+public class StreamingSheetReader {
+
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * Called once per non-empty row, in sheet order.
+         *
+         * @param rowNum zero-based row index
+         * @param cells  trimmed cell values indexed by column; missing cells are
+         *               empty strings
+         */
+        void handleRow(int rowNum, String[] cells);
+    }
+
+    public void readFirstSheet(Path file, RowHandler handler)
+            throws IOException, OpenXML4JException, SAXException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ);
+                TempFileSharedStrings strings = new TempFileSharedStrings(pkg)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext())
+                return;
+
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings,
+                        new RowCollector(handler), new DataFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            } catch (ParserConfigurationException e) {
+                throw new SAXException("Unable to create XML reader", e);
+            }
+        }
+    }
+
+    /**
+     * Accumulates the cells of the current row and hands them off at row end.
+     */
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler handler;
+        private String[] cells = new String[64];
+        private int width;
+
+        RowCollector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            width = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (width == 0)
+                return;
+            String[] row = Arrays.copyOf(cells, width);
+            for (int i = 0; i < width; i++) {
+                if (row[i] == null)
+                    row[i] = "";
+            }
+            Arrays.fill(cells, 0, width, null);
+            handler.handleRow(rowNum, row);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (cellReference == null || formattedValue == null)
+                return;
+            int col = new CellReference(cellReference).getCol();
+            if (col >= cells.length)
+                cells = Arrays.copyOf(cells, Math.max(col + 1, cells.length * 2));
+            cells[col] = formattedValue.trim();
+            width = Math.max(width, col + 1);
+        }
+    }
+}
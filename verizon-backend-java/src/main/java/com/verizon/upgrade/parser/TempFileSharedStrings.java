@@ -0,0 +1,183 @@
+package com.verizon.upgrade.parser;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * The workbook's shared strings table, spilled to a temp file instead of the
+ * heap. POI's {@code ReadOnlySharedStringsTable} keeps every string in a
+ * list, and in scan exports nearly every plugin output cell is a distinct
+ * shared string, so it grows with the file.
+ * <p>
+ * The strings are written once, in order, to a data file (length-prefixed
+ * UTF-8) with their offsets in a second file; a lookup is two positional
+ * reads, served from the page cache. Only the string being read is on the
+ * heap. The files are deleted on {@link #close()}.
+ */
+class TempFileSharedStrings implements SharedStrings, Closeable {
+
+    private final Path dataFile;
+    private final Path offsetFile;
+    private final FileChannel data;
+    private final FileChannel offsets;
+    private final int count;
+    private final int uniqueCount;
+
+    TempFileSharedStrings(OPCPackage pkg) throws IOException, SAXException {
+        dataFile = Files.createTempFile("xlsx-strings-", ".tmp");
+        offsetFile = Files.createTempFile("xlsx-string-offsets-", ".tmp");
+        try {
+            Writer writer = new Writer();
+            try (DataOutputStream dataOut = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(dataFile), 1 << 16));
+                    DataOutputStream offsetOut = new DataOutputStream(
+                            new BufferedOutputStream(Files.newOutputStream(offsetFile), 1 << 16))) {
+                writer.dataOut = dataOut;
+                writer.offsetOut = offsetOut;
+                List<PackagePart> parts = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+                if (!parts.isEmpty()) {
+                    try (InputStream in = parts.get(0).getInputStream()) {
+                        XMLReader parser = XMLHelper.newXMLReader();
+                        parser.setContentHandler(writer);
+                        parser.parse(new InputSource(in));
+                    } catch (ParserConfigurationException e) {
+                        throw new SAXException("Unable to create XML reader", e);
+                    }
+                }
+            }
+            count = Math.max(writer.count, writer.written);
+            uniqueCount = writer.written;
+            data = FileChannel.open(dataFile, StandardOpenOption.READ);
+            offsets = FileChannel.open(offsetFile, StandardOpenOption.READ);
+        } catch (IOException | SAXException | RuntimeException e) {
+            deleteFiles();
+            throw e;
+        }
+    }
+
+    @Override
+    public RichTextString getItemAt(int idx) {
+        if (idx < 0 || idx >= uniqueCount)
+            throw new IllegalArgumentException("No shared string at index " + idx);
+        try {
+            ByteBuffer offset = ByteBuffer.allocate(Long.BYTES);
+            readFully(offsets, offset, (long) idx * Long.BYTES);
+            long position = offset.getLong(0);
+
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            readFully(data, length, position);
+            ByteBuffer bytes = ByteBuffer.allocate(length.getInt(0));
+            readFully(data, bytes, position + Integer.BYTES);
+            return new XSSFRichTextString(new String(bytes.array(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public int getUniqueCount() {
+        return uniqueCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            data.close();
+            offsets.close();
+        } finally {
+            deleteFiles();
+        }
+    }
+
+    private void deleteFiles() throws IOException {
+        Files.deleteIfExists(dataFile);
+        Files.deleteIfExists(offsetFile);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0)
+                throw new EOFException("Shared strings file is truncated");
+        }
+    }
+
+    /**
+     * Writes each {@code <si>} as it ends: the text of all its {@code <t>}
+     * elements (plain or rich-text runs) concatenated.
+     */
+    private static class Writer extends DefaultHandler {
+        DataOutputStream dataOut;
+        DataOutputStream offsetOut;
+        int count;
+        int written;
+        private long position;
+        private boolean inString;
+        private boolean inText;
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("sst".equals(localName)) {
+                String declared = attributes.getValue("count");
+                if (declared != null)
+                    count = Integer.parseInt(declared);
+            } else if ("si".equals(localName)) {
+                inString = true;
+                text.setLength(0);
+            } else if ("t".equals(localName) && inString) {
+                inText = true;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if ("t".equals(localName)) {
+                inText = false;
+            } else if ("si".equals(localName)) {
+                inString = false;
+                byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+                try {
+                    offsetOut.writeLong(position);
+                    dataOut.writeInt(bytes.length);
+                    dataOut.write(bytes);
+                } catch (IOException e) {
+                    throw new SAXException(e);
+                }
+                position += Integer.BYTES + bytes.length;
+                written++;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText)
+                text.append(ch, start, length);
+        }
+    }
+}
@@ -1,10 +1,32 @@
 package com.verizon.upgrade.repository;
 
+import com.verizon.upgrade.dto.InventoryApplication;
 import com.verizon.upgrade.model.Application;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface ApplicationRepository extends JpaRepository<Application, Long> {
     java.util.Optional<Application> findByVastId(String vastId);
+
+    // findById outer-joins the whole eager graph, which repeats environments and
+    // servers once per component row; a query loads the children by batched selects
+    @Query("select a from Application a where a.id = :id")
+    java.util.Optional<Application> findWithInventoryById(@Param("id") Long id);
+
+    @Query(value = "select new com.verizon.upgrade.dto.InventoryApplication(a.id, a.name, a.vastId)"
+            + " from Application a order by a.id",
+            countQuery = "select count(a) from Application a")
+    Page<InventoryApplication> findInventoryRows(Pageable pageable);
+
+    @Query("select new com.verizon.upgrade.dto.InventoryApplication(a.id, a.name, a.vastId)"
+            + " from Application a where a.vastId in :vastIds")
+    List<InventoryApplication> findInventoryRowsByVastIds(@Param("vastIds") Collection<String> vastIds);
 }
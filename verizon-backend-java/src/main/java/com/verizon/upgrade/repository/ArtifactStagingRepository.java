@@ -0,0 +1,39 @@
+package com.verizon.upgrade.repository;
+
+import com.verizon.upgrade.model.ArtifactStaging;
+import com.verizon.upgrade.model.StagingStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ArtifactStagingRepository extends JpaRepository<ArtifactStaging, Long> {
+
+    List<ArtifactStaging> findByEnvironmentIdAndArtifactIdOrderByIdAsc(Long environmentId, Long artifactId);
+
+    List<ArtifactStaging> findByEnvironmentIdOrderByIdAsc(Long environmentId);
+
+    List<ArtifactStaging> findByArtifactIdOrderByIdAsc(Long artifactId);
+
+    List<ArtifactStaging> findTop200ByOrderByIdDesc();
+
+    Optional<ArtifactStaging> findFirstByServerIdAndSha256AndStatusOrderByFinishedAtDesc(String serverId,
+            String sha256, StagingStatus status);
+
+    boolean existsBySha256AndStatusIn(String sha256, Collection<StagingStatus> statuses);
+
+    @Modifying
+    @Transactional
+    @Query("update ArtifactStaging s set s.status = com.verizon.upgrade.model.StagingStatus.FAILED,"
+            + " s.message = :message, s.finishedAt = :at where s.status in :from")
+    int failAll(@Param("from") Collection<StagingStatus> from, @Param("message") String message,
+            @Param("at") LocalDateTime at);
+}
@@ -2,11 +2,21 @@ package com.verizon.upgrade.repository;
 
 import com.verizon.upgrade.model.AuditLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.time.LocalDateTime;
 
 @Repository
 public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
-    List<AuditLog> findByServerIdOrderByTimestampDesc(String serverId);
+    @Query("select a.timestamp from AuditLog a where a.id = :id")
+    LocalDateTime findTimestampById(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("update AuditLog a set a.status = 'FAILED', a.logOutput = :message where a.status = 'IN_PROGRESS'")
+    int failInProgress(@Param("message") String message);
 }
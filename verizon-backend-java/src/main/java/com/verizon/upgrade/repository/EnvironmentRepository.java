@@ -1,9 +1,26 @@
 package com.verizon.upgrade.repository;
 
+import com.verizon.upgrade.dto.InventoryEnvironment;
 import com.verizon.upgrade.model.Environment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface EnvironmentRepository extends JpaRepository<Environment, Long> {
+
+    @Query(value = "select new com.verizon.upgrade.dto.InventoryEnvironment(e.id, e.name, e.appId)"
+            + " from Environment e where (:appId is null or e.appId = :appId) order by e.id",
+            countQuery = "select count(e) from Environment e where (:appId is null or e.appId = :appId)")
+    Page<InventoryEnvironment> findInventoryRows(@Param("appId") Long appId, Pageable pageable);
+
+    @Query("select new com.verizon.upgrade.dto.InventoryEnvironment(e.id, e.name, e.appId)"
+            + " from Environment e where e.appId in :appIds order by e.id")
+    List<InventoryEnvironment> findInventoryRowsByAppIds(@Param("appIds") Collection<Long> appIds);
 }
@@ -0,0 +1,59 @@
+package com.verizon.upgrade.repository;
+
+import com.verizon.upgrade.dto.InventoryComponent;
+import com.verizon.upgrade.model.MiddlewareComponent;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Components are owned by {@code Server.components}, so queries reach them
+ * through the server to get the server id.
+ */
+@Repository
+public interface MiddlewareComponentRepository extends JpaRepository<MiddlewareComponent, Long> {
+
+    String COMPONENT_ROW = "select new com.verizon.upgrade.dto.InventoryComponent(c.id, s.id, c.name, c.type,"
+            + " c.currentVersion, c.vulnerabilityCount, c.targetVersion, c.status, c.installPath)"
+            + " from Server s join s.components c";
+    String COMPONENT_FILTER = " where (:serverId is null or s.id = :serverId) and (:appId is null or s.appId = :appId)"
+            + " and (:envId is null or s.envId = :envId) and (:name is null or c.name = :name)"
+            + " and (:status is null or c.status = :status)";
+
+    @Query(value = COMPONENT_ROW + COMPONENT_FILTER + " order by c.id",
+            countQuery = "select count(c) from Server s join s.components c" + COMPONENT_FILTER)
+    Page<InventoryComponent> findInventoryRows(@Param("serverId") Long serverId, @Param("appId") Long appId,
+            @Param("envId") Long envId, @Param("name") String name, @Param("status") String status,
+            Pageable pageable);
+
+    @Query(COMPONENT_ROW + " where s.appId in :appIds order by c.id")
+    List<InventoryComponent> findInventoryRowsByAppIds(@Param("appIds") Collection<Long> appIds);
+
+    String VERSION_COUNTS = "select s.appId, s.envId, c.type, c.currentVersion, c.status, c.vulnerabilityCount,"
+            + " count(c), sum(c.criticalCount) from Server s join s.components c";
+    String VERSION_GROUPS = " group by s.appId, s.envId, c.type, c.currentVersion, c.status, c.vulnerabilityCount";
+
+    /**
+     * (appId, envId, type, currentVersion, status, vulnerabilityCount,
+     * component count, critical vulnerabilities or null) for each group. One
+     * query per filter, so each can use its own index and plan.
+     */
+    @Query(VERSION_COUNTS + VERSION_GROUPS)
+    List<Object[]> countByEnvironmentVersionAndStatus();
+
+    @Query(VERSION_COUNTS + " where s.appId = :appId" + VERSION_GROUPS)
+    List<Object[]> countByEnvironmentVersionAndStatusForApp(@Param("appId") Long appId);
+
+    @Query(VERSION_COUNTS + " where s.envId = :envId" + VERSION_GROUPS)
+    List<Object[]> countByEnvironmentVersionAndStatusForEnv(@Param("envId") Long envId);
+
+    @Query(VERSION_COUNTS + " where s.appId = :appId and s.envId = :envId" + VERSION_GROUPS)
+    List<Object[]> countByEnvironmentVersionAndStatusForAppAndEnv(@Param("appId") Long appId,
+            @Param("envId") Long envId);
+}
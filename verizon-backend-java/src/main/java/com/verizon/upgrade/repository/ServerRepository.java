@@ -1,9 +1,61 @@
 package com.verizon.upgrade.repository;
 
+import com.verizon.upgrade.dto.InventoryServer;
 import com.verizon.upgrade.model.Server;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface ServerRepository extends JpaRepository<Server, Long> {
+
+    String SERVER_ROW = "select new com.verizon.upgrade.dto.InventoryServer(s.id, s.hostname, s.ip, s.appId, s.envId,"
+            + " s.status) from Server s";
+    String SERVER_FILTER = " where (:appId is null or s.appId = :appId) and (:envId is null or s.envId = :envId)"
+            + " and (:status is null or s.status = :status) and (:hostname is null or s.hostname = :hostname)";
+
+    @Query(value = SERVER_ROW + SERVER_FILTER + " order by s.id",
+            countQuery = "select count(s) from Server s" + SERVER_FILTER)
+    Page<InventoryServer> findInventoryRows(@Param("appId") Long appId, @Param("envId") Long envId,
+            @Param("status") String status, @Param("hostname") String hostname, Pageable pageable);
+
+    @Query(SERVER_ROW + " where s.appId in :appIds order by s.id")
+    List<InventoryServer> findInventoryRowsByAppIds(@Param("appIds") Collection<Long> appIds);
+
+    /**
+     * (envId, lower-cased hostname) pairs.
+     */
+    @Query("select s.envId, lower(s.hostname) from Server s where s.envId in :envIds")
+    List<Object[]> findHostnamesByEnvIds(@Param("envIds") Collection<Long> envIds);
+
+    /**
+     * (id, trimmed lower-cased hostname) pairs.
+     */
+    @Query("select s.id, lower(trim(s.hostname)) from Server s where s.id in :ids")
+    List<Object[]> findHostnamesByIds(@Param("ids") Collection<Long> ids);
+
+    String STATUS_COUNTS = "select s.appId, s.envId, s.status, count(s) from Server s";
+    String STATUS_GROUPS = " group by s.appId, s.envId, s.status";
+
+    /**
+     * (appId, envId, status, server count) for each group. One query per
+     * filter, so each can use its own index and plan.
+     */
+    @Query(STATUS_COUNTS + STATUS_GROUPS)
+    List<Object[]> countByEnvironmentAndStatus();
+
+    @Query(STATUS_COUNTS + " where s.appId = :appId" + STATUS_GROUPS)
+    List<Object[]> countByEnvironmentAndStatusForApp(@Param("appId") Long appId);
+
+    @Query(STATUS_COUNTS + " where s.envId = :envId" + STATUS_GROUPS)
+    List<Object[]> countByEnvironmentAndStatusForEnv(@Param("envId") Long envId);
+
+    @Query(STATUS_COUNTS + " where s.appId = :appId and s.envId = :envId" + STATUS_GROUPS)
+    List<Object[]> countByEnvironmentAndStatusForAppAndEnv(@Param("appId") Long appId, @Param("envId") Long envId);
 }
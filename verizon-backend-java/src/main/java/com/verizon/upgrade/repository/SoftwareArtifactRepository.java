@@ -5,8 +5,20 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface SoftwareArtifactRepository extends JpaRepository<SoftwareArtifact, Long> {
     List<SoftwareArtifact> findByType(String type);
+
+    Optional<SoftwareArtifact> findFirstByTypeAndVersionAndFilename(String type, String version, String filename);
+
+    Optional<SoftwareArtifact> findFirstByTypeAndVersionAndSha256NotNullOrderByUploadedAtDesc(String type,
+            String version);
+
+    Optional<SoftwareArtifact> findFirstByTypeAndVersionOrderByUploadedAtDesc(String type, String version);
+
+    List<SoftwareArtifact> findBySha256IsNull();
+
+    boolean existsBySha256(String sha256);
 }
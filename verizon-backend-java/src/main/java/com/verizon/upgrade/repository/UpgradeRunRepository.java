@@ -0,0 +1,52 @@
+package com.verizon.upgrade.repository;
+
+import com.verizon.upgrade.model.UpgradeRun;
+import com.verizon.upgrade.model.UpgradeRunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * State changes are conditional updates on the current status, so a run that
+ * was cancelled while queued can't also be started, and a finished run can't be
+ * finished twice.
+ */
+@Repository
+public interface UpgradeRunRepository extends JpaRepository<UpgradeRun, Long> {
+
+    List<UpgradeRun> findByBatchIdOrderByIdAsc(String batchId);
+
+    List<UpgradeRun> findByStatusOrderByIdDesc(UpgradeRunStatus status);
+
+    List<UpgradeRun> findTop200ByOrderByIdDesc();
+
+    @Modifying
+    @Transactional
+    @Query("update UpgradeRun r set r.status = com.verizon.upgrade.model.UpgradeRunStatus.RUNNING,"
+            + " r.logRunId = :logRunId, r.hostname = :hostname, r.startedAt = :at"
+            + " where r.id = :id and r.status = com.verizon.upgrade.model.UpgradeRunStatus.QUEUED")
+    int markRunning(@Param("id") Long id, @Param("logRunId") String logRunId, @Param("hostname") String hostname,
+            @Param("at") LocalDateTime at);
+
+    @Modifying
+    @Transactional
+    @Query("update UpgradeRun r set r.status = :status, r.exitCode = :exitCode, r.message = :message,"
+            + " r.finishedAt = :at where r.id = :id and r.status in :from")
+    int finish(@Param("id") Long id, @Param("from") Collection<UpgradeRunStatus> from,
+            @Param("status") UpgradeRunStatus status, @Param("exitCode") Integer exitCode,
+            @Param("message") String message, @Param("at") LocalDateTime at);
+
+    @Modifying
+    @Transactional
+    @Query("update UpgradeRun r set r.status = com.verizon.upgrade.model.UpgradeRunStatus.FAILED,"
+            + " r.message = :message, r.finishedAt = :at where r.status in :from")
+    int failAll(@Param("from") Collection<UpgradeRunStatus> from, @Param("message") String message,
+            @Param("at") LocalDateTime at);
+}
@@ -0,0 +1,34 @@
+package com.verizon.upgrade.repository;
+
+import com.verizon.upgrade.model.VulnerabilityFinding;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+@Repository
+public interface VulnerabilityFindingRepository extends JpaRepository<VulnerabilityFinding, Long>,
+        JpaSpecificationExecutor<VulnerabilityFinding> {
+
+    @Query("select f.contentHash from VulnerabilityFinding f where f.contentHash in :hashes")
+    Set<String> findExistingHashes(@Param("hashes") Collection<String> hashes);
+
+    @Modifying
+    @Transactional
+    @Query("update VulnerabilityFinding f set f.lastScanId = :scanId, f.lastSeenAt = :seenAt,"
+            + " f.nearestVersion = :nearestVersion, f.status = :status, f.action = :action"
+            + " where f.contentHash in :hashes")
+    int markSeen(@Param("hashes") Collection<String> hashes, @Param("scanId") Long scanId,
+            @Param("seenAt") LocalDateTime seenAt, @Param("nearestVersion") String nearestVersion,
+            @Param("status") String status, @Param("action") String action);
+
+    List<VulnerabilityFinding> findByLastScanIdOrderByIdAsc(Long lastScanId);
+}
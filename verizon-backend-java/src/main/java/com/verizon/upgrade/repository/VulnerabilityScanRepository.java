@@ -0,0 +1,12 @@
+package com.verizon.upgrade.repository;
+
+import com.verizon.upgrade.model.VulnerabilityScan;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface VulnerabilityScanRepository extends JpaRepository<VulnerabilityScan, Long> {
+    Optional<VulnerabilityScan> findTopByOrderByIdDesc();
+}
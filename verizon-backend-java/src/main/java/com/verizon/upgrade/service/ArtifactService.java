@@ -1,61 +1,337 @@
 package com.verizon.upgrade.service;
 
+import com.verizon.upgrade.cache.CacheRegistry;
+import com.verizon.upgrade.cache.ReadThroughCache;
 import com.verizon.upgrade.model.SoftwareArtifact;
+import com.verizon.upgrade.model.StagingStatus;
+import com.verizon.upgrade.repository.ArtifactStagingRepository;
 import com.verizon.upgrade.repository.SoftwareArtifactRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
 public class ArtifactService {
+    private static final EnumSet<StagingStatus> STAGING_ACTIVE = EnumSet.of(StagingStatus.PENDING,
+            StagingStatus.RUNNING);
+    // Tomcat's sendfile opens the blob only after the download handler has returned
+    private static final long RELEASE_GRACE_MS = TimeUnit.MINUTES.toMillis(1);
+
     @Autowired
     private SoftwareArtifactRepository repository;
 
-    // Use a relative path for local development, would be
-    // /apps/opt/application/mw/software/ on Linux
-    private final String BASE_PATH = "./software_repository";
+    @Autowired
+    private ArtifactStagingRepository stagingRepository;
+
+    @Autowired
+    private ArtifactVersionIndex versionIndex;
+
+    @Autowired
+    private CacheRegistry cacheRegistry;
+
+    private ReadThroughCache<String, List<SoftwareArtifact>> cache;
+
+    @Autowired
+    private ArtifactStore store;
+
+    // This backend's /api/artifacts/files as the target hosts reach it
+    @Value("${upgrade.repo-url:http://localhost:${server.port:8080}/api/artifacts/files}")
+    private String repoUrl;
+
+    // Serializes recording artifacts against deleting the blobs they replaced
+    private final Object blobLock = new Object();
+    // Replaced blobs whose deletion waits for their downloads and stagings; guarded by blobLock
+    private final Set<String> deferredDeletes = new HashSet<>();
+    // Downloads per blob; guarded by itself
+    private final Map<String, BlobUsage> usage = new HashMap<>();
+
+    private ScheduledExecutorService sweeper;
 
+    @PostConstruct
+    void init() {
+        cache = cacheRegistry.create("artifacts");
+        repoUrl = repoUrl.trim().replaceAll("/+$", "");
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "artifact-blob-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::retryDeferredDeletes, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Stores the binary in the {@link ArtifactStore} (hashed while it is
+     * written, kept once per distinct content) and records it with its
+     * SHA-256. Uploading the same type, version and filename again replaces
+     * that artifact.
+     */
     public SoftwareArtifact upload(String name, String version, String type, MultipartFile file) throws IOException {
         String filename = file.getOriginalFilename();
-        long size = file.getSize();
 
-        // Create directory structure: BASE/type/version/
-        Path targetDir = Paths.get(BASE_PATH, type.toLowerCase(), version);
-        Files.createDirectories(targetDir);
+        ArtifactStore.Blob blob;
+        try (InputStream in = file.getInputStream()) {
+            blob = store.put(in);
+        }
+        return record(name, version, type, filename, blob);
+    }
+
+    /**
+     * Records a blob already in the {@link ArtifactStore} as the artifact for
+     * type, version and filename, replacing any earlier one. The replaced
+     * content is deleted once nothing refers to it; see
+     * {@link #deleteIfUnused}.
+     */
+    public SoftwareArtifact record(String name, String version, String type, String filename,
+            ArtifactStore.Blob blob) throws IOException {
+        synchronized (blobLock) {
+            return recordLocked(name, version, type, filename, blob);
+        }
+    }
+
+    private SoftwareArtifact recordLocked(String name, String version, String type, String filename,
+            ArtifactStore.Blob blob) throws IOException {
+        // Readable path for the automation engine: BASE/type/version/filename
+        Path targetPath = store.link(blob, type.toLowerCase(), version, filename);
 
-        Path targetPath = targetDir.resolve(filename);
-        Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+        log.info("Software binary saved to: {} (sha256 {}{})", targetPath, blob.sha256,
+                blob.existed ? ", content already stored" : "");
 
-        log.info("Software binary saved to: {}", targetPath.toAbsolutePath());
+        SoftwareArtifact artifact = repository
+                .findFirstByTypeAndVersionAndFilename(type.toUpperCase(), version, filename)
+                .orElseGet(SoftwareArtifact::new);
+        String replacedSha256 = artifact.getSha256();
 
-        SoftwareArtifact artifact = new SoftwareArtifact();
         artifact.setName(name);
         artifact.setVersion(version);
         artifact.setType(type.toUpperCase());
         artifact.setFilename(filename);
-        // Store the local absolute path for the automation engine to use
-        artifact.setArtifactoryPath(targetPath.toAbsolutePath().toString());
-        artifact.setSizeBytes(size);
+        artifact.setArtifactoryPath(targetPath.toString());
+        artifact.setSizeBytes(blob.size);
+        artifact.setSha256(blob.sha256);
         artifact.setUploadedAt(LocalDateTime.now());
 
-        return repository.save(artifact);
+        SoftwareArtifact saved = repository.save(artifact);
+        if (replacedSha256 != null && !replacedSha256.equals(blob.sha256))
+            deleteIfUnused(replacedSha256);
+        versionIndex.invalidate();
+        cache.invalidateAll();
+        return saved;
+    }
+
+    /**
+     * Most recent checksummed upload of the given type and version, else the
+     * most recent one still waiting for its checksum (see
+     * {@link #adoptLegacyArtifacts}), or null if there is none.
+     */
+    public SoftwareArtifact findLatest(String type, String version) {
+        if (type == null || version == null)
+            return null;
+        return repository.findFirstByTypeAndVersionAndSha256NotNullOrderByUploadedAtDesc(type.toUpperCase(), version)
+                .or(() -> repository.findFirstByTypeAndVersionOrderByUploadedAtDesc(type.toUpperCase(), version))
+                .orElse(null);
+    }
+
+    public SoftwareArtifact find(String type, String version, String filename) {
+        return repository.findFirstByTypeAndVersionAndFilename(type.toUpperCase(), version, filename).orElse(null);
+    }
+
+    public SoftwareArtifact get(Long id) {
+        return repository.findById(id).orElse(null);
+    }
+
+    /**
+     * Where target hosts download the artifact from ({@code upgrade.repo-url}).
+     */
+    public String downloadUrl(SoftwareArtifact artifact) {
+        return repoUrl
+                + "/" + UriUtils.encodePathSegment(artifact.getType().toLowerCase(), StandardCharsets.UTF_8)
+                + "/" + UriUtils.encodePathSegment(artifact.getVersion(), StandardCharsets.UTF_8)
+                + "/" + UriUtils.encodePathSegment(artifact.getFilename(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The file holding the artifact's content: its blob, or for an artifact
+     * not checksummed yet the file it was uploaded to. Null if missing.
+     */
+    public Path contentPath(SoftwareArtifact artifact) {
+        Path file = artifact.getSha256() != null ? store.blobPath(artifact.getSha256())
+                : artifact.getArtifactoryPath() != null ? Paths.get(artifact.getArtifactoryPath()) : null;
+        return file != null && Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * A stored blob by its SHA-256, or null if there is none.
+     */
+    public Path blobPath(String sha256) {
+        Path file;
+        try {
+            file = store.blobPath(sha256);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * Marks the blob as being downloaded until the returned handle is
+     * closed, so a replaced artifact's content isn't deleted under the
+     * download. A null SHA-256 (content not in the store) is not tracked.
+     */
+    public BlobRead startRead(String sha256) {
+        if (sha256 == null)
+            return () -> { };
+        synchronized (usage) {
+            usage.computeIfAbsent(sha256, k -> new BlobUsage()).readers++;
+        }
+        return () -> {
+            synchronized (usage) {
+                BlobUsage u = usage.get(sha256);
+                u.readers--;
+                u.releasedAt = System.currentTimeMillis();
+            }
+        };
+    }
+
+    /**
+     * Deletes the blob unless an artifact still refers to it. While it is
+     * being downloaded (or was up to {@link #RELEASE_GRACE_MS} ago) or an
+     * active staging is fetching it, the deletion is deferred and retried
+     * every minute.
+     */
+    private void deleteIfUnused(String sha256) throws IOException {
+        synchronized (blobLock) {
+            if (repository.existsBySha256(sha256)) {
+                deferredDeletes.remove(sha256);
+                return;
+            }
+            boolean staging = stagingRepository.existsBySha256AndStatusIn(sha256, STAGING_ACTIVE);
+            synchronized (usage) {
+                BlobUsage u = usage.get(sha256);
+                boolean reading = u != null
+                        && (u.readers > 0 || System.currentTimeMillis() - u.releasedAt < RELEASE_GRACE_MS);
+                if (staging || reading) {
+                    if (deferredDeletes.add(sha256))
+                        log.info("Blob {} is still in use; deleting it once downloads and stagings finish", sha256);
+                    return;
+                }
+                // Under the usage lock, so no download can start on it meanwhile
+                store.delete(sha256);
+            }
+            deferredDeletes.remove(sha256);
+        }
+    }
+
+    private void retryDeferredDeletes() {
+        List<String> pending;
+        synchronized (blobLock) {
+            pending = new ArrayList<>(deferredDeletes);
+        }
+        for (String sha256 : pending) {
+            try {
+                deleteIfUnused(sha256);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not delete replaced blob {}", sha256, e);
+            }
+        }
+        long cutoff = System.currentTimeMillis() - RELEASE_GRACE_MS;
+        synchronized (usage) {
+            usage.values().removeIf(u -> u.readers == 0 && u.releasedAt < cutoff);
+        }
+    }
+
+    /**
+     * Artifacts uploaded before the store existed have no checksum: hash them
+     * into the store in the background, once.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void adoptLegacyArtifacts() {
+        List<SoftwareArtifact> legacy = repository.findBySha256IsNull();
+        if (legacy.isEmpty())
+            return;
+        Thread thread = new Thread(() -> legacy.forEach(this::adopt), "artifact-checksums");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void adopt(SoftwareArtifact legacy) {
+        // Held throughout, so a record() for the same path can't be overwritten
+        // and the new blob can't be deleted as unused before it is saved
+        synchronized (blobLock) {
+            SoftwareArtifact artifact = repository.findById(legacy.getId()).orElse(null);
+            if (artifact == null || artifact.getSha256() != null)
+                return; // deleted, or replaced by an upload since startup
+            adoptLocked(artifact);
+        }
+    }
+
+    private void adoptLocked(SoftwareArtifact artifact) {
+        Path file = artifact.getArtifactoryPath() == null ? null : Paths.get(artifact.getArtifactoryPath());
+        if (file == null || !Files.isRegularFile(file)) {
+            log.warn("Artifact {} {} has no file at {}", artifact.getType(), artifact.getVersion(), file);
+            return;
+        }
+        try {
+            ArtifactStore.Blob blob = store.putFile(file);
+            if (blob.existed) {
+                // Same content stored already: replace the copy with a link
+                Path linked = store.link(blob, artifact.getType().toLowerCase(), artifact.getVersion(),
+                        artifact.getFilename());
+                artifact.setArtifactoryPath(linked.toString());
+            }
+            artifact.setSha256(blob.sha256);
+            repository.save(artifact);
+            // The cached artifact list still has this artifact without its checksum
+            versionIndex.invalidate();
+            cache.invalidateAll();
+            log.info("Checksummed artifact {} {}: {}", artifact.getType(), artifact.getVersion(), blob.sha256);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not checksum artifact {} {} at {}", artifact.getType(), artifact.getVersion(), file, e);
+        }
     }
 
     public List<SoftwareArtifact> getAll() {
-        return repository.findAll();
+        return cache.get("all", k -> Collections.unmodifiableList(repository.findAll()));
     }
 
     public List<SoftwareArtifact> getByType(String type) {
         return repository.findByType(type.toUpperCase());
     }
+
+    /**
+     * An open download of a blob; see {@link #startRead}.
+     */
+    public interface BlobRead extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final class BlobUsage {
+        int readers;
+        long releasedAt;
+    }
 }
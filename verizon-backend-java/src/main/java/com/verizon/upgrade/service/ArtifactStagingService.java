@@ -0,0 +1,333 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.model.ArtifactStaging;
+import com.verizon.upgrade.model.Environment;
+import com.verizon.upgrade.model.Server;
+import com.verizon.upgrade.model.SoftwareArtifact;
+import com.verizon.upgrade.model.StagingStatus;
+import com.verizon.upgrade.parser.AnsibleRecap;
+import com.verizon.upgrade.repository.ArtifactStagingRepository;
+import com.verizon.upgrade.repository.EnvironmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Copies a software artifact to the servers of an environment ahead of the
+ * maintenance window, so the upgrade itself only has to swap and restart.
+ * <p>
+ * Each request runs {@code ansible/stage.yml} once for all of the environment's
+ * hosts: each host downloads the binary from {@code upgrade.repo-url} into
+ * {@code artifact.stage.dir} and verifies its SHA-256, at most
+ * {@code artifact.stage.forks} hosts at a time. At most
+ * {@code artifact.stage.max-concurrency} staging playbooks run at once; further
+ * requests wait their turn. Per-host outcomes are read from the PLAY RECAP and
+ * kept as {@link ArtifactStaging} rows.
+ */
+@Service
+@Slf4j
+public class ArtifactStagingService {
+
+    private static final String PLAYBOOK_PATH = "ansible/stage.yml";
+    private static final EnumSet<StagingStatus> ACTIVE = EnumSet.of(StagingStatus.PENDING, StagingStatus.RUNNING);
+    private static final int MESSAGE_LENGTH = 1000;
+
+    @Autowired
+    private ArtifactStagingRepository stagingRepository;
+
+    @Autowired
+    private EnvironmentRepository environmentRepository;
+
+    @Autowired
+    private ArtifactService artifactService;
+
+    @Autowired
+    private PlaybookLogService playbookLogs;
+
+    @Autowired
+    private PlaybookRunner playbookRunner;
+
+    @Autowired
+    @Qualifier("upgradeExecutor")
+    private ThreadPoolTaskExecutor upgradeExecutor;
+
+    @Value("${artifact.stage.dir:/var/tmp/upgrade-staging}")
+    private String stageDir;
+
+    @Value("${artifact.stage.forks:10}")
+    private int forks;
+
+    @Value("${artifact.stage.max-concurrency:2}")
+    private int maxConcurrency;
+
+    @Value("${artifact.stage.timeout-minutes:120}")
+    private long timeoutMinutes;
+
+    private PlaybookSlots slots;
+
+    private final Executor completionExecutor = task -> {
+        try {
+            upgradeExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    };
+
+    /**
+     * Stagings still pending or running belong to a previous process and will
+     * never finish.
+     */
+    @PostConstruct
+    void init() {
+        slots = new PlaybookSlots(maxConcurrency);
+        int interrupted = stagingRepository.failAll(ACTIVE, "Interrupted by application restart",
+                LocalDateTime.now());
+        if (interrupted > 0)
+            log.warn("Marked {} artifact stagings left over from a previous start as FAILED", interrupted);
+    }
+
+    /**
+     * Stages the artifact on every server in the environment. Servers that
+     * already have this content staged, or are being staged, are left alone
+     * unless {@code force} is set. Returns the environment's staging rows for
+     * the artifact, or null if the environment doesn't exist.
+     */
+    public synchronized List<ArtifactStaging> stage(Long environmentId, SoftwareArtifact artifact, boolean force) {
+        Environment env = environmentRepository.findById(environmentId).orElse(null);
+        if (env == null)
+            return null;
+        if (artifact.getSha256() == null)
+            throw new IllegalStateException("Artifact " + artifact.getId() + " has no checksum yet");
+
+        Map<String, ArtifactStaging> existing = new HashMap<>();
+        for (ArtifactStaging s : stagingRepository.findByEnvironmentIdAndArtifactIdOrderByIdAsc(environmentId,
+                artifact.getId())) {
+            existing.put(s.getServerId(), s);
+        }
+
+        String stagedPath = stagingPath(artifact);
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Server> servers = new LinkedHashMap<>();
+        if (env.getServers() != null)
+            env.getServers().forEach(server -> servers.putIfAbsent(server.getId(), server));
+
+        List<ArtifactStaging> toStage = new ArrayList<>();
+        for (Server server : servers.values()) {
+            String serverId = String.valueOf(server.getId());
+            ArtifactStaging staging = existing.get(serverId);
+            if (staging != null && ACTIVE.contains(staging.getStatus()))
+                continue;
+            if (staging != null && !force && staging.getStatus() == StagingStatus.STAGED
+                    && artifact.getSha256().equals(staging.getSha256()))
+                continue;
+            if (staging == null) {
+                staging = new ArtifactStaging();
+                staging.setArtifactId(artifact.getId());
+                staging.setEnvironmentId(environmentId);
+                staging.setServerId(serverId);
+            }
+            staging.setSha256(artifact.getSha256());
+            staging.setHostname(server.getHostname());
+            staging.setStagedPath(stagedPath);
+            staging.setStatus(StagingStatus.PENDING);
+            staging.setLogRunId(null);
+            staging.setMessage(null);
+            staging.setRequestedAt(now);
+            staging.setStartedAt(null);
+            staging.setFinishedAt(null);
+            toStage.add(staging);
+        }
+
+        if (!toStage.isEmpty()) {
+            List<ArtifactStaging> saved = stagingRepository.saveAll(toStage);
+            log.info("Staging {} {} ({}) on {} servers of environment {}", artifact.getType(), artifact.getVersion(),
+                    artifact.getFilename(), saved.size(), environmentId);
+            slots.submit(() -> CompletableFuture.supplyAsync(() -> startPlaybook(artifact, saved), upgradeExecutor)
+                    .thenCompose(f -> f)
+                    .exceptionally(e -> {
+                        log.error("Staging of {} {} could not be completed", artifact.getType(),
+                                artifact.getVersion(), e);
+                        finishAll(saved, StagingStatus.FAILED, "Could not be scheduled");
+                        return null;
+                    }));
+        }
+        return stagingRepository.findByEnvironmentIdAndArtifactIdOrderByIdAsc(environmentId, artifact.getId());
+    }
+
+    public List<ArtifactStaging> list(Long environmentId, Long artifactId) {
+        if (environmentId != null && artifactId != null)
+            return stagingRepository.findByEnvironmentIdAndArtifactIdOrderByIdAsc(environmentId, artifactId);
+        if (environmentId != null)
+            return stagingRepository.findByEnvironmentIdOrderByIdAsc(environmentId);
+        if (artifactId != null)
+            return stagingRepository.findByArtifactIdOrderByIdAsc(artifactId);
+        return stagingRepository.findTop200ByOrderByIdDesc();
+    }
+
+    /**
+     * Where the server holds a verified copy of the content, or null if it
+     * hasn't been staged there.
+     */
+    String stagedPath(String serverId, String sha256) {
+        if (serverId == null || sha256 == null)
+            return null;
+        return stagingRepository
+                .findFirstByServerIdAndSha256AndStatusOrderByFinishedAtDesc(serverId, sha256, StagingStatus.STAGED)
+                .map(ArtifactStaging::getStagedPath)
+                .orElse(null);
+    }
+
+    private CompletableFuture<Void> startPlaybook(SoftwareArtifact artifact, List<ArtifactStaging> stagings) {
+        List<ArtifactStaging> members = new ArrayList<>();
+        List<ArtifactStaging> noHost = new ArrayList<>();
+        for (ArtifactStaging s : stagings) {
+            if (s.getHostname() == null || s.getHostname().trim().isEmpty())
+                noHost.add(s);
+            else
+                members.add(s);
+        }
+        finishAll(noHost, StagingStatus.FAILED, "Server has no hostname");
+        if (members.isEmpty())
+            return CompletableFuture.completedFuture(null);
+
+        List<String> serverIds = new ArrayList<>();
+        Set<String> hostnames = new LinkedHashSet<>();
+        for (ArtifactStaging s : members) {
+            serverIds.add(s.getServerId());
+            hostnames.add(s.getHostname());
+        }
+        String logRunId = playbookLogs.newRunId();
+        LocalDateTime now = LocalDateTime.now();
+        for (ArtifactStaging s : members) {
+            s.setStatus(StagingStatus.RUNNING);
+            s.setLogRunId(logRunId);
+            s.setStartedAt(now);
+        }
+        stagingRepository.saveAll(members);
+
+        RunLog runLog = playbookLogs.open(logRunId, serverIds, new ArrayList<>(hostnames), artifact.getType(),
+                artifact.getVersion());
+        AnsibleRecap.Collector recap = new AnsibleRecap.Collector(hostnames);
+
+        Path inventory = null;
+        CompletableFuture<PlaybookRunner.Exit> exit;
+        try {
+            inventory = writeInventory(hostnames);
+            exit = playbookRunner.start(Arrays.asList(
+                    "ansible-playbook",
+                    PLAYBOOK_PATH,
+                    "-i", inventory.toString(),
+                    "--forks", String.valueOf(forks),
+                    "--extra-vars", String.format("artifact_url=%s artifact_sha256=%s staged_artifact=%s",
+                            artifactService.downloadUrl(artifact), artifact.getSha256(), stagingPath(artifact))),
+                    runLog, recap, Duration.ofMinutes(timeoutMinutes));
+        } catch (IOException e) {
+            log.error("Staging of {} {} failed to start", artifact.getType(), artifact.getVersion(), e);
+            runLog.close(-1);
+            deleteInventory(inventory);
+            finishAll(members, StagingStatus.FAILED, "Error during automation: " + e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Path startedInventory = inventory;
+        return exit.thenAcceptAsync(e -> complete(members, recap, e), completionExecutor)
+                .whenComplete((v, e) -> deleteInventory(startedInventory));
+    }
+
+    private void complete(List<ArtifactStaging> members, AnsibleRecap.Collector recap, PlaybookRunner.Exit exit) {
+        int staged = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (ArtifactStaging s : members) {
+            AnsibleRecap.HostResult hostResult = recap.getResults().get(s.getHostname());
+            if (exit.outcome == PlaybookRunner.Outcome.EXITED && hostResult != null && hostResult.isSuccess()) {
+                s.setStatus(StagingStatus.STAGED);
+                s.setMessage("Downloaded and SHA-256 verified");
+                staged++;
+            } else {
+                s.setStatus(StagingStatus.FAILED);
+                s.setMessage(truncate(describeFailure(exit, hostResult) + ". Output:\n"
+                        + recap.linesForHost(s.getHostname())));
+            }
+            s.setFinishedAt(now);
+        }
+        stagingRepository.saveAll(members);
+        log.info("Staging run finished with exit code {} ({}): {} of {} servers staged", exit.exitCode,
+                exit.outcome, staged, members.size());
+    }
+
+    private void finishAll(List<ArtifactStaging> stagings, StagingStatus status, String message) {
+        if (stagings.isEmpty())
+            return;
+        LocalDateTime now = LocalDateTime.now();
+        for (ArtifactStaging s : stagings) {
+            s.setStatus(status);
+            s.setMessage(truncate(message));
+            s.setFinishedAt(now);
+        }
+        stagingRepository.saveAll(stagings);
+    }
+
+    private String describeFailure(PlaybookRunner.Exit exit, AnsibleRecap.HostResult hostResult) {
+        switch (exit.outcome) {
+            case TIMED_OUT:
+                return "Staging timed out after " + timeoutMinutes + " minutes";
+            case CANCELLED:
+                return "Staging cancelled";
+            default:
+                return hostResult == null ? "Host missing from PLAY RECAP (exit code " + exit.exitCode + ")"
+                        : "Staging failed (failed=" + hostResult.getFailed() + " unreachable="
+                                + hostResult.getUnreachable() + ")";
+        }
+    }
+
+    /**
+     * One directory per content, so a re-upload under the same filename never
+     * collides with (or is mistaken for) what was staged before.
+     */
+    private String stagingPath(SoftwareArtifact artifact) {
+        String filename = artifact.getFilename() == null ? "artifact"
+                : artifact.getFilename().replaceAll("[^A-Za-z0-9._-]", "_");
+        return stageDir + "/" + artifact.getSha256() + "/" + filename;
+    }
+
+    private Path writeInventory(Collection<String> hostnames) throws IOException {
+        Path inventory = Files.createTempFile("stage-", ".ini");
+        try (BufferedWriter writer = Files.newBufferedWriter(inventory)) {
+            writer.write("[stage]\n");
+            for (String hostname : hostnames) {
+                writer.write(hostname);
+                writer.write('\n');
+            }
+        }
+        return inventory;
+    }
+
+    private void deleteInventory(Path inventory) {
+        if (inventory == null)
+            return;
+        try {
+            Files.deleteIfExists(inventory);
+        } catch (IOException e) {
+            log.warn("Could not delete inventory {}", inventory, e);
+        }
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > MESSAGE_LENGTH ? message.substring(0, MESSAGE_LENGTH) : message;
+    }
+}
@@ -0,0 +1,193 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.util.Hashes;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed storage for software binaries under
+ * {@code artifact.store.dir}. Each distinct content is kept once, at
+ * {@code .blobs/sha256/<first two hex chars>/<sha256>}; the readable
+ * {@code <type>/<version>/<filename>} paths the playbooks use are hard links to
+ * it, so identical binaries uploaded under different names take the space of
+ * one. Where hard links aren't supported the readable path is a copy.
+ */
+@Service
+@Slf4j
+public class ArtifactStore {
+
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    @Value("${artifact.store.dir:./software_repository}")
+    private String storeDir;
+
+    private Path root;
+    private Path blobs;
+    private Path incoming;
+
+    @PostConstruct
+    void init() throws IOException {
+        root = Paths.get(storeDir).toAbsolutePath().normalize();
+        blobs = root.resolve(".blobs").resolve("sha256");
+        incoming = root.resolve(".blobs").resolve("incoming");
+        Files.createDirectories(blobs);
+        Files.createDirectories(incoming);
+        // Whatever is left in incoming was being written when the last process stopped
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(incoming, "*.part")) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+                log.info("Removed incomplete upload {}", leftover.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Streams {@code in} into the store, hashing while it writes, so the
+     * content is read once. Returns the existing blob if the content is
+     * already stored.
+     */
+    public Blob put(InputStream in) throws IOException {
+        Path temp = Files.createTempFile(incoming, "upload-", ".part");
+        try {
+            MessageDigest digest = Hashes.sha256();
+            long size = 0;
+            byte[] buffer = new byte[64 * 1024];
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                    size += n;
+                }
+            }
+            String sha256 = Hashes.toHex(digest.digest());
+            return adopt(temp, sha256, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Adds a file that is already on disk (written before the store existed)
+     * by linking the blob to it rather than copying.
+     */
+    public Blob putFile(Path file) throws IOException {
+        String sha256 = Hashes.sha256Hex(file);
+        long size = Files.size(file);
+        Path path = blobPath(sha256);
+        if (Files.exists(path))
+            return new Blob(sha256, size, path, true);
+        Files.createDirectories(path.getParent());
+        try {
+            Files.createLink(path, file);
+            return new Blob(sha256, size, path, false);
+        } catch (UnsupportedOperationException | IOException e) {
+            Path temp = Files.createTempFile(incoming, "adopt-", ".part");
+            try {
+                Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+                return adopt(temp, sha256, size);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * New empty file in the incoming directory, on the same file system as
+     * the blobs so {@link #putHashed} can move it in without copying.
+     */
+    public Path newIncomingFile(String prefix) throws IOException {
+        return Files.createTempFile(incoming, prefix, ".part");
+    }
+
+    /**
+     * Moves a file from {@link #newIncomingFile} that the caller has already
+     * hashed into the store. If the content was already stored the file is
+     * left where it is for the caller to delete.
+     */
+    public Blob putHashed(Path file, String sha256) throws IOException {
+        if (!file.getParent().equals(incoming))
+            throw new IllegalArgumentException("Not an incoming file: " + file);
+        return adopt(file, sha256, Files.size(file));
+    }
+
+    /**
+     * Makes {@code type/version/filename} point at the blob, replacing
+     * whatever was there. Returns the readable path.
+     */
+    public Path link(Blob blob, String type, String version, String filename) throws IOException {
+        Path target = root.resolve(type).resolve(version).resolve(filename).normalize();
+        if (!target.startsWith(root) || target.startsWith(root.resolve(".blobs")))
+            throw new IllegalArgumentException("Invalid artifact path: " + type + "/" + version + "/" + filename);
+        Files.createDirectories(target.getParent());
+
+        // Link next to the target, then rename over it, so readers never see a missing file
+        Path staged = target.resolveSibling("." + target.getFileName() + ".link");
+        Files.deleteIfExists(staged);
+        try {
+            Files.createLink(staged, blob.path);
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("Hard link to {} not possible, copying: {}", blob.path, e.getMessage());
+            Files.copy(blob.path, staged, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    public Path blobPath(String sha256) {
+        if (sha256 == null || !SHA256.matcher(sha256).matches())
+            throw new IllegalArgumentException("Not a SHA-256: " + sha256);
+        return blobs.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    /**
+     * Removes a blob nothing refers to any more. Readable paths linked to it
+     * keep their own link to the data.
+     */
+    public void delete(String sha256) throws IOException {
+        if (Files.deleteIfExists(blobPath(sha256)))
+            log.info("Removed unreferenced blob {}", sha256);
+    }
+
+    private Blob adopt(Path temp, String sha256, long size) throws IOException {
+        Path path = blobPath(sha256);
+        if (Files.exists(path))
+            return new Blob(sha256, size, path, true);
+        Files.createDirectories(path.getParent());
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Same content stored concurrently
+            return new Blob(sha256, size, path, true);
+        }
+        return new Blob(sha256, size, path, false);
+    }
+
+    public static class Blob {
+        public final String sha256;
+        public final long size;
+        public final Path path;
+        public final boolean existed;
+
+        Blob(String sha256, long size, Path path, boolean existed) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.path = path;
+            this.existed = existed;
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.dto.ArtifactUploadRequest;
+import com.verizon.upgrade.dto.ArtifactUploadStatus;
+import com.verizon.upgrade.model.SoftwareArtifact;
+import com.verizon.upgrade.util.Hashes;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Chunked uploads for binaries too large to send reliably in one request.
+ * <p>
+ * {@link #start} preallocates the whole file in the store's incoming directory;
+ * each chunk is then written straight to its offset with positional channel
+ * writes, in any order and in parallel, and a chunk that failed is simply sent
+ * again. {@link #status} lists what is still missing so a client can resume.
+ * The SHA-256 is built up while chunks arrive, from the contiguous prefix that
+ * has been written (read back while it is still in the page cache), so
+ * {@link #complete} only has to hash what arrived out of order before checking
+ * it and moving the file into the {@link ArtifactStore}.
+ * <p>
+ * Uploads live in memory; one idle for {@code artifact.upload.expiry-minutes}
+ * is discarded by a sweep that runs every minute, as is any upload in
+ * progress when the server stops.
+ */
+@Service
+@Slf4j
+public class ArtifactUploadService {
+
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_CHUNK_SIZE = 512 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    @Value("${artifact.upload.chunk-size-mb:16}")
+    private int defaultChunkSizeMb;
+
+    @Value("${artifact.upload.expiry-minutes:1440}")
+    private long expiryMinutes;
+
+    @Autowired
+    private ArtifactStore store;
+
+    @Autowired
+    private ArtifactService artifactService;
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService purger;
+
+    @PostConstruct
+    void init() {
+        purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "artifact-upload-purge");
+            t.setDaemon(true);
+            return t;
+        });
+        purger.scheduleWithFixedDelay(this::purgeExpired, 1, 1, TimeUnit.MINUTES);
+    }
+
+    public ArtifactUploadStatus start(ArtifactUploadRequest request) throws IOException {
+        if (isBlank(request.getName()) || isBlank(request.getVersion()) || isBlank(request.getType())
+                || isBlank(request.getFilename()))
+            throw new IllegalArgumentException("name, version, type and filename are required");
+        if (request.getSize() == null || request.getSize() <= 0)
+            throw new IllegalArgumentException("size must be positive");
+        String sha256 = request.getSha256() == null ? null : request.getSha256().toLowerCase(Locale.ROOT);
+        if (sha256 != null && !SHA256.matcher(sha256).matches())
+            throw new IllegalArgumentException("Not a SHA-256: " + request.getSha256());
+
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSizeMb * 1024 * 1024;
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE)
+            throw new IllegalArgumentException("chunkSize must be between " + MIN_CHUNK_SIZE + " and " + MAX_CHUNK_SIZE);
+        long chunkCount = (request.getSize() + chunkSize - 1) / chunkSize;
+        if (chunkCount > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many chunks; use a larger chunkSize");
+
+        Path file = store.newIncomingFile("chunked-");
+        FileChannel channel;
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(request.getSize());
+            }
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        Upload upload = new Upload(UUID.randomUUID().toString(), request, sha256, chunkSize, (int) chunkCount,
+                file, channel);
+        uploads.put(upload.id, upload);
+        log.info("Chunked upload {} started: {} ({} bytes in {} chunks)", upload.id, upload.filename,
+                upload.size, upload.chunkCount);
+        return upload.toStatus(expiryMinutes);
+    }
+
+    /**
+     * Progress of an upload, or null if it is unknown (never started, completed,
+     * aborted or expired).
+     */
+    public ArtifactUploadStatus status(String uploadId) {
+        Upload upload = uploads.get(uploadId);
+        return upload == null ? null : upload.toStatus(expiryMinutes);
+    }
+
+    /**
+     * Writes chunk {@code index} from {@code in} at its offset. The body must
+     * be exactly the chunk's length; anything else leaves the chunk missing.
+     * A chunk that has already been received is not written again. Returns
+     * null if the upload is unknown.
+     */
+    public ArtifactUploadStatus writeChunk(String uploadId, int index, InputStream in) throws IOException {
+        Upload upload = uploads.get(uploadId);
+        if (upload == null)
+            return null;
+        if (index < 0 || index >= upload.chunkCount)
+            throw new IllegalArgumentException("Chunk " + index + " out of range 0.." + (upload.chunkCount - 1));
+
+        synchronized (upload) {
+            if (upload.closed)
+                return null;
+            if (upload.received.get(index))
+                return upload.toStatus(expiryMinutes);
+            if (upload.writing.get(index))
+                throw new IllegalStateException("Chunk " + index + " is already being written");
+            upload.writing.set(index);
+            upload.touch();
+        }
+
+        boolean written = false;
+        try {
+            long offset = (long) index * upload.chunkSize;
+            long length = upload.chunkLength(index);
+            long copied = copy(in, upload.channel, offset, length);
+            if (copied < length)
+                throw new IllegalArgumentException("Chunk " + index + " is " + copied + " bytes, expected " + length);
+            if (in.read() != -1)
+                throw new IllegalArgumentException("Chunk " + index + " is longer than " + length + " bytes");
+            written = true;
+        } finally {
+            synchronized (upload) {
+                upload.writing.clear(index);
+                if (written)
+                    upload.received.set(index);
+                upload.notifyAll();
+            }
+        }
+        advanceDigest(upload);
+        return upload.toStatus(expiryMinutes);
+    }
+
+    /**
+     * Checks the assembled file against the expected SHA-256 (if one was
+     * given), moves it into the store and records the artifact. Returns null if
+     * the upload is unknown; throws {@link IllegalStateException} while chunks
+     * are still missing and {@link ChecksumMismatchException} (after discarding
+     * the upload) if the content is not what was announced.
+     */
+    public SoftwareArtifact complete(String uploadId) throws IOException {
+        Upload upload = uploads.get(uploadId);
+        if (upload == null)
+            return null;
+        synchronized (upload) {
+            if (upload.closed)
+                return null;
+            int missing = upload.chunkCount - upload.received.cardinality();
+            if (missing > 0 || !upload.writing.isEmpty())
+                throw new IllegalStateException(missing + " chunk(s) still missing");
+            upload.closed = true;
+        }
+
+        try {
+            // Catch up on whatever arrived out of order
+            awaitDigest(upload);
+            while (upload.hashedChunks < upload.chunkCount)
+                hashChunk(upload, upload.hashedChunks++);
+            String sha256 = Hashes.toHex(upload.digest.digest());
+
+            if (upload.expectedSha256 != null && !upload.expectedSha256.equals(sha256)) {
+                discard(upload);
+                throw new ChecksumMismatchException("Upload " + upload.id + " has SHA-256 " + sha256
+                        + ", expected " + upload.expectedSha256);
+            }
+
+            upload.channel.force(false);
+            upload.channel.close();
+            ArtifactStore.Blob blob = store.putHashed(upload.file, sha256);
+            if (blob.existed)
+                Files.deleteIfExists(upload.file);
+            uploads.remove(upload.id);
+            log.info("Chunked upload {} complete: {} (sha256 {})", upload.id, upload.filename, sha256);
+            return artifactService.record(upload.name, upload.version, upload.type, upload.filename, blob);
+        } catch (IOException | RuntimeException e) {
+            discard(upload);
+            throw e;
+        }
+    }
+
+    /**
+     * Discards an upload and its partial file. Returns false if it is unknown.
+     */
+    public boolean abort(String uploadId) throws IOException {
+        Upload upload = uploads.get(uploadId);
+        if (upload == null)
+            return false;
+        synchronized (upload) {
+            upload.closed = true;
+        }
+        discard(upload);
+        return true;
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        purger.shutdownNow();
+        for (Upload upload : uploads.values())
+            discard(upload);
+    }
+
+    private long copy(InputStream in, FileChannel channel, long offset, long length) throws IOException {
+        byte[] bytes = new byte[(int) Math.min(BUFFER_SIZE, length)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long copied = 0;
+        while (copied < length) {
+            int n = in.read(bytes, 0, (int) Math.min(bytes.length, length - copied));
+            if (n == -1)
+                break;
+            buffer.clear().limit(n);
+            while (buffer.hasRemaining())
+                copied += channel.write(buffer, offset + copied);
+        }
+        return copied;
+    }
+
+    /**
+     * Extends the running SHA-256 over chunks that now follow on from what it
+     * already covers. Only one thread hashes at a time; others just return.
+     */
+    private void advanceDigest(Upload upload) throws IOException {
+        while (true) {
+            int index;
+            synchronized (upload) {
+                if (upload.hashing || upload.closed || !upload.received.get(upload.hashedChunks))
+                    return;
+                upload.hashing = true;
+                index = upload.hashedChunks;
+            }
+            boolean hashed = false;
+            try {
+                hashChunk(upload, index);
+                hashed = true;
+            } finally {
+                synchronized (upload) {
+                    if (hashed) {
+                        upload.hashedChunks = index + 1;
+                    } else {
+                        // Partly updated; start over when completing
+                        upload.digest.reset();
+                        upload.hashedChunks = 0;
+                    }
+                    upload.hashing = false;
+                    upload.notifyAll();
+                }
+            }
+            if (index + 1 == upload.chunkCount)
+                return;
+        }
+    }
+
+    private void awaitDigest(Upload upload) throws IOException {
+        synchronized (upload) {
+            while (upload.hashing) {
+                try {
+                    upload.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for upload " + upload.id);
+                }
+            }
+        }
+    }
+
+    private void hashChunk(Upload upload, int index) throws IOException {
+        long offset = (long) index * upload.chunkSize;
+        long end = offset + upload.chunkLength(index);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (offset < end) {
+            buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - offset));
+            int n = upload.channel.read(buffer, offset);
+            if (n <= 0)
+                throw new IOException("Unexpected end of upload " + upload.id + " at " + offset);
+            buffer.flip();
+            upload.digest.update(buffer);
+            offset += n;
+        }
+    }
+
+    private void discard(Upload upload) throws IOException {
+        uploads.remove(upload.id);
+        try {
+            upload.channel.close();
+        } finally {
+            Files.deleteIfExists(upload.file);
+        }
+    }
+
+    void purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(expiryMinutes);
+        for (Upload upload : uploads.values()) {
+            if (upload.lastActivity.isBefore(cutoff)) {
+                synchronized (upload) {
+                    if (!upload.writing.isEmpty() || upload.closed)
+                        continue;
+                    upload.closed = true;
+                }
+                log.info("Chunked upload {} expired", upload.id);
+                try {
+                    discard(upload);
+                } catch (IOException e) {
+                    log.warn("Could not remove expired upload {}: {}", upload.id, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    public static class ChecksumMismatchException extends IOException {
+        public ChecksumMismatchException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Upload {
+        final String id;
+        final String name;
+        final String version;
+        final String type;
+        final String filename;
+        final long size;
+        final String expectedSha256;
+        final int chunkSize;
+        final int chunkCount;
+        final Path file;
+        final FileChannel channel;
+        final LocalDateTime startedAt = LocalDateTime.now();
+
+        // Guarded by this
+        final BitSet received = new BitSet();
+        final BitSet writing = new BitSet();
+        volatile LocalDateTime lastActivity = startedAt;
+        boolean hashing;
+        boolean closed;
+
+        // Covers chunks [0, hashedChunks); only touched by the thread holding "hashing" or completing
+        final MessageDigest digest = Hashes.sha256();
+        volatile int hashedChunks;
+
+        Upload(String id, ArtifactUploadRequest request, String expectedSha256, int chunkSize, int chunkCount,
+                Path file, FileChannel channel) {
+            this.id = id;
+            this.name = request.getName();
+            this.version = request.getVersion();
+            this.type = request.getType();
+            this.filename = request.getFilename();
+            this.size = request.getSize();
+            this.expectedSha256 = expectedSha256;
+            this.chunkSize = chunkSize;
+            this.chunkCount = chunkCount;
+            this.file = file;
+            this.channel = channel;
+        }
+
+        long chunkLength(int index) {
+            return Math.min(chunkSize, size - (long) index * chunkSize);
+        }
+
+        void touch() {
+            lastActivity = LocalDateTime.now();
+        }
+
+        synchronized ArtifactUploadStatus toStatus(long expiryMinutes) {
+            List<Integer> missing = new ArrayList<>();
+            for (int i = received.nextClearBit(0); i < chunkCount; i = received.nextClearBit(i + 1))
+                missing.add(i);
+            int receivedChunks = received.cardinality();
+            long receivedBytes = (long) receivedChunks * chunkSize;
+            if (received.get(chunkCount - 1))
+                receivedBytes -= chunkSize - chunkLength(chunkCount - 1);
+            return ArtifactUploadStatus.builder()
+                    .uploadId(id)
+                    .name(name)
+                    .version(version)
+                    .type(type)
+                    .filename(filename)
+                    .size(size)
+                    .chunkSize(chunkSize)
+                    .chunkCount(chunkCount)
+                    .receivedChunks(receivedChunks)
+                    .receivedBytes(receivedBytes)
+                    .missingChunks(missing)
+                    .sha256(expectedSha256)
+                    .startedAt(startedAt)
+                    .expiresAt(lastActivity.plusMinutes(expiryMinutes))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.model.SoftwareArtifact;
+import com.verizon.upgrade.repository.SoftwareArtifactRepository;
+import com.verizon.upgrade.version.VersionCatalog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory view of the uploaded artifact versions, keyed by software type.
+ * Built from a single repository query and kept until
+ * {@link #invalidate()} is called (see {@link ArtifactService#upload}).
+ * Each type is held as a {@link VersionCatalog}, so version strings are parsed
+ * once per load and nearest-version lookups are O(log n).
+ */
+@Service
+@Slf4j
+public class ArtifactVersionIndex {
+    @Autowired
+    private SoftwareArtifactRepository repository;
+
+    private volatile Map<String, VersionCatalog> versionsByType;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Available versions for the given type, newest first.
+     */
+    public List<String> getVersions(String type) {
+        return getCatalog(type).newestFirst();
+    }
+
+    /**
+     * Lowest available version of the type that satisfies {@code fixVersion};
+     * see {@link VersionCatalog#resolve(String)}.
+     */
+    public String findNearestVersion(String type, String fixVersion) {
+        return getCatalog(type).resolve(fixVersion);
+    }
+
+    public VersionCatalog getCatalog(String type) {
+        if (type == null)
+            return VersionCatalog.EMPTY;
+        return snapshot().getOrDefault(type.toUpperCase(), VersionCatalog.EMPTY);
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        versionsByType = null;
+    }
+
+    private Map<String, VersionCatalog> snapshot() {
+        Map<String, VersionCatalog> current = versionsByType;
+        if (current != null)
+            return current;
+
+        synchronized (this) {
+            if (versionsByType != null)
+                return versionsByType;
+            long gen = generation.get();
+            Map<String, VersionCatalog> loaded = load();
+            // Don't publish a snapshot that an upload made stale while we were loading
+            if (gen == generation.get())
+                versionsByType = loaded;
+            return loaded;
+        }
+    }
+
+    private Map<String, VersionCatalog> load() {
+        Map<String, List<String>> grouped = new HashMap<>();
+        for (SoftwareArtifact artifact : repository.findAll()) {
+            if (artifact.getType() == null || artifact.getVersion() == null)
+                continue;
+            grouped.computeIfAbsent(artifact.getType().toUpperCase(), t -> new ArrayList<>())
+                    .add(artifact.getVersion());
+        }
+
+        Map<String, VersionCatalog> index = new HashMap<>();
+        grouped.forEach((type, versions) -> index.put(type, new VersionCatalog(versions)));
+        log.info("Artifact version index loaded: {} types", index.size());
+        return index;
+    }
+}
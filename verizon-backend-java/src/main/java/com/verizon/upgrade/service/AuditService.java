@@ -1,20 +1,89 @@
 package com.verizon.upgrade.service;
 
+import com.verizon.upgrade.dto.AuditLogSummary;
+import com.verizon.upgrade.dto.HistoryPage;
 import com.verizon.upgrade.model.AuditLog;
 import com.verizon.upgrade.repository.AuditLogRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Audit trail of upgrades. With {@code audit.async=true} (the default) entries
+ * are written behind by an {@link AuditWriter}, so upgrade threads don't wait
+ * on the database; history reads see them once the writer has stored them,
+ * normally within milliseconds, and everything queued is written on shutdown.
+ * {@code audit.async=false} writes each entry before returning.
+ */
 @Service
 public class AuditService {
     @Autowired
     private AuditLogRepository auditLogRepository;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${audit.async:true}")
+    private boolean async;
+
+    @Value("${audit.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${audit.batch-size:500}")
+    private int batchSize;
+
+    private AuditWriter writer;
+
+    private static final String HISTORY_ROW = "select new com.verizon.upgrade.dto.AuditLogSummary(a.id,"
+            + " a.serverId, a.hostname, a.softwareName, a.fromVersion, a.toVersion, a.status, a.triggeredBy,"
+            + " a.timestamp, a.runId) from AuditLog a";
+
+    private static final String TRUNCATED_MARKER = "[... truncated, see the full run log ...]\n";
+
+    // Moves on with every write, for history ETags; starts at the boot time
+    // so it keeps increasing across restarts (see InventoryRevisions)
+    private final AtomicLong revision = new AtomicLong(System.currentTimeMillis());
+
+    @PostConstruct
+    void init() {
+        if (async) {
+            writer = new AuditWriter(new TransactionTemplate(transactionManager), entityManager, queueCapacity,
+                    batchSize, revision::addAndGet);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (writer != null)
+            writer.close();
+    }
+
     public void log(String serverId, String hostname, String software, String from, String to, String status,
             String user, String output) {
+        log(serverId, hostname, software, from, to, status, user, output, null);
+    }
+
+    public void log(String serverId, String hostname, String software, String from, String to, String status,
+            String user, String output, String runId) {
         AuditLog log = new AuditLog();
         log.setServerId(serverId);
         log.setHostname(hostname);
@@ -24,13 +93,134 @@ public class AuditService {
         log.setStatus(status);
         log.setTriggeredBy(user);
         log.setTimestamp(LocalDateTime.now());
-        log.setLogOutput(output);
+        log.setLogOutput(abbreviate(output));
+        log.setRunId(runId);
+        store(log);
+    }
+
+    /**
+     * Records an upgrade that has started; {@link #finish} fills in the outcome.
+     */
+    public AuditLog start(String serverId, String hostname, String software, String from, String to, String user,
+            String runId) {
+        AuditLog log = new AuditLog();
+        log.setServerId(serverId);
+        log.setHostname(hostname);
+        log.setSoftwareName(software);
+        log.setFromVersion(from);
+        log.setToVersion(to);
+        log.setStatus("IN_PROGRESS");
+        log.setTriggeredBy(user);
+        log.setTimestamp(LocalDateTime.now());
+        log.setRunId(runId);
+        return store(log);
+    }
+
+    /**
+     * Records the outcome of an upgrade; {@code log} is the entry returned by
+     * {@link #start}.
+     */
+    public void finish(AuditLog log, String status, String output) {
+        if (writer != null) {
+            writer.finish(log, status, abbreviate(output));
+            return;
+        }
+        log.setStatus(status);
+        log.setLogOutput(abbreviate(output));
         auditLogRepository.save(log);
+        revision.incrementAndGet();
+    }
+
+    private AuditLog store(AuditLog log) {
+        if (writer != null) {
+            writer.insert(log);
+            return log;
+        }
+        AuditLog saved = auditLogRepository.save(log);
+        revision.incrementAndGet();
+        return saved;
+    }
+
+    public String etag() {
+        return "history-" + revision.get();
+    }
+
+    /**
+     * Fits output into the log column, keeping its first line (the outcome
+     * message) and as much of the end as there is room for.
+     */
+    private String abbreviate(String output) {
+        if (output == null || output.length() <= AuditLog.LOG_OUTPUT_LENGTH)
+            return output;
+        int firstLineEnd = output.indexOf('\n');
+        String head = firstLineEnd > 0 && firstLineEnd < AuditLog.LOG_OUTPUT_LENGTH / 4
+                ? output.substring(0, firstLineEnd + 1)
+                : "";
+        int room = AuditLog.LOG_OUTPUT_LENGTH - head.length() - TRUNCATED_MARKER.length();
+        return head + TRUNCATED_MARKER + output.substring(output.length() - room);
+    }
+
+    /**
+     * One page of history, newest first, without log output. Every filter is
+     * optional; {@code from} is inclusive and {@code to} exclusive.
+     * {@code before} is the previous page's {@code nextCursor} (keyset paging,
+     * so deep pages cost the same as the first).
+     */
+    public HistoryPage getHistory(String serverId, String software, String status, LocalDateTime from,
+            LocalDateTime to, Long before, int size) {
+        LocalDateTime beforeTime = null;
+        if (before != null) {
+            beforeTime = auditLogRepository.findTimestampById(before);
+            if (beforeTime == null)
+                return new HistoryPage(Collections.emptyList(), null);
+        }
+
+        // Only the filters given go into the query, so the plan is a range on
+        // idx_audit_server_time or idx_audit_time read in index order
+        List<String> where = new ArrayList<>();
+        Map<String, Object> params = new HashMap<>();
+        if (serverId != null) {
+            where.add("a.serverId = :serverId");
+            params.put("serverId", serverId);
+        }
+        if (software != null) {
+            where.add("lower(a.softwareName) = :software");
+            params.put("software", software.toLowerCase(Locale.ROOT));
+        }
+        if (status != null) {
+            where.add("a.status = :status");
+            params.put("status", status.toUpperCase(Locale.ROOT));
+        }
+        if (from != null) {
+            where.add("a.timestamp >= :from");
+            params.put("from", from);
+        }
+        if (to != null) {
+            where.add("a.timestamp < :to");
+            params.put("to", to);
+        }
+        if (beforeTime != null) {
+            // (timestamp, id) < (beforeTime, before), written so the leading
+            // column bounds the index range
+            where.add("a.timestamp <= :beforeTime and (a.timestamp < :beforeTime or a.id < :before)");
+            params.put("beforeTime", beforeTime);
+            params.put("before", before);
+        }
+
+        String jpql = HISTORY_ROW + (where.isEmpty() ? "" : " where " + String.join(" and ", where))
+                + " order by a.timestamp desc, a.id desc";
+        TypedQuery<AuditLogSummary> query = entityManager.createQuery(jpql, AuditLogSummary.class);
+        params.forEach(query::setParameter);
+        // One extra row tells whether there is a next page
+        List<AuditLogSummary> rows = query.setMaxResults(size + 1).getResultList();
+
+        if (rows.size() <= size)
+            return new HistoryPage(rows, null);
+        List<AuditLogSummary> page = rows.subList(0, size);
+        return new HistoryPage(page, page.get(size - 1).getId());
     }
 
-    public List<AuditLog> getHistory(String serverId) {
-        if (serverId == null)
-            return auditLogRepository.findAll();
-        return auditLogRepository.findByServerIdOrderByTimestampDesc(serverId);
+    public AuditLog getEntry(Long id) {
+        return auditLogRepository.findById(id).orElse(null);
     }
 }
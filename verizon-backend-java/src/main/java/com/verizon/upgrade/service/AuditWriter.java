@@ -0,0 +1,170 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.model.AuditLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Write-behind for audit entries. Inserts and outcome updates go onto a
+ * bounded queue, and a single writer thread stores whatever has queued up in
+ * one transaction (up to {@code batchSize} entries, inserted as JDBC
+ * batches).
+ * <p>
+ * A full queue blocks the caller until the writer catches up rather than
+ * dropping entries. Entries are only touched by the writer once queued, and
+ * in queue order, so an outcome is always applied after its insert. After
+ * {@link #close()} entries are written on the caller's thread.
+ */
+@Slf4j
+class AuditWriter {
+
+    private static final long POLL_MS = 500;
+
+    private final TransactionTemplate transactions;
+    private final EntityManager entityManager;
+    private final int batchSize;
+    private final IntConsumer onWritten;
+    private final BlockingQueue<Op> queue;
+    private final Thread thread;
+
+    // Guards the check-then-enqueue against close()
+    private final Object lifecycle = new Object();
+    private volatile boolean open = true;
+
+    AuditWriter(TransactionTemplate transactions, EntityManager entityManager, int capacity, int batchSize,
+            IntConsumer onWritten) {
+        this.transactions = transactions;
+        this.entityManager = entityManager;
+        this.batchSize = Math.max(1, batchSize);
+        this.onWritten = onWritten;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.thread = new Thread(this::drain, "audit-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void insert(AuditLog entry) {
+        submit(new Op(entry, null, null));
+    }
+
+    void finish(AuditLog entry, String status, String output) {
+        submit(new Op(entry, status, output));
+    }
+
+    /**
+     * Writes everything still queued and stops the writer thread.
+     */
+    void close() {
+        synchronized (lifecycle) {
+            open = false;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything the writer didn't get to (e.g. interrupted while joining)
+        List<Op> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty())
+            write(rest);
+    }
+
+    private void submit(Op op) {
+        synchronized (lifecycle) {
+            if (open) {
+                if (!queue.offer(op)) {
+                    log.warn("Audit queue full ({} entries), waiting for the writer", queue.size());
+                    try {
+                        queue.put(op);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        // Not queued; fall through and write it here
+                        write(List.of(op));
+                    }
+                }
+                return;
+            }
+        }
+        write(List.of(op));
+    }
+
+    private void drain() {
+        List<Op> batch = new ArrayList<>(batchSize);
+        while (open || !queue.isEmpty()) {
+            try {
+                Op first = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Audit writer failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Op> batch) {
+        List<AuditLog> unsaved = new ArrayList<>();
+        for (Op op : batch) {
+            if (op.entry.getId() == null)
+                unsaved.add(op.entry);
+        }
+        try {
+            transactions.executeWithoutResult(status -> batch.forEach(this::apply));
+            onWritten.accept(batch.size());
+        } catch (RuntimeException e) {
+            // Rolled back: ids handed out by persist don't exist in the table
+            unsaved.forEach(entry -> entry.setId(null));
+            if (batch.size() == 1) {
+                Op op = batch.get(0);
+                log.error("Could not write audit entry for {} {} ({}): {}", op.entry.getHostname(),
+                        op.entry.getSoftwareName(), op.status != null ? op.status : op.entry.getStatus(),
+                        e.getMessage());
+                return;
+            }
+            // Retry one by one so a single bad entry doesn't take the batch with it
+            log.warn("Audit batch of {} failed, retrying entries individually: {}", batch.size(), e.getMessage());
+            batch.forEach(op -> write(List.of(op)));
+        }
+    }
+
+    private void apply(Op op) {
+        AuditLog entry = op.entry;
+        if (op.status != null) {
+            entry.setStatus(op.status);
+            entry.setLogOutput(op.output);
+        }
+        if (entry.getId() == null) {
+            entityManager.persist(entry);
+        } else if (!entityManager.contains(entry)) {
+            entityManager.merge(entry);
+        }
+    }
+
+    private static class Op {
+        final AuditLog entry;
+        final String status; // null for an insert
+        final String output;
+
+        Op(AuditLog entry, String status, String output) {
+            this.entry = entry;
+            this.status = status;
+            this.output = output;
+        }
+    }
+}
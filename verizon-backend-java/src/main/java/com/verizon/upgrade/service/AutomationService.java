@@ -1,19 +1,41 @@
 package com.verizon.upgrade.service;
 
-import com.verizon.upgrade.model.Application;
-import com.verizon.upgrade.model.Environment;
+import com.verizon.upgrade.model.AuditLog;
 import com.verizon.upgrade.model.MiddlewareComponent;
 import com.verizon.upgrade.model.Server;
+import com.verizon.upgrade.model.SoftwareArtifact;
+import com.verizon.upgrade.model.UpgradeRun;
+import com.verizon.upgrade.model.UpgradeRunStatus;
+import com.verizon.upgrade.parser.AnsibleRecap;
 import com.verizon.upgrade.repository.ApplicationRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
+@Slf4j
 public class AutomationService {
 
+    // Path to the enterprise master playbook
+    private static final String PLAYBOOK_PATH = "ansible/site.yml";
+    // Output kept in the audit entry itself; the full log is in the run's log file
+    private static final int AUDIT_TAIL_CHARS = 1800;
+    private static final String TRIGGERED_BY = "UI_USER";
+
     @Autowired
     private ApplicationRepository applicationRepository;
 
@@ -23,81 +45,357 @@ public class AutomationService {
     @Autowired
     private AuditService auditService;
 
-    @Async
-    public void runUpgrade(String serverIdStr, String componentName, String targetVersion) {
-        Long serverId = Long.valueOf(serverIdStr);
-        Optional<Server> serverOpt = serverRepository.findById(serverId);
-
-        if (serverOpt.isPresent()) {
-            Server targetServer = serverOpt.get();
-            MiddlewareComponent component = null;
-            for (MiddlewareComponent c : targetServer.getComponents()) {
-                if (c.getName().equalsIgnoreCase(componentName)) {
-                    component = c;
-                    break;
-                }
+    @Autowired
+    private PlaybookLogService playbookLogs;
+
+    @Autowired
+    private PlaybookRunner playbookRunner;
+
+    @Autowired
+    private UpgradeRunService upgradeRuns;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @Autowired
+    private ArtifactService artifactService;
+
+    @Autowired
+    private ArtifactStagingService stagingService;
+
+    @Autowired
+    @Qualifier("upgradeExecutor")
+    private ThreadPoolTaskExecutor upgradeExecutor;
+
+    @Value("${upgrade.run.timeout-minutes:60}")
+    private long timeoutMinutes;
+
+    // Binaries not in the artifact repository are downloaded from here (<repo_url>/jdk-<version>.tar.gz)
+    @Value("${upgrade.external-repo-url:http://repo.verizon.com/middleware/binaries}")
+    private String externalRepoUrl;
+
+    // Outcomes are recorded on the upgrade pool, or inline if it is saturated:
+    // a finished playbook must never be left unrecorded.
+    private final Executor completionExecutor = task -> {
+        try {
+            upgradeExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    };
+
+    /**
+     * Starts the upgrade playbook for one queued run. Returns once the process
+     * is launched; the future completes with the final state after the outcome
+     * has been recorded. Callers dispatch this through
+     * {@link UpgradeOrchestrator}.
+     */
+    public CompletableFuture<UpgradeRunStatus> startUpgrade(UpgradeRun run) {
+        Server targetServer = serverRepository.findById(Long.valueOf(run.getServerId())).orElse(null);
+        MiddlewareComponent component = targetServer == null ? null
+                : findComponent(targetServer, run.getSoftwareName());
+        if (component == null) {
+            upgradeRuns.finish(run, UpgradeRunStatus.FAILED, null, "Server or component not found");
+            return CompletableFuture.completedFuture(UpgradeRunStatus.FAILED);
+        }
+
+        String logRunId = playbookLogs.newRunId();
+        if (!upgradeRuns.markRunning(run, logRunId, targetServer.getHostname()))
+            return CompletableFuture.completedFuture(UpgradeRunStatus.CANCELLED);
+
+        RunLog runLog = playbookLogs.open(logRunId, Collections.singletonList(run.getServerId()),
+                Collections.singletonList(targetServer.getHostname()), run.getSoftwareName(), run.getTargetVersion());
+        AuditLog audit = auditService.start(run.getServerId(), targetServer.getHostname(), run.getSoftwareName(),
+                component.getCurrentVersion(), run.getTargetVersion(), TRIGGERED_BY, logRunId);
+        SoftwareArtifact artifact = artifactService.findLatest(component.getType(), run.getTargetVersion());
+
+        CompletableFuture<PlaybookRunner.Exit> exit;
+        try {
+            // Prepare command for Ansible Playbook execution
+            // extra-vars format: key1=val1 key2=val2
+            String extraVars = String.format(
+                    "target_software=%s target_version=%s install_path=%s repo_url=%s",
+                    component.getType(), run.getTargetVersion(), component.getInstallPath(), externalRepoUrl)
+                    + artifactVars(artifact)
+                    + stagedVars(artifact, run.getServerId());
+            exit = playbookRunner.start(Arrays.asList(
+                    "ansible-playbook",
+                    PLAYBOOK_PATH,
+                    "-i", targetServer.getHostname() + ",",
+                    "--extra-vars", extraVars), runLog, null, timeout());
+        } catch (IOException e) {
+            runLog.close(-1);
+            String message = "Error during automation: " + e.getMessage();
+            auditService.finish(audit, "FAILED", message);
+            upgradeRuns.finish(run, UpgradeRunStatus.FAILED, null, message);
+            return CompletableFuture.completedFuture(UpgradeRunStatus.FAILED);
+        }
+
+        return exit.thenApplyAsync(e -> completeUpgrade(run, audit, runLog, e), completionExecutor);
+    }
+
+    private UpgradeRunStatus completeUpgrade(UpgradeRun run, AuditLog audit, RunLog runLog,
+            PlaybookRunner.Exit exit) {
+        UpgradeRunStatus status = statusOf(exit, exit.exitCode == 0);
+        String output = runLog.tail(AUDIT_TAIL_CHARS);
+
+        if (status == UpgradeRunStatus.SUCCESS) {
+            markUpgraded(run.getServerId(), run.getSoftwareName(), run.getTargetVersion());
+            auditService.finish(audit, "SUCCESS", "Ansible playbook execution successful.\nOutput:\n" + output);
+            upgradeRuns.finish(run, status, exit.exitCode, null);
+        } else {
+            String message = describeFailure(exit, timeout());
+            auditService.finish(audit, status.name(), message + ". Output:\n" + output);
+            upgradeRuns.finish(run, status, exit.exitCode, message);
+        }
+        return status;
+    }
+
+    /**
+     * Upgrades a group of queued runs to the same target version with a single
+     * ansible-playbook run. Each host gets its own inventory line carrying its
+     * install path and software type; the per-host outcome is read back from
+     * the PLAY RECAP and recorded as a separate audit entry.
+     * <p>
+     * Servers sharing a hostname with an earlier wave member are upgraded one
+     * by one after the wave, since an inventory can only list a host once.
+     *
+     * @return future of run id to final state for every run
+     */
+    public CompletableFuture<Map<Long, UpgradeRunStatus>> startUpgradeWave(List<UpgradeRun> wave, int forks) {
+        Map<Long, UpgradeRunStatus> results = Collections.synchronizedMap(new LinkedHashMap<>());
+        List<WaveMember> members = new ArrayList<>();
+        List<UpgradeRun> separateRuns = new ArrayList<>();
+        Set<String> hostnames = new HashSet<>();
+        String logRunId = playbookLogs.newRunId();
+
+        for (UpgradeRun run : wave) {
+            Server server = serverRepository.findById(Long.valueOf(run.getServerId())).orElse(null);
+            MiddlewareComponent component = server == null ? null : findComponent(server, run.getSoftwareName());
+            if (component == null) {
+                upgradeRuns.finish(run, UpgradeRunStatus.FAILED, null, "Server or component not found");
+                results.put(run.getId(), UpgradeRunStatus.FAILED);
+            } else if (!hostnames.add(server.getHostname())) {
+                separateRuns.add(run);
+            } else if (!upgradeRuns.markRunning(run, logRunId, server.getHostname())) {
+                results.put(run.getId(), UpgradeRunStatus.CANCELLED);
+            } else {
+                members.add(new WaveMember(run, server.getHostname(), component));
+            }
+        }
+
+        CompletableFuture<Void> done = members.isEmpty() ? CompletableFuture.completedFuture(null)
+                : startWavePlaybook(logRunId, members, forks, results);
+        for (UpgradeRun run : separateRuns) {
+            done = done.thenCompose(v -> startUpgrade(run)).thenAccept(status -> results.put(run.getId(), status));
+        }
+        return done.thenApply(v -> results);
+    }
+
+    private CompletableFuture<Void> startWavePlaybook(String logRunId, List<WaveMember> members, int forks,
+            Map<Long, UpgradeRunStatus> results) {
+        String software = members.get(0).run.getSoftwareName();
+        String targetVersion = members.get(0).run.getTargetVersion();
+        List<String> serverIds = new ArrayList<>();
+        List<String> hostnames = new ArrayList<>();
+        for (WaveMember m : members) {
+            serverIds.add(m.run.getServerId());
+            hostnames.add(m.hostname);
+        }
+        RunLog runLog = playbookLogs.open(logRunId, serverIds, hostnames, software, targetVersion);
+        for (WaveMember m : members) {
+            m.audit = auditService.start(m.run.getServerId(), m.hostname, m.run.getSoftwareName(),
+                    m.component.getCurrentVersion(), targetVersion, TRIGGERED_BY, logRunId);
+        }
+        AnsibleRecap.Collector recap = new AnsibleRecap.Collector(hostnames);
+
+        SoftwareArtifact artifact = artifactService.findLatest(members.get(0).component.getType(), targetVersion);
+        Duration timeout = waveTimeout(members.size(), forks);
+        Path inventory = null;
+        CompletableFuture<PlaybookRunner.Exit> exit;
+        try {
+            inventory = writeInventory(members, artifact);
+            exit = playbookRunner.start(Arrays.asList(
+                    "ansible-playbook",
+                    PLAYBOOK_PATH,
+                    "-i", inventory.toString(),
+                    "--forks", String.valueOf(forks),
+                    "--extra-vars", String.format("target_version=%s repo_url=%s", targetVersion, externalRepoUrl)
+                            + artifactVars(artifact)),
+                    runLog, recap, timeout);
+        } catch (IOException e) {
+            log.error("Upgrade wave to {} failed to start", targetVersion, e);
+            runLog.close(-1);
+            deleteInventory(inventory);
+            String message = "Error during automation: " + e.getMessage();
+            for (WaveMember m : members) {
+                auditService.finish(m.audit, "FAILED", message);
+                upgradeRuns.finish(m.run, UpgradeRunStatus.FAILED, null, message);
+                results.put(m.run.getId(), UpgradeRunStatus.FAILED);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Path startedInventory = inventory;
+        return exit.thenAcceptAsync(e -> completeWave(members, recap, e, timeout, results), completionExecutor)
+                .whenComplete((v, e) -> deleteInventory(startedInventory));
+    }
+
+    private void completeWave(List<WaveMember> members, AnsibleRecap.Collector recap, PlaybookRunner.Exit exit,
+            Duration timeout, Map<Long, UpgradeRunStatus> results) {
+        log.info("Upgrade wave to {} on {} hosts finished with exit code {} ({})",
+                members.get(0).run.getTargetVersion(), members.size(), exit.exitCode, exit.outcome);
+
+        for (WaveMember m : members) {
+            String hostOutput = recap.linesForHost(m.hostname);
+            AnsibleRecap.HostResult hostResult = recap.getResults().get(m.hostname);
+            UpgradeRunStatus status = statusOf(exit, hostResult != null && hostResult.isSuccess());
+
+            if (status == UpgradeRunStatus.SUCCESS) {
+                markUpgraded(m.run.getServerId(), m.run.getSoftwareName(), m.run.getTargetVersion());
+                auditService.finish(m.audit, "SUCCESS", "Ansible playbook execution successful (wave of "
+                        + members.size() + ").\nOutput:\n" + hostOutput);
+                upgradeRuns.finish(m.run, status, exit.exitCode, null);
+            } else {
+                String reason = hostResult == null ? "host missing from PLAY RECAP"
+                        : "failed=" + hostResult.getFailed() + " unreachable=" + hostResult.getUnreachable();
+                String message = status == UpgradeRunStatus.FAILED
+                        ? "Ansible failed in wave (exit code " + exit.exitCode + ", " + reason + ")"
+                        : describeFailure(exit, timeout);
+                auditService.finish(m.audit, status.name(), message + ". Output:\n" + hostOutput);
+                upgradeRuns.finish(m.run, status, exit.exitCode, message);
             }
+            results.put(m.run.getId(), status);
+        }
+    }
 
-            if (component != null) {
-                String fromVersion = component.getCurrentVersion();
-
-                try {
-                    // Prepare command for Ansible Playbook execution
-                    // extra-vars format: key1=val1 key2=val2
-                    String extraVars = String.format(
-                            "target_software=%s target_version=%s install_path=%s repo_url=%s",
-                            component.getType(), targetVersion, component.getInstallPath(),
-                            "http://repo.verizon.com/middleware/binaries");
-
-                    // Path to the enterprise master playbook
-                    String playbookPath = "ansible/site.yml";
-
-                    ProcessBuilder pb = new ProcessBuilder(
-                            "ansible-playbook",
-                            playbookPath,
-                            "-i", targetServer.getHostname() + ",",
-                            "--extra-vars", extraVars);
-
-                    pb.redirectErrorStream(true);
-                    Process process = pb.start();
-
-                    // Capture output for logging/auditing
-                    java.io.BufferedReader reader = new java.io.BufferedReader(
-                            new java.io.InputStreamReader(process.getInputStream()));
-                    StringBuilder output = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        output.append(line).append("\n");
-                    }
-
-                    int exitCode = process.waitFor();
-
-                    if (exitCode == 0) {
-                        // Update Database on success
-                        component.setCurrentVersion(targetVersion);
-                        component.setStatus("Up to Date");
-
-                        boolean allUpToDate = targetServer.getComponents().stream()
-                                .allMatch(c -> "Up to Date".equals(c.getStatus()));
-                        if (allUpToDate) {
-                            targetServer.setStatus("Up to Date");
-                        }
-
-                        serverRepository.save(targetServer);
-
-                        auditService.log(serverIdStr, targetServer.getHostname(), componentName, fromVersion,
-                                targetVersion, "SUCCESS", "UI_USER",
-                                "Ansible playbook execution successful.\nOutput:\n" + output.toString());
-                    } else {
-                        throw new RuntimeException(
-                                "Ansible failed with exit code " + exitCode + ". Output:\n" + output.toString());
-                    }
-
-                } catch (Exception e) {
-                    auditService.log(serverIdStr, targetServer.getHostname(), componentName, fromVersion,
-                            targetVersion, "FAILED", "UI_USER", "Error during automation: " + e.getMessage());
-                }
+    /**
+     * The staged copy is a host variable: each wave member may or may not
+     * have one.
+     */
+    private Path writeInventory(List<WaveMember> members, SoftwareArtifact artifact) throws IOException {
+        Path inventory = Files.createTempFile("upgrade-wave-", ".ini");
+        try (BufferedWriter writer = Files.newBufferedWriter(inventory)) {
+            writer.write("[upgrade_wave]\n");
+            for (WaveMember m : members) {
+                writer.write(String.format("%s target_software=\"%s\" install_path=\"%s\" server_id=%s%s%n",
+                        m.hostname, m.component.getType(), m.component.getInstallPath(), m.run.getServerId(),
+                        stagedVars(artifact, m.run.getServerId())));
             }
         }
+        return inventory;
+    }
+
+    private void deleteInventory(Path inventory) {
+        if (inventory == null)
+            return;
+        try {
+            Files.deleteIfExists(inventory);
+        } catch (IOException e) {
+            log.warn("Could not delete inventory {}", inventory, e);
+        }
+    }
+
+    private Duration timeout() {
+        return Duration.ofMinutes(timeoutMinutes);
+    }
+
+    /**
+     * The per-run timeout once for every {@code forks} hosts: Ansible runs
+     * each task on at most that many hosts at a time, so a wave's hosts go
+     * through in that many batches.
+     */
+    private Duration waveTimeout(int hosts, int forks) {
+        int batches = (hosts + Math.max(1, forks) - 1) / Math.max(1, forks);
+        return timeout().multipliedBy(Math.max(1, batches));
+    }
+
+    private UpgradeRunStatus statusOf(PlaybookRunner.Exit exit, boolean succeeded) {
+        switch (exit.outcome) {
+            case TIMED_OUT:
+                return UpgradeRunStatus.TIMED_OUT;
+            case CANCELLED:
+                return UpgradeRunStatus.CANCELLED;
+            default:
+                return succeeded ? UpgradeRunStatus.SUCCESS : UpgradeRunStatus.FAILED;
+        }
+    }
+
+    private String describeFailure(PlaybookRunner.Exit exit, Duration timeout) {
+        switch (exit.outcome) {
+            case TIMED_OUT:
+                return "Ansible timed out after " + timeout.toMinutes() + " minutes";
+            case CANCELLED:
+                return "Ansible run cancelled";
+            default:
+                return "Ansible failed with exit code " + exit.exitCode;
+        }
+    }
+
+    /**
+     * Where to download the binary, its size and the SHA-256 to check it
+     * against (unless it is still being checksummed), when the artifact is in
+     * the repository. Otherwise the playbook falls back to {@code repo_url}.
+     */
+    private String artifactVars(SoftwareArtifact artifact) {
+        if (artifact == null)
+            return "";
+        String vars = " artifact_url=" + artifactService.downloadUrl(artifact) + " artifact_size="
+                + artifact.getSizeBytes();
+        return artifact.getSha256() == null ? vars : vars + " artifact_sha256=" + artifact.getSha256();
+    }
+
+    /**
+     * The verified copy pre-staged on the server, which the playbook installs
+     * from instead of downloading.
+     */
+    private String stagedVars(SoftwareArtifact artifact, String serverId) {
+        String stagedPath = artifact == null ? null : stagingService.stagedPath(serverId, artifact.getSha256());
+        return stagedPath == null ? "" : " staged_artifact=" + stagedPath;
+    }
+
+    private MiddlewareComponent findComponent(Server server, String componentName) {
+        for (MiddlewareComponent c : server.getComponents()) {
+            if (c.getName().equalsIgnoreCase(componentName))
+                return c;
+        }
+        return null;
+    }
+
+    /**
+     * Re-reads the server so edits made while the playbook ran aren't
+     * overwritten.
+     */
+    private void markUpgraded(String serverId, String componentName, String targetVersion) {
+        Server server = serverRepository.findById(Long.valueOf(serverId)).orElse(null);
+        MiddlewareComponent component = server == null ? null : findComponent(server, componentName);
+        if (component == null)
+            return;
+
+        // Update Database on success
+        component.setCurrentVersion(targetVersion);
+        component.setStatus("Up to Date");
+
+        boolean allUpToDate = server.getComponents().stream()
+                .allMatch(c -> "Up to Date".equals(c.getStatus()));
+        if (allUpToDate) {
+            server.setStatus("Up to Date");
+        }
+
+        serverRepository.save(server);
+        events.publishEvent(new InventoryChangedEvent("server " + serverId + " upgraded", server.getAppId(), false));
+    }
+
+    private static class WaveMember {
+        final UpgradeRun run;
+        final String hostname;
+        final MiddlewareComponent component;
+        AuditLog audit;
+
+        WaveMember(UpgradeRun run, String hostname, MiddlewareComponent component) {
+            this.run = run;
+            this.hostname = hostname;
+            this.component = component;
+        }
     }
 }
@@ -1,19 +1,34 @@
 package com.verizon.upgrade.service;
 
+import com.verizon.upgrade.cache.CacheRegistry;
+import com.verizon.upgrade.cache.ReadThroughCache;
+import com.verizon.upgrade.dto.InventoryChanges;
 import com.verizon.upgrade.model.*;
 import com.verizon.upgrade.repository.ApplicationRepository;
 import com.verizon.upgrade.repository.EnvironmentRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import javax.annotation.PostConstruct;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
+@Slf4j
 public class DataService {
 
     @Autowired
@@ -22,29 +37,109 @@ public class DataService {
     @Autowired
     private EnvironmentRepository environmentRepository;
 
+    @Autowired
+    private CacheRegistry cacheRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @Autowired
+    private InventoryRevisions revisions;
+
+    // Polled by every open dashboard; dropped on any InventoryChangedEvent
+    private ReadThroughCache<String, List<Application>> allApplications;
+    private ReadThroughCache<String, Application> applicationsByVastId;
+
     @PostConstruct
     public void init() {
+        allApplications = cacheRegistry.create("applications");
+        applicationsByVastId = cacheRegistry.create("applicationsByVastId");
     }
 
     public List<Application> getAllApplications() {
-        return applicationRepository.findAll();
+        return allApplications.get("all", k -> Collections.unmodifiableList(applicationRepository.findAll()));
     }
 
     public Application getApplicationByVastId(String vastId) {
-        return applicationRepository.findByVastId(vastId).orElse(null);
+        return applicationsByVastId.get(vastId, k -> applicationRepository.findByVastId(k).orElse(null));
+    }
+
+    /**
+     * Applications changed after the given inventory revision (see
+     * {@link InventoryRevisions}).
+     */
+    public InventoryChanges getChangesSince(long since) {
+        InventoryRevisions.Delta delta = revisions.since(since);
+        if (delta == null || delta.changes.stream().anyMatch(c -> c.applicationId == null)) {
+            long revision = revisions.current();
+            return InventoryChanges.builder()
+                    .since(since)
+                    .revision(revision)
+                    .resync(true)
+                    .applications(getAllApplications())
+                    .deletedApplicationIds(Collections.emptyList())
+                    .build();
+        }
+
+        // Last change per application decides whether it still exists
+        Map<Long, Boolean> deletedById = new LinkedHashMap<>();
+        for (InventoryRevisions.Change change : delta.changes) {
+            deletedById.put(change.applicationId, change.deleted);
+        }
+        List<Long> changedIds = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        deletedById.forEach((id, deleted) -> (deleted ? deletedIds : changedIds).add(id));
+
+        List<Application> changed = changedIds.isEmpty() ? Collections.emptyList()
+                : applicationRepository.findAllById(changedIds);
+        // Deleted since the change was logged, and its delete not logged yet
+        Set<Long> found = new HashSet<>();
+        changed.forEach(app -> found.add(app.getId()));
+        changedIds.stream().filter(id -> !found.contains(id)).forEach(deletedIds::add);
+
+        return InventoryChanges.builder()
+                .since(since)
+                .revision(delta.revision)
+                .resync(false)
+                .applications(changed)
+                .deletedApplicationIds(deletedIds)
+                .build();
+    }
+
+    /**
+     * Drops the read caches, then moves the revision on, so a client can never
+     * get the new revision's ETag with data from before the write.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onInventoryChanged(InventoryChangedEvent event) {
+        allApplications.invalidateAll();
+        applicationsByVastId.invalidateAll();
+        revisions.record(event);
+        log.debug("Inventory changed: {}", event.getReason());
     }
 
     public Application getApplicationById(Long id) {
-        return applicationRepository.findById(id).orElse(null);
+        return applicationRepository.findWithInventoryById(id).orElse(null);
     }
 
+    /**
+     * Creates or edits an application together with its environments, servers
+     * and components.
+     * <p>
+     * An edit is applied as a diff against what is stored: environments are
+     * matched by name, servers by hostname and components by name. Matched rows
+     * are updated in place, so they keep their ids (and with them the history
+     * and upgrade runs that reference them), as well as their IP and status.
+     * Only what is missing from the payload is deleted and only what is new is
+     * inserted. A server sent without components keeps the ones it has.
+     */
     @Transactional
     public Application saveApplicationWithInventory(String name, String vastId, List<Map<String, Object>> envsData,
             Long existingId) {
 
         Application app;
         if (existingId != null) {
-            app = applicationRepository.findById(existingId).orElse(new Application());
+            app = applicationRepository.findWithInventoryById(existingId).orElse(new Application());
         } else {
             Optional<Application> existingByVast = applicationRepository.findByVastId(vastId);
             app = existingByVast.orElse(new Application());
@@ -52,23 +147,21 @@ public class DataService {
 
         app.setName(name);
         app.setVastId(vastId);
-
-        // If the application is already persisted, we need to clear environments to
-        // handle removals
-        if (app.getId() != null) {
-            if (app.getEnvironments() != null) {
-                app.getEnvironments().clear();
-            } else {
-                app.setEnvironments(new ArrayList<>());
-            }
-        } else {
+        if (app.getEnvironments() == null) {
             app.setEnvironments(new ArrayList<>());
         }
 
-        // Pre-save to ensure we have an ID for the application
-        app = applicationRepository.saveAndFlush(app);
+        // Ids come from a sequence, so this assigns one without an insert
+        app = applicationRepository.save(app);
         final Long appId = app.getId();
 
+        InventoryDiff diff = new InventoryDiff();
+        Map<String, Environment> existingEnvs = new HashMap<>();
+        for (Environment env : app.getEnvironments()) {
+            existingEnvs.put(key(env.getName()), env);
+        }
+
+        Set<Environment> keptEnvs = identitySet();
         if (envsData != null) {
             for (Map<String, Object> envData : envsData) {
                 String envName = (String) envData.get("name");
@@ -76,78 +169,180 @@ public class DataService {
                     continue;
                 }
 
-                Environment env = new Environment();
+                Environment env = existingEnvs.get(key(envName));
+                if (env == null) {
+                    env = new Environment();
+                    env.setAppId(appId);
+                    env.setServers(new ArrayList<>());
+                    env = environmentRepository.save(env);
+                    app.getEnvironments().add(env);
+                    existingEnvs.put(key(envName), env);
+                }
                 env.setName(envName);
-                env.setAppId(appId);
-                env.setServers(new ArrayList<>());
-
-                // Save environment to get its ID
-                env = environmentRepository.saveAndFlush(env);
-                final Long envId = env.getId();
+                keptEnvs.add(env);
 
                 @SuppressWarnings("unchecked")
                 List<Map<String, Object>> serversData = (List<Map<String, Object>>) envData.get("servers");
-                if (serversData != null) {
-                    for (int i = 0; i < serversData.size(); i++) {
-                        Map<String, Object> serverData = serversData.get(i);
-                        String hostname = (String) serverData.get("hostname");
-                        if (hostname == null || hostname.isEmpty())
-                            continue;
-
-                        Server server = new Server();
-                        server.setHostname(hostname);
-                        server.setIp("10." + (int) (Math.random() * 255) + "." + (int) (Math.random() * 255) + "."
-                                + (i + 1));
-                        server.setAppId(appId);
-                        server.setEnvId(envId);
-                        server.setStatus("Outdated");
-
-                        List<MiddlewareComponent> components = new ArrayList<>();
-                        @SuppressWarnings("unchecked")
-                        List<Map<String, Object>> componentsData = (List<Map<String, Object>>) serverData
-                                .get("components");
-
-                        if (componentsData != null && !componentsData.isEmpty()) {
-                            for (Map<String, Object> compData : componentsData) {
-                                MiddlewareComponent comp = new MiddlewareComponent(
-                                        (String) compData.get("name"),
-                                        (String) compData.get("type"),
-                                        (String) compData.get("currentVersion"),
-                                        (String) compData.get("vulnerabilityCount"),
-                                        (String) compData.get("targetVersion"),
-                                        (String) compData.get("status"),
-                                        (String) compData.get("installPath"));
-                                components.add(comp);
-                            }
-                        } else {
-                            // Default Java component if none provided
-                            MiddlewareComponent java = new MiddlewareComponent("Java", "Java", "1.8.0.211",
-                                    "2 Critical",
-                                    "11.0.12", "Outdated", "/opt/verizon/java");
-                            components.add(java);
-                        }
-
-                        server.setComponents(components);
-                        env.getServers().add(server);
+                mergeServers(env, appId, serversData, diff);
+            }
+        }
+
+        for (Environment env : app.getEnvironments()) {
+            if (!keptEnvs.contains(env) && env.getServers() != null) {
+                diff.serversDeleted += env.getServers().size();
+            }
+        }
+        // Orphan removal deletes the environment and cascades to its servers
+        app.getEnvironments().removeIf(env -> !keptEnvs.contains(env));
+
+        events.publishEvent(new InventoryChangedEvent("application saved", appId, false));
+        log.info("Saved application {} ({}): servers +{} ~{} -{}, components +{} ~{} -{}", vastId, appId,
+                diff.serversAdded, diff.serversUpdated, diff.serversDeleted,
+                diff.componentsAdded, diff.componentsUpdated, diff.componentsDeleted);
+        return app;
+    }
+
+    private void mergeServers(Environment env, Long appId, List<Map<String, Object>> serversData, InventoryDiff diff) {
+        if (env.getServers() == null) {
+            env.setServers(new ArrayList<>());
+        }
+        Map<String, Server> existing = new HashMap<>();
+        for (Server server : env.getServers()) {
+            existing.put(key(server.getHostname()), server);
+        }
+
+        Set<Server> kept = identitySet();
+        if (serversData != null) {
+            for (int i = 0; i < serversData.size(); i++) {
+                Map<String, Object> serverData = serversData.get(i);
+                String hostname = (String) serverData.get("hostname");
+                if (hostname == null || hostname.isEmpty())
+                    continue;
+
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> componentsData = (List<Map<String, Object>>) serverData
+                        .get("components");
+
+                Server server = existing.get(key(hostname));
+                if (server == null) {
+                    server = new Server();
+                    server.setHostname(hostname);
+                    server.setIp("10." + (int) (Math.random() * 255) + "." + (int) (Math.random() * 255) + "."
+                            + (i + 1));
+                    server.setAppId(appId);
+                    server.setEnvId(env.getId());
+                    server.setStatus("Outdated");
+                    server.setComponents(new ArrayList<>());
+                    if (componentsData == null || componentsData.isEmpty()) {
+                        // Default Java component if none provided
+                        server.getComponents().add(new MiddlewareComponent("Java", "Java", "1.8.0.211",
+                                "2 Critical", "11.0.12", "Outdated", "/opt/verizon/java"));
+                        diff.componentsAdded++;
                     }
+                    env.getServers().add(server);
+                    existing.put(key(hostname), server);
+                    diff.serversAdded++;
+                } else if (!kept.contains(server) && !hostname.equals(server.getHostname())) {
+                    server.setHostname(hostname);
+                    diff.serversUpdated++;
+                }
+                kept.add(server);
+
+                if (componentsData != null && !componentsData.isEmpty()) {
+                    mergeComponents(server, componentsData, diff);
                 }
-                // Save environment again to persist servers
-                environmentRepository.save(env);
-                app.getEnvironments().add(env);
             }
         }
 
-        return applicationRepository.save(app);
+        diff.serversDeleted += env.getServers().size() - kept.size();
+        env.getServers().removeIf(server -> !kept.contains(server));
+    }
+
+    private void mergeComponents(Server server, List<Map<String, Object>> componentsData, InventoryDiff diff) {
+        if (server.getComponents() == null) {
+            server.setComponents(new ArrayList<>());
+        }
+        Map<String, MiddlewareComponent> existing = new HashMap<>();
+        for (MiddlewareComponent comp : server.getComponents()) {
+            existing.putIfAbsent(comp.getName(), comp);
+        }
+
+        Set<MiddlewareComponent> kept = identitySet();
+        for (Map<String, Object> compData : componentsData) {
+            String compName = (String) compData.get("name");
+            MiddlewareComponent comp = existing.get(compName);
+            if (comp == null) {
+                comp = new MiddlewareComponent(
+                        compName,
+                        (String) compData.get("type"),
+                        (String) compData.get("currentVersion"),
+                        (String) compData.get("vulnerabilityCount"),
+                        (String) compData.get("targetVersion"),
+                        (String) compData.get("status"),
+                        (String) compData.get("installPath"));
+                server.getComponents().add(comp);
+                existing.put(compName, comp);
+                diff.componentsAdded++;
+            } else {
+                boolean changed = false;
+                changed |= apply(comp.getType(), compData.get("type"), comp::setType);
+                changed |= apply(comp.getCurrentVersion(), compData.get("currentVersion"), comp::setCurrentVersion);
+                changed |= apply(comp.getVulnerabilityCount(), compData.get("vulnerabilityCount"),
+                        comp::setVulnerabilityCount);
+                changed |= apply(comp.getTargetVersion(), compData.get("targetVersion"), comp::setTargetVersion);
+                changed |= apply(comp.getStatus(), compData.get("status"), comp::setStatus);
+                changed |= apply(comp.getInstallPath(), compData.get("installPath"), comp::setInstallPath);
+                if (changed && !kept.contains(comp)) {
+                    diff.componentsUpdated++;
+                }
+            }
+            kept.add(comp);
+        }
+
+        diff.componentsDeleted += server.getComponents().size() - kept.size();
+        server.getComponents().removeIf(comp -> !kept.contains(comp));
+    }
+
+    /**
+     * Sets a field from the payload when a value was sent and differs, so
+     * unchanged rows stay clean and produce no UPDATE.
+     */
+    private static boolean apply(String current, Object incoming, Consumer<String> setter) {
+        if (incoming == null || incoming.equals(current))
+            return false;
+        setter.accept((String) incoming);
+        return true;
+    }
+
+    // Entities use Lombok's value-based hashCode, which covers mutable fields
+    private static <T> Set<T> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private static String key(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static class InventoryDiff {
+        int serversAdded;
+        int serversUpdated;
+        int serversDeleted;
+        int componentsAdded;
+        int componentsUpdated;
+        int componentsDeleted;
     }
 
     public Application createApplication(Application newApp) {
-        return applicationRepository.save(newApp);
+        Application saved = applicationRepository.save(newApp);
+        events.publishEvent(new InventoryChangedEvent("application created", saved.getId(), false));
+        return saved;
     }
 
     public boolean updateApplication(Long id, Application updatedApp) {
         if (applicationRepository.existsById(id)) {
             updatedApp.setId(id);
             applicationRepository.save(updatedApp);
+            events.publishEvent(new InventoryChangedEvent("application updated", id, false));
             return true;
         }
         return false;
@@ -157,6 +352,7 @@ public class DataService {
     public boolean deleteApplication(Long id) {
         if (applicationRepository.existsById(id)) {
             applicationRepository.deleteById(id);
+            events.publishEvent(new InventoryChangedEvent("application deleted", id, true));
             return true;
         }
         return false;
@@ -0,0 +1,40 @@
+package com.verizon.upgrade.service;
+
+/**
+ * Published when applications, environments, servers or components are
+ * written, so cached inventory reads are dropped and the inventory revision
+ * moves on. Listeners run after the publishing transaction commits.
+ */
+public class InventoryChangedEvent {
+    private final String reason;
+    private final Long applicationId;
+    private final boolean deleted;
+
+    /**
+     * A change that may touch any application (e.g. a bulk import).
+     */
+    public InventoryChangedEvent(String reason) {
+        this(reason, null, false);
+    }
+
+    public InventoryChangedEvent(String reason, Long applicationId, boolean deleted) {
+        this.reason = reason;
+        this.applicationId = applicationId;
+        this.deleted = deleted;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * The application written, or null if the change isn't limited to one.
+     */
+    public Long getApplicationId() {
+        return applicationId;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+}
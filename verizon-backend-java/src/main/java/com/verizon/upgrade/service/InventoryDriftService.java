@@ -0,0 +1,244 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.cache.CacheRegistry;
+import com.verizon.upgrade.cache.ReadThroughCache;
+import com.verizon.upgrade.dto.DriftCounts;
+import com.verizon.upgrade.dto.EnvironmentDrift;
+import com.verizon.upgrade.dto.InventoryDrift;
+import com.verizon.upgrade.dto.SoftwareDrift;
+import com.verizon.upgrade.model.Environment;
+import com.verizon.upgrade.repository.EnvironmentRepository;
+import com.verizon.upgrade.repository.MiddlewareComponentRepository;
+import com.verizon.upgrade.repository.ServerRepository;
+import com.verizon.upgrade.version.Version;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+
+/**
+ * Fleet-wide version drift rollups for the dashboards: server and component
+ * status counts per environment, and component counts per software type and
+ * version, with vulnerability totals.
+ * <p>
+ * Two GROUP BY queries do the counting (servers by environment and status,
+ * components by environment, type, version, status and vulnerability count,
+ * summing their critical counts);
+ * the grouped rows are then folded into the rollups here, so both the work
+ * and the payload grow with the number of groups, not with the fleet.
+ */
+@Service
+public class InventoryDriftService {
+
+    private static final String UP_TO_DATE = "Up to Date";
+    private static final String OUTDATED = "Outdated";
+    private static final String VULNERABLE = "Vulnerable";
+
+    @Autowired
+    private ServerRepository serverRepository;
+
+    @Autowired
+    private MiddlewareComponentRepository componentRepository;
+
+    @Autowired
+    private EnvironmentRepository environmentRepository;
+
+    @Autowired
+    private CacheRegistry cacheRegistry;
+
+    // Keyed by "appId/envId"; dropped on any InventoryChangedEvent
+    private ReadThroughCache<String, InventoryDrift> drift;
+
+    @PostConstruct
+    public void init() {
+        drift = cacheRegistry.create("inventoryDrift");
+    }
+
+    /**
+     * Rollups over the whole inventory, or one application or environment.
+     */
+    public InventoryDrift drift(Long appId, Long envId) {
+        return drift.get(appId + "/" + envId, k -> compute(appId, envId));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onInventoryChanged(InventoryChangedEvent event) {
+        drift.invalidateAll();
+    }
+
+    private InventoryDrift compute(Long appId, Long envId) {
+        Map<Long, Group> environments = new LinkedHashMap<>();
+        Group total = new Group();
+
+        for (Object[] row : serverCounts(appId, envId)) {
+            Long rowAppId = (Long) row[0];
+            Long rowEnvId = (Long) row[1];
+            String status = (String) row[2];
+            long count = (Long) row[3];
+            environment(environments, rowAppId, rowEnvId).servers.add(status, count);
+            total.servers.add(status, count);
+        }
+
+        // type -> version -> counts
+        Map<String, Map<String, Group>> software = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Object[] row : componentCounts(appId, envId)) {
+            Long rowAppId = (Long) row[0];
+            Long rowEnvId = (Long) row[1];
+            String type = row[2] == null ? "" : (String) row[2];
+            String version = row[3] == null ? "" : (String) row[3];
+            String status = (String) row[4];
+            String vulnerabilityCount = (String) row[5];
+            long count = (Long) row[6];
+            long critical = row[7] == null ? 0 : ((Number) row[7]).longValue();
+
+            Group versionGroup = software.computeIfAbsent(type, t -> new HashMap<>())
+                    .computeIfAbsent(version, v -> new Group());
+            for (Group group : Arrays.asList(environment(environments, rowAppId, rowEnvId), versionGroup, total)) {
+                group.components.add(status, count);
+                group.vulnerabilities += leadingNumber(vulnerabilityCount) * count;
+                group.criticalVulnerabilities += critical;
+            }
+        }
+
+        Map<Long, String> envNames = new HashMap<>();
+        Set<Long> envIds = new HashSet<>(environments.keySet());
+        envIds.remove(null);
+        for (Environment environment : environmentRepository.findAllById(envIds)) {
+            envNames.put(environment.getId(), environment.getName());
+        }
+
+        List<EnvironmentDrift> environmentRows = new ArrayList<>();
+        for (Map.Entry<Long, Group> entry : environments.entrySet()) {
+            Group group = entry.getValue();
+            environmentRows.add(EnvironmentDrift.builder()
+                    .appId(group.appId)
+                    .envId(entry.getKey())
+                    .envName(envNames.get(entry.getKey()))
+                    .servers(group.servers.toDto())
+                    .components(group.components.toDto())
+                    .vulnerabilities(group.vulnerabilities)
+                    .criticalVulnerabilities(group.criticalVulnerabilities)
+                    .build());
+        }
+        environmentRows.sort(Comparator.comparing(EnvironmentDrift::getAppId, Comparator.nullsLast(Long::compare))
+                .thenComparing(EnvironmentDrift::getEnvId, Comparator.nullsLast(Long::compare)));
+
+        return InventoryDrift.builder()
+                .appId(appId)
+                .envId(envId)
+                .servers(total.servers.toDto())
+                .components(total.components.toDto())
+                .vulnerabilities(total.vulnerabilities)
+                .criticalVulnerabilities(total.criticalVulnerabilities)
+                .environments(environmentRows)
+                .software(softwareRows(software))
+                .build();
+    }
+
+    private List<Object[]> serverCounts(Long appId, Long envId) {
+        if (appId != null && envId != null)
+            return serverRepository.countByEnvironmentAndStatusForAppAndEnv(appId, envId);
+        if (appId != null)
+            return serverRepository.countByEnvironmentAndStatusForApp(appId);
+        if (envId != null)
+            return serverRepository.countByEnvironmentAndStatusForEnv(envId);
+        return serverRepository.countByEnvironmentAndStatus();
+    }
+
+    private List<Object[]> componentCounts(Long appId, Long envId) {
+        if (appId != null && envId != null)
+            return componentRepository.countByEnvironmentVersionAndStatusForAppAndEnv(appId, envId);
+        if (appId != null)
+            return componentRepository.countByEnvironmentVersionAndStatusForApp(appId);
+        if (envId != null)
+            return componentRepository.countByEnvironmentVersionAndStatusForEnv(envId);
+        return componentRepository.countByEnvironmentVersionAndStatus();
+    }
+
+    /**
+     * One row per type and version, newest version of each type first.
+     */
+    private List<SoftwareDrift> softwareRows(Map<String, Map<String, Group>> software) {
+        List<SoftwareDrift> rows = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Group>> type : software.entrySet()) {
+            List<Map.Entry<String, Group>> versions = new ArrayList<>(type.getValue().entrySet());
+            versions.sort((a, b) -> compareVersions(b.getKey(), a.getKey()));
+
+            int behind = 0;
+            Version previous = null;
+            for (Map.Entry<String, Group> version : versions) {
+                Version parsed = Version.parse(version.getKey());
+                if (previous != null && parsed.compareTo(previous) < 0)
+                    behind++;
+                previous = parsed;
+
+                Group group = version.getValue();
+                rows.add(SoftwareDrift.builder()
+                        .type(type.getKey())
+                        .version(version.getKey())
+                        .versionsBehind(behind)
+                        .components(group.components.toDto())
+                        .vulnerabilities(group.vulnerabilities)
+                        .criticalVulnerabilities(group.criticalVulnerabilities)
+                        .build());
+            }
+        }
+        return rows;
+    }
+
+    private static int compareVersions(String a, String b) {
+        int c = Version.parse(a).compareTo(Version.parse(b));
+        return c != 0 ? c : a.compareTo(b);
+    }
+
+    private static Group environment(Map<Long, Group> environments, Long appId, Long envId) {
+        Group group = environments.computeIfAbsent(envId, k -> new Group());
+        group.appId = appId;
+        return group;
+    }
+
+    /**
+     * The leading number in a {@code vulnerabilityCount} such as "3 Critical",
+     * "5 (3 Critical)" or "0"; 0 if there is none.
+     */
+    static long leadingNumber(String value) {
+        if (value == null)
+            return 0;
+        String s = value.trim();
+        long n = 0;
+        for (int i = 0; i < s.length() && Character.isDigit(s.charAt(i)) && n < Integer.MAX_VALUE; i++)
+            n = n * 10 + (s.charAt(i) - '0');
+        return n;
+    }
+
+    private static final class Group {
+        Long appId;
+        final StatusCounts servers = new StatusCounts();
+        final StatusCounts components = new StatusCounts();
+        long vulnerabilities;
+        long criticalVulnerabilities;
+    }
+
+    private static final class StatusCounts {
+        long total;
+        long upToDate;
+        long outdated;
+        long vulnerable;
+
+        void add(String status, long count) {
+            total += count;
+            if (UP_TO_DATE.equals(status))
+                upToDate += count;
+            else if (OUTDATED.equals(status))
+                outdated += count;
+            else if (VULNERABLE.equals(status))
+                vulnerable += count;
+        }
+
+        DriftCounts toDto() {
+            return new DriftCounts(total, upToDate, outdated, vulnerable);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.verizon.upgrade.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.verizon.upgrade.dto.InventoryApplication;
+import com.verizon.upgrade.dto.InventoryEnvironment;
+import com.verizon.upgrade.dto.InventoryImportResult;
+import com.verizon.upgrade.dto.InventoryImportRow;
+import com.verizon.upgrade.model.Application;
+import com.verizon.upgrade.model.Environment;
+import com.verizon.upgrade.model.MiddlewareComponent;
+import com.verizon.upgrade.model.Server;
+import com.verizon.upgrade.parser.CsvReader;
+import com.verizon.upgrade.repository.ApplicationRepository;
+import com.verizon.upgrade.repository.EnvironmentRepository;
+import com.verizon.upgrade.repository.ServerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Bulk onboarding of servers and components from a CMDB extract (CSV or a
+ * JSON array of {@link InventoryImportRow}).
+ * <p>
+ * The import only adds: missing applications (by VAST id), environments and
+ * servers (by environment and hostname) are created, and servers that already
+ * exist are left alone. Servers are inserted in transactions of
+ * {@code inventory.import.chunk-size}, with the session flushed and cleared
+ * every {@code hibernate.jdbc.batch_size} entities so inserts go out as JDBC
+ * batches.
+ */
+@Service
+@Slf4j
+public class InventoryImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int IN_CLAUSE_LIMIT = 1000;
+    private static final String DEFAULT_STATUS = "Outdated";
+
+    @Autowired
+    private ApplicationRepository applicationRepository;
+
+    @Autowired
+    private EnvironmentRepository environmentRepository;
+
+    @Autowired
+    private ServerRepository serverRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${inventory.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    private int batchSize;
+
+    private TransactionTemplate transactions;
+
+    @PostConstruct
+    void init() {
+        transactions = new TransactionTemplate(transactionManager);
+    }
+
+    public InventoryImportResult importFile(MultipartFile file) throws IOException {
+        String filename = file.getOriginalFilename() == null ? "" : file.getOriginalFilename().toLowerCase();
+        String contentType = file.getContentType() == null ? "" : file.getContentType();
+        boolean json = filename.endsWith(".json") || contentType.contains("json");
+        try (InputStream in = file.getInputStream()) {
+            return json ? importJson(in) : importCsv(in);
+        }
+    }
+
+    public InventoryImportResult importCsv(InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        InventoryImportResult result = new InventoryImportResult();
+        Plan plan = new Plan(result);
+
+        try (CsvReader csv = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String[] header = csv.next();
+            if (header == null)
+                throw new IllegalArgumentException("Empty CSV");
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.length; i++) {
+                columns.put(header[i].trim().toLowerCase(), i);
+            }
+            if (!columns.containsKey("vastid") || !columns.containsKey("hostname"))
+                throw new IllegalArgumentException("CSV header needs at least vastId and hostname columns");
+
+            String[] fields;
+            while ((fields = csv.next()) != null) {
+                if (fields.length == 1 && fields[0].isBlank())
+                    continue;
+                InventoryImportRow row = InventoryImportRow.builder()
+                        .vastId(column(fields, columns, "vastid"))
+                        .application(column(fields, columns, "application"))
+                        .environment(column(fields, columns, "environment"))
+                        .hostname(column(fields, columns, "hostname"))
+                        .ip(column(fields, columns, "ip"))
+                        .componentName(column(fields, columns, "componentname"))
+                        .componentType(column(fields, columns, "componenttype"))
+                        .currentVersion(column(fields, columns, "currentversion"))
+                        .targetVersion(column(fields, columns, "targetversion"))
+                        .vulnerabilityCount(column(fields, columns, "vulnerabilitycount"))
+                        .status(column(fields, columns, "status"))
+                        .installPath(column(fields, columns, "installpath"))
+                        .build();
+                plan.add(row, "line " + (csv.getLineNumber() - 1));
+            }
+        }
+
+        return execute(plan, start);
+    }
+
+    public InventoryImportResult importJson(InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        InventoryImportResult result = new InventoryImportResult();
+        Plan plan = new Plan(result);
+
+        try (MappingIterator<InventoryImportRow> rows = objectMapper.readerFor(InventoryImportRow.class)
+                .readValues(in)) {
+            int index = 0;
+            while (rows.hasNextValue()) {
+                plan.add(rows.nextValue(), "row " + index++);
+            }
+        }
+
+        return execute(plan, start);
+    }
+
+    /**
+     * Creates what the plan needs. Each step commits on its own, so a failure
+     * part-way leaves the earlier chunks in place: the result then reports
+     * what was committed, with {@code incomplete} set and the cause in
+     * {@code errors}, and the inventory caches are still told about it.
+     */
+    private InventoryImportResult execute(Plan plan, long start) {
+        InventoryImportResult result = plan.result;
+        try {
+            if (!plan.servers.isEmpty())
+                createAll(plan, result);
+        } catch (RuntimeException e) {
+            log.error("Inventory import stopped after {} servers", result.getServersCreated(), e);
+            result.setIncomplete(true);
+            result.getErrors().add("Import stopped after " + result.getServersCreated()
+                    + " servers were created: " + e.getMessage());
+        } finally {
+            if (result.getApplicationsCreated() + result.getEnvironmentsCreated() + result.getServersCreated() > 0)
+                events.publishEvent(new InventoryChangedEvent("inventory import"));
+        }
+
+        result.setDurationMs(System.currentTimeMillis() - start);
+        log.info("Inventory import: {} rows, {} rejected, {} apps / {} environments / {} servers / {} components"
+                + " created, {} servers already present, {} ms", result.getRowsRead(), result.getRowsRejected(),
+                result.getApplicationsCreated(), result.getEnvironmentsCreated(), result.getServersCreated(),
+                result.getComponentsCreated(), result.getServersSkipped(), result.getDurationMs());
+        return result;
+    }
+
+    private void createAll(Plan plan, InventoryImportResult result) {
+        // Counts are taken after each commit, so they only cover committed rows
+        List<Application> newApps = new ArrayList<>();
+        Map<String, Long> appIds = transactions.execute(status -> resolveApplications(plan, newApps));
+        result.setApplicationsCreated(newApps.size());
+        List<Environment> newEnvs = new ArrayList<>();
+        Map<String, Long> envIds = transactions.execute(status -> resolveEnvironments(plan, appIds, newEnvs));
+        result.setEnvironmentsCreated(newEnvs.size());
+        Set<String> existing = existingServers(envIds.values());
+
+        List<Server> pending = new ArrayList<>(chunkSize);
+        for (PlannedServer planned : plan.servers.values()) {
+            Long appId = appIds.get(planned.vastId);
+            Long envId = envIds.get(envKey(appId, planned.environment));
+            if (existing.contains(envId + "|" + planned.hostname.toLowerCase())) {
+                result.setServersSkipped(result.getServersSkipped() + 1);
+                continue;
+            }
+            pending.add(planned.toServer(appId, envId));
+            if (pending.size() == chunkSize) {
+                insertChunk(pending, result);
+                pending = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!pending.isEmpty())
+            insertChunk(pending, result);
+    }
+
+    private Map<String, Long> resolveApplications(Plan plan, List<Application> created) {
+        Map<String, Long> ids = new HashMap<>();
+        for (List<String> part : partition(new ArrayList<>(plan.applications.keySet()))) {
+            for (InventoryApplication app : applicationRepository.findInventoryRowsByVastIds(part)) {
+                ids.put(app.getVastId(), app.getId());
+            }
+        }
+
+        for (Map.Entry<String, String> entry : plan.applications.entrySet()) {
+            if (!ids.containsKey(entry.getKey()))
+                created.add(new Application(null, entry.getValue(), entry.getKey(), new ArrayList<>()));
+        }
+        for (Application app : applicationRepository.saveAll(created)) {
+            ids.put(app.getVastId(), app.getId());
+        }
+        return ids;
+    }
+
+    private Map<String, Long> resolveEnvironments(Plan plan, Map<String, Long> appIds, List<Environment> created) {
+        Map<String, Long> ids = new HashMap<>();
+        for (List<Long> part : partition(new ArrayList<>(new HashSet<>(appIds.values())))) {
+            for (InventoryEnvironment env : environmentRepository.findInventoryRowsByAppIds(part)) {
+                ids.putIfAbsent(envKey(env.getAppId(), env.getName()), env.getId());
+            }
+        }
+
+        Set<String> wanted = new LinkedHashSet<>();
+        for (PlannedServer server : plan.servers.values()) {
+            Long appId = appIds.get(server.vastId);
+            if (!ids.containsKey(envKey(appId, server.environment))
+                    && wanted.add(envKey(appId, server.environment)))
+                created.add(new Environment(null, server.environment, appId, new ArrayList<>()));
+        }
+        for (Environment env : environmentRepository.saveAll(created)) {
+            ids.put(envKey(env.getAppId(), env.getName()), env.getId());
+        }
+        return ids;
+    }
+
+    private Set<String> existingServers(Collection<Long> envIds) {
+        Set<String> keys = new HashSet<>();
+        for (List<Long> part : partition(new ArrayList<>(envIds))) {
+            for (Object[] row : serverRepository.findHostnamesByEnvIds(part)) {
+                keys.add(row[0] + "|" + row[1]);
+            }
+        }
+        return keys;
+    }
+
+    private void insertChunk(List<Server> servers, InventoryImportResult result) {
+        transactions.executeWithoutResult(status -> {
+            int sinceFlush = 0;
+            for (Server server : servers) {
+                entityManager.persist(server);
+                sinceFlush += 1 + server.getComponents().size();
+                if (sinceFlush >= batchSize) {
+                    entityManager.flush();
+                    entityManager.clear();
+                    sinceFlush = 0;
+                }
+            }
+        });
+        for (Server server : servers) {
+            result.setServersCreated(result.getServersCreated() + 1);
+            result.setComponentsCreated(result.getComponentsCreated() + server.getComponents().size());
+        }
+    }
+
+    private static String envKey(Long appId, String envName) {
+        return appId + "|" + envName.toLowerCase();
+    }
+
+    private static <T> List<List<T>> partition(List<T> values) {
+        List<List<T>> parts = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += IN_CLAUSE_LIMIT) {
+            parts.add(values.subList(from, Math.min(from + IN_CLAUSE_LIMIT, values.size())));
+        }
+        return parts;
+    }
+
+    private static String column(String[] fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.length)
+            return null;
+        String value = fields[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    /**
+     * Validated rows grouped into applications and servers.
+     */
+    private static class Plan {
+        final InventoryImportResult result;
+        final Map<String, String> applications = new LinkedHashMap<>(); // vastId -> name
+        final Map<String, PlannedServer> servers = new LinkedHashMap<>();
+
+        Plan(InventoryImportResult result) {
+            this.result = result;
+        }
+
+        void add(InventoryImportRow row, String where) {
+            result.setRowsRead(result.getRowsRead() + 1);
+            String vastId = blankToNull(row.getVastId());
+            String hostname = blankToNull(row.getHostname());
+            String environment = canonicalEnvironment(row.getEnvironment());
+
+            String problem = vastId == null ? "missing vastId"
+                    : hostname == null ? "missing hostname"
+                    : environment == null ? "environment must be Prod or Non-Prod" : null;
+            if (problem != null) {
+                result.setRowsRejected(result.getRowsRejected() + 1);
+                if (result.getErrors().size() < MAX_REPORTED_ERRORS)
+                    result.getErrors().add(where + ": " + problem);
+                return;
+            }
+
+            String appName = blankToNull(row.getApplication());
+            applications.merge(vastId, appName == null ? vastId : appName,
+                    (existing, given) -> existing.equals(vastId) ? given : existing);
+
+            String key = vastId + "|" + environment.toLowerCase() + "|" + hostname.toLowerCase();
+            PlannedServer server = servers.computeIfAbsent(key,
+                    k -> new PlannedServer(vastId, environment, hostname));
+            if (server.ip == null)
+                server.ip = blankToNull(row.getIp());
+
+            String componentName = blankToNull(row.getComponentName());
+            if (componentName != null) {
+                server.components.putIfAbsent(componentName.toLowerCase(), new MiddlewareComponent(
+                        componentName,
+                        blankToNull(row.getComponentType()) == null ? componentName : row.getComponentType().trim(),
+                        blankToNull(row.getCurrentVersion()),
+                        blankToNull(row.getVulnerabilityCount()),
+                        blankToNull(row.getTargetVersion()),
+                        blankToNull(row.getStatus()) == null ? DEFAULT_STATUS : row.getStatus().trim(),
+                        blankToNull(row.getInstallPath())));
+            }
+        }
+
+        private static String canonicalEnvironment(String name) {
+            if (name == null)
+                return null;
+            if (name.trim().equalsIgnoreCase("Prod"))
+                return "Prod";
+            if (name.trim().equalsIgnoreCase("Non-Prod"))
+                return "Non-Prod";
+            return null;
+        }
+    }
+
+    private static class PlannedServer {
+        final String vastId;
+        final String environment;
+        final String hostname;
+        final Map<String, MiddlewareComponent> components = new LinkedHashMap<>();
+        String ip;
+
+        PlannedServer(String vastId, String environment, String hostname) {
+            this.vastId = vastId;
+            this.environment = environment;
+            this.hostname = hostname;
+        }
+
+        Server toServer(Long appId, Long envId) {
+            Server server = new Server();
+            server.setHostname(hostname);
+            server.setIp(ip);
+            server.setAppId(appId);
+            server.setEnvId(envId);
+            server.setComponents(new ArrayList<>(components.values()));
+            boolean allUpToDate = !components.isEmpty() && components.values().stream()
+                    .allMatch(c -> "Up to Date".equals(c.getStatus()));
+            server.setStatus(allUpToDate ? "Up to Date" : DEFAULT_STATUS);
+            return server;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.verizon.upgrade.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic inventory revision plus a bounded log of which applications each
+ * revision touched ({@code inventory.changes.capacity} entries), used for
+ * ETags and the "changes since" feed. Advanced by
+ * {@link DataService#onInventoryChanged} once the write has committed and the
+ * read caches are dropped.
+ * <p>
+ * The revision starts at the boot time in milliseconds, so it keeps
+ * increasing across restarts and a client's ETag or revision from an earlier
+ * run never matches.
+ */
+@Service
+public class InventoryRevisions {
+
+    @Value("${inventory.changes.capacity:1000}")
+    private int capacity;
+
+    private final AtomicLong revision = new AtomicLong(System.currentTimeMillis());
+
+    // Guarded by this
+    private final ArrayDeque<Change> changes = new ArrayDeque<>();
+    // Changes after this revision are all in the log
+    private long floor = revision.get();
+
+    public long current() {
+        return revision.get();
+    }
+
+    public String etag() {
+        return "inventory-" + current();
+    }
+
+    synchronized void record(InventoryChangedEvent event) {
+        long rev = revision.incrementAndGet();
+        changes.addLast(new Change(rev, event.getApplicationId(), event.isDeleted()));
+        while (changes.size() > capacity) {
+            floor = changes.removeFirst().revision;
+        }
+    }
+
+    /**
+     * Changes after {@code since}, or null if they are no longer (or were
+     * never) known and the client has to reload everything.
+     */
+    synchronized Delta since(long since) {
+        long now = revision.get();
+        if (since < floor || since > now)
+            return null;
+        List<Change> after = new ArrayList<>();
+        for (Change change : changes) {
+            if (change.revision > since)
+                after.add(change);
+        }
+        return new Delta(now, after);
+    }
+
+    static class Change {
+        final long revision;
+        final Long applicationId; // null: not limited to one application
+        final boolean deleted;
+
+        Change(long revision, Long applicationId, boolean deleted) {
+            this.revision = revision;
+            this.applicationId = applicationId;
+            this.deleted = deleted;
+        }
+    }
+
+    static class Delta {
+        final long revision;
+        final List<Change> changes;
+
+        Delta(long revision, List<Change> changes) {
+            this.revision = revision;
+            this.changes = changes;
+        }
+    }
+}
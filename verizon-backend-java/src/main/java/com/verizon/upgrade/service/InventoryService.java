@@ -0,0 +1,101 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.dto.*;
+import com.verizon.upgrade.repository.ApplicationRepository;
+import com.verizon.upgrade.repository.EnvironmentRepository;
+import com.verizon.upgrade.repository.MiddlewareComponentRepository;
+import com.verizon.upgrade.repository.ServerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Read-only inventory views built from DTO projections. Unlike
+ * {@link DataService#getAllApplications()}, which loads the whole
+ * application -> environment -> server -> component entity graph, each
+ * method here runs a fixed number of queries regardless of fleet size.
+ */
+@Service
+public class InventoryService {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    @Autowired
+    private ApplicationRepository applicationRepository;
+
+    @Autowired
+    private EnvironmentRepository environmentRepository;
+
+    @Autowired
+    private ServerRepository serverRepository;
+
+    @Autowired
+    private MiddlewareComponentRepository componentRepository;
+
+    public Page<InventoryApplication> applications(int page, int size) {
+        return applicationRepository.findInventoryRows(pageable(page, size));
+    }
+
+    public Page<InventoryEnvironment> environments(Long appId, int page, int size) {
+        return environmentRepository.findInventoryRows(appId, pageable(page, size));
+    }
+
+    public Page<InventoryServer> servers(Long appId, Long envId, String status, String hostname, int page,
+            int size) {
+        return serverRepository.findInventoryRows(appId, envId, blankToNull(status), blankToNull(hostname),
+                pageable(page, size));
+    }
+
+    public Page<InventoryComponent> components(Long serverId, Long appId, Long envId, String name, String status,
+            int page, int size) {
+        return componentRepository.findInventoryRows(serverId, appId, envId, blankToNull(name), blankToNull(status),
+                pageable(page, size));
+    }
+
+    /**
+     * A page of applications plus all their environments, servers and
+     * components: five queries (applications, count, environments, servers,
+     * components) per page.
+     */
+    public InventoryPage snapshot(int page, int size) {
+        Page<InventoryApplication> apps = applications(page, size);
+        List<Long> appIds = apps.getContent().stream().map(InventoryApplication::getId).collect(Collectors.toList());
+
+        List<InventoryEnvironment> environments = Collections.emptyList();
+        List<InventoryServer> servers = Collections.emptyList();
+        if (!appIds.isEmpty()) {
+            environments = environmentRepository.findInventoryRowsByAppIds(appIds);
+            servers = serverRepository.findInventoryRowsByAppIds(appIds);
+
+            Map<Long, List<InventoryComponent>> componentsByServer = new HashMap<>();
+            for (InventoryComponent component : componentRepository.findInventoryRowsByAppIds(appIds)) {
+                componentsByServer.computeIfAbsent(component.getServerId(), k -> new ArrayList<>()).add(component);
+            }
+            for (InventoryServer server : servers) {
+                server.setComponents(componentsByServer.getOrDefault(server.getId(), new ArrayList<>()));
+            }
+        }
+
+        return InventoryPage.builder()
+                .applications(apps.getContent())
+                .environments(environments)
+                .servers(servers)
+                .page(apps.getNumber())
+                .size(apps.getSize())
+                .totalApplications(apps.getTotalElements())
+                .build();
+    }
+
+    private Pageable pageable(int page, int size) {
+        return PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+    }
+
+    private String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
@@ -0,0 +1,129 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.dto.RunLogInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the output of running and recently finished playbook runs.
+ * <p>
+ * Live output is served from each run's ring buffer
+ * ({@code upgrade.log.buffer-lines}). The complete log is written gzip-compressed
+ * to {@code upgrade.log.dir}/&lt;runId&gt;.log.gz and stays there after the run
+ * is evicted from memory ({@code upgrade.log.retention-minutes}).
+ */
+@Service
+@Slf4j
+public class PlaybookLogService {
+
+    @Value("${upgrade.log.dir:./data/upgrade-logs}")
+    private String logDir;
+
+    @Value("${upgrade.log.buffer-lines:2000}")
+    private int bufferLines;
+
+    @Value("${upgrade.log.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Value("${upgrade.log.sse-timeout-ms:1800000}")
+    private long sseTimeoutMs;
+
+    private Path logRoot;
+
+    private final Map<String, RunLog> runs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() throws IOException {
+        logRoot = Paths.get(logDir).toAbsolutePath().normalize();
+        Files.createDirectories(logRoot);
+    }
+
+    String newRunId() {
+        return UUID.randomUUID().toString();
+    }
+
+    RunLog open(String runId, List<String> serverIds, List<String> hosts, String software, String targetVersion) {
+        purgeExpired();
+        RunLog runLog = new RunLog(runId, serverIds, hosts, software, targetVersion, logFile(runId), bufferLines);
+        runs.put(runId, runLog);
+        return runLog;
+    }
+
+    /**
+     * True if the run's log is open and not yet closed, i.e. the run is
+     * starting or running.
+     */
+    boolean isPending(String runId) {
+        RunLog runLog = runs.get(runId);
+        return runLog != null && !runLog.isFinished();
+    }
+
+    public List<RunLogInfo> list() {
+        return runs.values().stream()
+                .map(RunLog::toInfo)
+                .sorted(Comparator.comparing(RunLogInfo::getStartedAt).reversed())
+                .collect(Collectors.toList());
+    }
+
+    public RunLogInfo getInfo(String runId) {
+        RunLog runLog = runs.get(runId);
+        return runLog == null ? null : runLog.toInfo();
+    }
+
+    /**
+     * Live tail of a run still held in memory, or null if there is none.
+     */
+    public SseEmitter tail(String runId) {
+        RunLog runLog = runs.get(runId);
+        if (runLog == null)
+            return null;
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        runLog.subscribe(emitter);
+        return emitter;
+    }
+
+    /**
+     * Buffered lines of a run that is still going, or null if the run is not
+     * live (finished or unknown).
+     */
+    public List<String> liveLines(String runId) {
+        RunLog runLog = runs.get(runId);
+        return runLog == null || runLog.isFinished() ? null : runLog.recentLines();
+    }
+
+    /**
+     * The complete gzip log of a finished run, or null if there is none.
+     */
+    public Path completedLogFile(String runId) {
+        RunLog runLog = runs.get(runId);
+        if (runLog != null && !runLog.isFinished())
+            return null;
+        Path file = logFile(runId);
+        return file != null && Files.isRegularFile(file) ? file : null;
+    }
+
+    private Path logFile(String runId) {
+        Path file = logRoot.resolve(runId + ".log.gz").normalize();
+        return file.getParent().equals(logRoot) ? file : null;
+    }
+
+    private void purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        runs.values().removeIf(r -> r.isFinished() && r.getFinishedAt().isBefore(cutoff));
+    }
+}
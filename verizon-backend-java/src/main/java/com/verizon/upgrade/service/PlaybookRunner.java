@@ -0,0 +1,262 @@
+package com.verizon.upgrade.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Starts playbook processes without tying up a thread per process.
+ * <p>
+ * Process output is redirected to a spool file next to the run's log; one
+ * shared "playbook-tail" thread polls every spool file and feeds new lines to
+ * the run log. Completion is picked up through {@link Process#onExit()}. A run
+ * that exceeds its timeout, or is cancelled, is sent SIGTERM and, if still
+ * alive after {@code upgrade.run.kill-grace-seconds}, killed.
+ */
+@Service
+@Slf4j
+public class PlaybookRunner {
+
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+
+    @Value("${upgrade.run.tail-interval-ms:250}")
+    private long tailIntervalMs;
+
+    @Value("${upgrade.run.kill-grace-seconds:30}")
+    private long killGraceSeconds;
+
+    private ScheduledExecutorService tailer;
+
+    @Autowired
+    private PlaybookLogService playbookLogs;
+
+    private final Map<String, Running> running = new ConcurrentHashMap<>();
+    // Runs cancelled after their log was opened but before start(); guarded by this
+    private final Set<String> cancelRequested = new HashSet<>();
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadNo = new AtomicInteger();
+        tailer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "playbook-tail-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        tailer.scheduleWithFixedDelay(this::drainAll, tailIntervalMs, tailIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (Running r : running.values()) {
+            log.warn("Stopping playbook {} on shutdown", r.runLog.runId);
+            r.terminate(Outcome.CANCELLED);
+        }
+        tailer.shutdownNow();
+    }
+
+    /**
+     * Starts the command. The returned future completes on the tailer thread
+     * once the process has exited and all of its output has been passed to
+     * {@code runLog} (and {@code listener}, if given); the run log is closed
+     * by then.
+     *
+     * @param timeout zero or negative for none
+     */
+    CompletableFuture<Exit> start(List<String> command, RunLog runLog, Consumer<String> listener, Duration timeout)
+            throws IOException {
+        Running r;
+        synchronized (this) {
+            if (cancelRequested.remove(runLog.runId)) {
+                runLog.close(-1);
+                return CompletableFuture.completedFuture(new Exit(-1, Outcome.CANCELLED));
+            }
+
+            Path spool = runLog.file.resolveSibling(runLog.runId + ".out");
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(spool.toFile());
+            Process process = pb.start();
+
+            r = new Running(process, spool, runLog, listener);
+            running.put(runLog.runId, r);
+        }
+        if (!timeout.isZero() && !timeout.isNegative()) {
+            r.timeoutTask = tailer.schedule(() -> r.terminate(Outcome.TIMED_OUT), timeout.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+        r.process.onExit().thenRunAsync(r::finish, tailer);
+        return r.result;
+    }
+
+    /**
+     * Stops the run's playbook. A run whose log is open but whose playbook
+     * has not been started yet is cancelled as soon as it does; a cancel for
+     * a finished or unknown run is ignored.
+     *
+     * @return true if a process was signalled
+     */
+    boolean cancel(String runId) {
+        Running r;
+        synchronized (this) {
+            r = running.get(runId);
+            if (r == null) {
+                // Drop requests for runs that ended without reaching start()
+                cancelRequested.removeIf(id -> !playbookLogs.isPending(id));
+                if (playbookLogs.isPending(runId))
+                    cancelRequested.add(runId);
+                return false;
+            }
+        }
+        r.terminate(Outcome.CANCELLED);
+        return true;
+    }
+
+    private void drainAll() {
+        for (Running r : running.values()) {
+            // A task that throws is never scheduled again, which would stop tailing every run
+            try {
+                r.drain();
+            } catch (RuntimeException e) {
+                log.error("Passing on output of playbook {} failed", r.runLog.runId, e);
+            }
+        }
+    }
+
+    enum Outcome {
+        EXITED,
+        TIMED_OUT,
+        CANCELLED
+    }
+
+    static final class Exit {
+        final int exitCode;
+        final Outcome outcome;
+
+        Exit(int exitCode, Outcome outcome) {
+            this.exitCode = exitCode;
+            this.outcome = outcome;
+        }
+    }
+
+    private final class Running {
+        final Process process;
+        final Path spool;
+        final RunLog runLog;
+        final Consumer<String> listener;
+        final CompletableFuture<Exit> result = new CompletableFuture<>();
+        final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+        final byte[] buf = new byte[8192];
+        volatile Outcome stopReason;
+        ScheduledFuture<?> timeoutTask;
+        InputStream in;
+
+        Running(Process process, Path spool, RunLog runLog, Consumer<String> listener) {
+            this.process = process;
+            this.spool = spool;
+            this.runLog = runLog;
+            this.listener = listener;
+        }
+
+        /**
+         * Passes on the complete lines written since the last call. Only
+         * called on the tailer thread.
+         */
+        void drain() {
+            try {
+                if (in == null)
+                    in = Files.newInputStream(spool);
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    for (int i = 0; i < n; i++) {
+                        if (buf[i] == '\n' || partialLine.size() >= MAX_LINE_BYTES)
+                            emitLine();
+                        if (buf[i] != '\n')
+                            partialLine.write(buf[i]);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Reading output of playbook {} failed", runLog.runId, e);
+            }
+        }
+
+        /**
+         * Always completes the result and forgets the run, even if reading
+         * the remaining output or closing the log fails: otherwise the run
+         * would hold its slot and never be recorded as finished.
+         */
+        void finish() {
+            int exitCode = process.exitValue();
+            try {
+                if (timeoutTask != null)
+                    timeoutTask.cancel(false);
+                drain();
+                if (partialLine.size() > 0)
+                    emitLine();
+                try {
+                    if (in != null)
+                        in.close();
+                    Files.deleteIfExists(spool);
+                } catch (IOException e) {
+                    log.warn("Could not remove spool file {}", spool, e);
+                }
+                // Close the log first: a cancel that finds the run gone must
+                // also find its log finished, or it would be held as pending
+                runLog.close(exitCode);
+            } catch (RuntimeException e) {
+                log.error("Finishing playbook {} failed; its output may be incomplete", runLog.runId, e);
+            } finally {
+                running.remove(runLog.runId);
+                Outcome reason = stopReason;
+                result.complete(new Exit(exitCode, reason == null ? Outcome.EXITED : reason));
+            }
+        }
+
+        void terminate(Outcome reason) {
+            if (!process.isAlive())
+                return;
+            synchronized (this) {
+                if (stopReason != null)
+                    return;
+                stopReason = reason;
+            }
+            log.warn("Stopping playbook {} ({})", runLog.runId, reason);
+            process.descendants().forEach(ProcessHandle::destroy);
+            process.destroy();
+            tailer.schedule(() -> {
+                if (process.isAlive()) {
+                    log.warn("Playbook {} ignored SIGTERM, killing it", runLog.runId);
+                    process.descendants().forEach(ProcessHandle::destroyForcibly);
+                    process.destroyForcibly();
+                }
+            }, killGraceSeconds, TimeUnit.SECONDS);
+        }
+
+        private void emitLine() {
+            String line = new String(partialLine.toByteArray(), StandardCharsets.UTF_8);
+            partialLine.reset();
+            if (line.endsWith("\r"))
+                line = line.substring(0, line.length() - 1);
+            runLog.append(line);
+            if (listener != null)
+                listener.accept(line);
+        }
+    }
+}
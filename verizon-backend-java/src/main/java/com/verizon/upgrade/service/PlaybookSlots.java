@@ -0,0 +1,83 @@
+package com.verizon.upgrade.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many asynchronous playbook runs are in flight. Runs beyond the cap
+ * wait in FIFO order and start as earlier ones complete; nothing blocks while
+ * waiting.
+ */
+class PlaybookSlots {
+    private final int max;
+    private final Deque<Runnable> waiting = new ArrayDeque<>();
+    private int active;
+    private boolean releasing;
+    private int pendingReleases;
+
+    PlaybookSlots(int max) {
+        this.max = Math.max(1, max);
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletableFuture<T> started;
+            try {
+                started = task.get();
+            } catch (Throwable e) {
+                started = CompletableFuture.failedFuture(e);
+            }
+            started.whenComplete((value, error) -> {
+                release();
+                if (error != null)
+                    result.completeExceptionally(error);
+                else
+                    result.complete(value);
+            });
+        };
+
+        boolean startNow;
+        synchronized (this) {
+            startNow = active < max;
+            if (startNow)
+                active++;
+            else
+                waiting.addLast(start);
+        }
+        if (startNow)
+            start.run();
+        return result;
+    }
+
+    /**
+     * Hands the slot to the next waiting run. Runs that complete synchronously
+     * release again from inside {@code next.run()}; those releases are queued
+     * and handled by the loop instead of recursing.
+     */
+    private void release() {
+        synchronized (this) {
+            pendingReleases++;
+            if (releasing)
+                return;
+            releasing = true;
+        }
+        while (true) {
+            Runnable next;
+            synchronized (this) {
+                if (pendingReleases == 0) {
+                    releasing = false;
+                    return;
+                }
+                pendingReleases--;
+                next = waiting.pollFirst();
+                if (next == null)
+                    active--;
+            }
+            if (next != null)
+                next.run();
+        }
+    }
+}
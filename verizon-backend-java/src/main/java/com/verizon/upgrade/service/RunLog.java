@@ -0,0 +1,188 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.dto.RunLogInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output of one playbook run. The most recent lines are kept in a bounded ring
+ * buffer for live tailing; every line is also appended to a gzip file that
+ * holds the complete log once the run is closed.
+ */
+@Slf4j
+class RunLog {
+    final String runId;
+    final List<String> serverIds;
+    final List<String> hosts;
+    final String software;
+    final String targetVersion;
+    final LocalDateTime startedAt = LocalDateTime.now();
+    final Path file;
+
+    private final int capacity;
+    private final Deque<String> recent;
+    private final List<SseEmitter> subscribers = new ArrayList<>();
+    private BufferedWriter writer;
+    private long linesWritten;
+    private LocalDateTime finishedAt;
+    private Integer exitCode;
+
+    RunLog(String runId, List<String> serverIds, List<String> hosts, String software, String targetVersion,
+            Path file, int capacity) {
+        this.runId = runId;
+        this.serverIds = serverIds;
+        this.hosts = hosts;
+        this.software = software;
+        this.targetVersion = targetVersion;
+        this.file = file;
+        this.capacity = capacity;
+        this.recent = new ArrayDeque<>(Math.min(capacity, 1024));
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file)),
+                    StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.warn("Could not open log file {}, keeping only the last {} lines of run {}", file, capacity, runId, e);
+        }
+    }
+
+    synchronized void append(String line) {
+        if (recent.size() == capacity)
+            recent.removeFirst();
+        recent.addLast(line);
+        linesWritten++;
+
+        if (writer != null) {
+            try {
+                writer.write(line);
+                writer.write('\n');
+            } catch (IOException e) {
+                log.warn("Writing log file {} failed, full log of run {} will be incomplete", file, runId, e);
+                closeWriter();
+            }
+        }
+
+        Iterator<SseEmitter> it = subscribers.iterator();
+        while (it.hasNext()) {
+            SseEmitter emitter = it.next();
+            try {
+                emitter.send(SseEmitter.event().name("line").data(line));
+            } catch (Exception e) {
+                it.remove();
+            }
+        }
+    }
+
+    synchronized void close(int exitCode) {
+        if (finishedAt != null)
+            return;
+        this.exitCode = exitCode;
+        this.finishedAt = LocalDateTime.now();
+        closeWriter();
+        for (SseEmitter emitter : subscribers) {
+            sendEnd(emitter);
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * Replays the buffered lines, then streams new ones until the run closes.
+     */
+    synchronized void subscribe(SseEmitter emitter) {
+        try {
+            for (String line : recent) {
+                emitter.send(SseEmitter.event().name("line").data(line));
+            }
+        } catch (Exception e) {
+            return;
+        }
+        if (finishedAt != null) {
+            sendEnd(emitter);
+            return;
+        }
+        subscribers.add(emitter);
+        emitter.onCompletion(() -> unsubscribe(emitter));
+        emitter.onTimeout(() -> unsubscribe(emitter));
+    }
+
+    synchronized List<String> recentLines() {
+        return new ArrayList<>(recent);
+    }
+
+    /**
+     * The end of the buffered output, at most {@code maxChars} long.
+     */
+    synchronized String tail(int maxChars) {
+        Iterator<String> it = recent.descendingIterator();
+        List<String> lines = new ArrayList<>();
+        int length = 0;
+        while (it.hasNext()) {
+            String line = it.next();
+            if (length + line.length() + 1 > maxChars)
+                break;
+            lines.add(line);
+            length += line.length() + 1;
+        }
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            sb.append(lines.get(i)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    synchronized boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    synchronized LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    synchronized RunLogInfo toInfo() {
+        return RunLogInfo.builder()
+                .runId(runId)
+                .serverIds(serverIds)
+                .hosts(hosts)
+                .software(software)
+                .targetVersion(targetVersion)
+                .linesWritten(linesWritten)
+                .running(finishedAt == null)
+                .exitCode(exitCode)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .build();
+    }
+
+    private synchronized void unsubscribe(SseEmitter emitter) {
+        subscribers.remove(emitter);
+    }
+
+    private void sendEnd(SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event().name("end").data(String.valueOf(exitCode)));
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null)
+            return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Closing log file {} failed", file, e);
+        }
+        writer = null;
+    }
+}
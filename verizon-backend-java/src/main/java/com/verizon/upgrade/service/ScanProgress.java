@@ -0,0 +1,28 @@
+package com.verizon.upgrade.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters for a vulnerability scan parse. Written by the parsing thread
+ * and safe to read from any other thread while the parse is running.
+ */
+public class ScanProgress {
+    private final AtomicLong rowsScanned = new AtomicLong();
+    private final AtomicLong matchesFound = new AtomicLong();
+
+    public long getRowsScanned() {
+        return rowsScanned.get();
+    }
+
+    public long getMatchesFound() {
+        return matchesFound.get();
+    }
+
+    void rowScanned() {
+        rowsScanned.incrementAndGet();
+    }
+
+    void setMatchesFound(long matches) {
+        matchesFound.set(matches);
+    }
+}
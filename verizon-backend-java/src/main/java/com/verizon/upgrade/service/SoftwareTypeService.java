@@ -1,11 +1,14 @@
 package com.verizon.upgrade.service;
 
+import com.verizon.upgrade.cache.CacheRegistry;
+import com.verizon.upgrade.cache.ReadThroughCache;
 import com.verizon.upgrade.model.SoftwareType;
 import com.verizon.upgrade.repository.SoftwareTypeRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import java.util.Collections;
 import java.util.List;
 
 @Service
@@ -13,8 +16,14 @@ public class SoftwareTypeService {
     @Autowired
     private SoftwareTypeRepository repository;
 
+    @Autowired
+    private CacheRegistry cacheRegistry;
+
+    private ReadThroughCache<String, List<SoftwareType>> cache;
+
     @PostConstruct
     public void init() {
+        cache = cacheRegistry.create("softwareTypes");
         if (repository.count() == 0) {
             save(new SoftwareType(null, "JAVA", "/opt/java", "Java Runtime Environment"));
             save(new SoftwareType(null, "OPENSSL", "/usr/local/ssl", "Secure Sockets Layer library"));
@@ -24,10 +33,12 @@ public class SoftwareTypeService {
     }
 
     public List<SoftwareType> getAll() {
-        return repository.findAll();
+        return cache.get("all", k -> Collections.unmodifiableList(repository.findAll()));
     }
 
     public SoftwareType save(SoftwareType type) {
-        return repository.save(type);
+        SoftwareType saved = repository.save(type);
+        cache.invalidateAll();
+        return saved;
     }
 }
@@ -0,0 +1,78 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.dto.VulnerabilityResponse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * First-seen-wins deduplication of scan rows. Rows are keyed on
+ * (hostname, IP, directory, software, fix version) rather than on the whole
+ * {@link VulnerabilityResponse}, so hashing doesn't walk the shared
+ * available-versions list of every row.
+ */
+class UniqueFindings {
+    private final Map<Key, VulnerabilityResponse> rows = new LinkedHashMap<>();
+
+    /**
+     * Adds the row unless one with the same key was already added.
+     */
+    void add(VulnerabilityResponse row) {
+        rows.putIfAbsent(new Key(row), row);
+    }
+
+    void addAll(List<VulnerabilityResponse> batch) {
+        for (VulnerabilityResponse row : batch) {
+            add(row);
+        }
+    }
+
+    int size() {
+        return rows.size();
+    }
+
+    List<VulnerabilityResponse> toList() {
+        return new ArrayList<>(rows.values());
+    }
+
+    private static final class Key {
+        private final String hostname;
+        private final String ipAddress;
+        private final String directory;
+        private final String software;
+        private final String fixVersion;
+        private final int hash;
+
+        Key(VulnerabilityResponse row) {
+            this.hostname = row.getHostname();
+            this.ipAddress = row.getIpAddress();
+            this.directory = row.getDirectory();
+            this.software = row.getSoftware();
+            this.fixVersion = row.getTargetVersion();
+            this.hash = Objects.hash(hostname, ipAddress, directory, software, fixVersion);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return hash == other.hash
+                    && Objects.equals(hostname, other.hostname)
+                    && Objects.equals(ipAddress, other.ipAddress)
+                    && Objects.equals(directory, other.directory)
+                    && Objects.equals(software, other.software)
+                    && Objects.equals(fixVersion, other.fixVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.dto.UpgradeBatchStatus;
+import com.verizon.upgrade.dto.UpgradeTarget;
+import com.verizon.upgrade.model.Environment;
+import com.verizon.upgrade.model.MiddlewareComponent;
+import com.verizon.upgrade.model.Server;
+import com.verizon.upgrade.model.UpgradeRun;
+import com.verizon.upgrade.model.UpgradeRunStatus;
+import com.verizon.upgrade.repository.EnvironmentRepository;
+import com.verizon.upgrade.repository.ServerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Queues upgrade runs and starts their playbooks.
+ * <p>
+ * Runs for the same host are queued behind each other so a host never has
+ * two playbooks running at once, even when several inventory servers share
+ * its hostname; runs for different hosts proceed in parallel up to
+ * {@code upgrade.max-concurrency} playbooks. Playbooks run
+ * without holding a pool thread; {@code upgradeExecutor} only does the
+ * database work around them.
+ * <p>
+ * In wave mode, targets sharing a component and target version are grouped
+ * into one ansible-playbook run ({@code --forks upgrade.wave.forks}). A wave
+ * waits for every host it covers and occupies one pool thread.
+ */
+@Service
+@Slf4j
+public class UpgradeOrchestrator {
+
+    private static final long BATCH_RETENTION_MINUTES = 24 * 60;
+
+    @Autowired
+    private AutomationService automationService;
+
+    @Autowired
+    private EnvironmentRepository environmentRepository;
+
+    @Autowired
+    private ServerRepository serverRepository;
+
+    @Autowired
+    @Qualifier("upgradeExecutor")
+    private ThreadPoolTaskExecutor upgradeExecutor;
+
+    @Autowired
+    private UpgradeRunService upgradeRuns;
+
+    @Value("${upgrade.wave.forks:20}")
+    private int waveForks;
+
+    @Value("${upgrade.max-concurrency:10}")
+    private int maxConcurrency;
+
+    private PlaybookSlots slots;
+
+    private final Map<String, CompletableFuture<Void>> hostQueues = new ConcurrentHashMap<>();
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        slots = new PlaybookSlots(maxConcurrency);
+    }
+
+    public UpgradeBatchStatus submit(List<UpgradeTarget> targets) {
+        return submit(targets, false);
+    }
+
+    /**
+     * @param waves group targets by component and target version into one
+     *              playbook run per group
+     */
+    public UpgradeBatchStatus submit(List<UpgradeTarget> targets, boolean waves) {
+        purgeExpired();
+
+        Batch batch = new Batch(UUID.randomUUID().toString(), targets.size());
+        batches.put(batch.id, batch);
+        Map<String, String> hostKeys = hostKeys(targets);
+        List<List<UpgradeTarget>> groups = waves ? groupIntoWaves(targets, hostKeys)
+                : targets.stream().map(Collections::singletonList).collect(Collectors.toList());
+        for (List<UpgradeTarget> group : groups) {
+            enqueue(upgradeRuns.queue(group, batch.id), hostKeys, batch);
+        }
+        log.info("Queued upgrade batch {} with {} targets{}", batch.id, targets.size(), waves ? " (waves)" : "");
+        return batch.toStatus();
+    }
+
+    /**
+     * One target per server in the environment that has the named component.
+     * Returns null if the environment doesn't exist.
+     */
+    public List<UpgradeTarget> targetsForEnvironment(Long environmentId, String componentName,
+            String targetVersion) {
+        Environment env = environmentRepository.findById(environmentId).orElse(null);
+        if (env == null)
+            return null;
+
+        List<UpgradeTarget> targets = new ArrayList<>();
+        if (env.getServers() != null) {
+            for (Server server : env.getServers()) {
+                if (hasComponent(server, componentName))
+                    targets.add(new UpgradeTarget(String.valueOf(server.getId()), componentName, targetVersion));
+            }
+        }
+        return targets;
+    }
+
+    public UpgradeBatchStatus getBatch(String batchId) {
+        Batch batch = batches.get(batchId);
+        return batch == null ? null : batch.toStatus();
+    }
+
+    /**
+     * The key each target's server is queued under: its hostname trimmed and
+     * lower-cased, which is what Ansible connects to. A server that can't be
+     * found keeps its id.
+     */
+    private Map<String, String> hostKeys(List<UpgradeTarget> targets) {
+        Set<Long> ids = new HashSet<>();
+        for (UpgradeTarget target : targets) {
+            try {
+                ids.add(Long.valueOf(target.getServerId()));
+            } catch (NumberFormatException e) {
+                // Not a server; its run fails when it starts
+            }
+        }
+        Map<String, String> keys = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (Object[] row : serverRepository.findHostnamesByIds(ids)) {
+                if (row[1] != null && !((String) row[1]).isEmpty())
+                    keys.put(String.valueOf(row[0]), "host:" + row[1]);
+            }
+        }
+        for (UpgradeTarget target : targets)
+            keys.putIfAbsent(target.getServerId(), "server:" + target.getServerId());
+        return keys;
+    }
+
+    /**
+     * Chains the runs behind whatever is already queued for their hosts and
+     * starts them once those are done and a playbook slot is free. No thread
+     * waits while a run is queued or its playbook is executing.
+     */
+    private synchronized void enqueue(List<UpgradeRun> runs, Map<String, String> hostKeysByServer, Batch batch) {
+        Set<String> hostKeys = new LinkedHashSet<>();
+        List<CompletableFuture<Void>> priors = new ArrayList<>();
+        for (UpgradeRun run : runs) {
+            String hostKey = hostKeysByServer.get(run.getServerId());
+            if (hostKeys.add(hostKey)) {
+                CompletableFuture<Void> prior = hostQueues.get(hostKey);
+                if (prior != null)
+                    priors.add(prior);
+            }
+        }
+
+        CompletableFuture<Void> queued = CompletableFuture.allOf(priors.toArray(new CompletableFuture[0]))
+                .thenCompose(v -> slots.submit(() -> start(runs)))
+                .handle((results, e) -> {
+                    if (e != null) {
+                        log.error("Upgrade of {} run(s) starting with server {} could not be completed",
+                                runs.size(), runs.get(0).getServerId(), e);
+                        results = Collections.emptyMap();
+                    }
+                    for (UpgradeRun run : runs) {
+                        UpgradeRunStatus status = results.get(run.getId());
+                        if (status == null) {
+                            status = UpgradeRunStatus.FAILED;
+                            upgradeRuns.finish(run, status, null, "Could not be scheduled");
+                        }
+                        batch.record(status);
+                    }
+                    return null;
+                });
+        for (String hostKey : hostKeys) {
+            hostQueues.put(hostKey, queued);
+        }
+        queued.whenComplete((r, e) -> hostKeys.forEach(hostKey -> hostQueues.remove(hostKey, queued)));
+    }
+
+    private CompletableFuture<Map<Long, UpgradeRunStatus>> start(List<UpgradeRun> runs) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (runs.size() > 1)
+                return automationService.startUpgradeWave(runs, waveForks);
+            UpgradeRun run = runs.get(0);
+            return automationService.startUpgrade(run)
+                    .thenApply(status -> Collections.singletonMap(run.getId(), status));
+        }, upgradeExecutor).thenCompose(f -> f);
+    }
+
+    /**
+     * Groups by (component, target version). A host appearing twice in the
+     * same group gets its own single-target group so the wave lists each host
+     * once.
+     */
+    private List<List<UpgradeTarget>> groupIntoWaves(List<UpgradeTarget> targets, Map<String, String> hostKeys) {
+        Map<String, List<UpgradeTarget>> groups = new LinkedHashMap<>();
+        Map<String, Set<String>> hostsPerGroup = new HashMap<>();
+        List<List<UpgradeTarget>> waves = new ArrayList<>();
+
+        for (UpgradeTarget target : targets) {
+            String key = target.getComponentName().toLowerCase() + "|" + target.getTargetVersion();
+            if (hostsPerGroup.computeIfAbsent(key, k -> new HashSet<>()).add(hostKeys.get(target.getServerId())))
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(target);
+            else
+                waves.add(Collections.singletonList(target));
+        }
+        waves.addAll(0, groups.values());
+        return waves;
+    }
+
+    private boolean hasComponent(Server server, String componentName) {
+        if (server.getComponents() == null)
+            return false;
+        for (MiddlewareComponent c : server.getComponents()) {
+            if (c.getName() != null && c.getName().equalsIgnoreCase(componentName))
+                return true;
+        }
+        return false;
+    }
+
+    private void purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(BATCH_RETENTION_MINUTES);
+        batches.values().removeIf(b -> b.isDone() && b.submittedAt.isBefore(cutoff));
+    }
+
+    private static class Batch {
+        final String id;
+        final int total;
+        final LocalDateTime submittedAt = LocalDateTime.now();
+        final AtomicInteger succeeded = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger cancelled = new AtomicInteger();
+
+        Batch(String id, int total) {
+            this.id = id;
+            this.total = total;
+        }
+
+        void record(UpgradeRunStatus status) {
+            if (status == UpgradeRunStatus.SUCCESS)
+                succeeded.incrementAndGet();
+            else if (status == UpgradeRunStatus.CANCELLED)
+                cancelled.incrementAndGet();
+            else
+                failed.incrementAndGet();
+        }
+
+        boolean isDone() {
+            return succeeded.get() + failed.get() + cancelled.get() >= total;
+        }
+
+        UpgradeBatchStatus toStatus() {
+            int ok = succeeded.get();
+            int ko = failed.get();
+            int off = cancelled.get();
+            return UpgradeBatchStatus.builder()
+                    .batchId(id)
+                    .total(total)
+                    .pending(total - ok - ko - off)
+                    .succeeded(ok)
+                    .failed(ko)
+                    .cancelled(off)
+                    .submittedAt(submittedAt)
+                    .build();
+        }
+    }
+}
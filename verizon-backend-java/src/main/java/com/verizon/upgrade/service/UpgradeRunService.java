@@ -0,0 +1,117 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.dto.UpgradeTarget;
+import com.verizon.upgrade.model.UpgradeRun;
+import com.verizon.upgrade.model.UpgradeRunStatus;
+import com.verizon.upgrade.repository.AuditLogRepository;
+import com.verizon.upgrade.repository.UpgradeRunRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Persists {@link UpgradeRun} state as runs move through
+ * QUEUED -> RUNNING -> SUCCESS / FAILED / TIMED_OUT / CANCELLED.
+ */
+@Service
+@Slf4j
+public class UpgradeRunService {
+
+    private static final EnumSet<UpgradeRunStatus> ACTIVE = EnumSet.of(UpgradeRunStatus.QUEUED,
+            UpgradeRunStatus.RUNNING);
+    private static final int MESSAGE_LENGTH = 1000;
+
+    @Autowired
+    private UpgradeRunRepository runRepository;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private PlaybookRunner playbookRunner;
+
+    /**
+     * Runs still queued or running belong to a previous process and will never
+     * finish.
+     */
+    @PostConstruct
+    void failInterruptedRuns() {
+        LocalDateTime now = LocalDateTime.now();
+        int runs = runRepository.failAll(ACTIVE, "Interrupted by application restart", now);
+        int audits = auditLogRepository.failInProgress("Interrupted by application restart");
+        if (runs > 0 || audits > 0)
+            log.warn("Marked {} upgrade runs and {} audit entries left over from a previous start as FAILED", runs,
+                    audits);
+    }
+
+    List<UpgradeRun> queue(List<UpgradeTarget> targets, String batchId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<UpgradeRun> runs = new ArrayList<>(targets.size());
+        for (UpgradeTarget target : targets) {
+            UpgradeRun run = new UpgradeRun();
+            run.setBatchId(batchId);
+            run.setServerId(target.getServerId());
+            run.setSoftwareName(target.getComponentName());
+            run.setTargetVersion(target.getTargetVersion());
+            run.setStatus(UpgradeRunStatus.QUEUED);
+            run.setQueuedAt(now);
+            runs.add(run);
+        }
+        return runRepository.saveAll(runs);
+    }
+
+    /**
+     * QUEUED -> RUNNING. False if the run was cancelled in the meantime.
+     */
+    boolean markRunning(UpgradeRun run, String logRunId, String hostname) {
+        return runRepository.markRunning(run.getId(), logRunId, hostname, LocalDateTime.now()) == 1;
+    }
+
+    /**
+     * Moves a queued or running run to a terminal state. A run that already
+     * reached one keeps it.
+     */
+    void finish(UpgradeRun run, UpgradeRunStatus status, Integer exitCode, String message) {
+        if (message != null && message.length() > MESSAGE_LENGTH)
+            message = message.substring(0, MESSAGE_LENGTH);
+        runRepository.finish(run.getId(), ACTIVE, status, exitCode, message, LocalDateTime.now());
+    }
+
+    public Optional<UpgradeRun> get(Long id) {
+        return runRepository.findById(id);
+    }
+
+    public List<UpgradeRun> list(String batchId, UpgradeRunStatus status) {
+        if (batchId != null)
+            return runRepository.findByBatchIdOrderByIdAsc(batchId);
+        if (status != null)
+            return runRepository.findByStatusOrderByIdDesc(status);
+        return runRepository.findTop200ByOrderByIdDesc();
+    }
+
+    /**
+     * Cancels a queued run outright, or stops the playbook of a running one.
+     * Stopping a wave's playbook cancels every run in the wave.
+     *
+     * @return the run after the request, or empty if it doesn't exist
+     */
+    public Optional<UpgradeRun> cancel(Long id) {
+        Optional<UpgradeRun> found = runRepository.findById(id);
+        if (found.isEmpty())
+            return found;
+
+        UpgradeRun run = found.get();
+        if (run.getStatus() == UpgradeRunStatus.QUEUED) {
+            runRepository.finish(id, EnumSet.of(UpgradeRunStatus.QUEUED), UpgradeRunStatus.CANCELLED, null,
+                    "Cancelled before start", LocalDateTime.now());
+        } else if (run.getStatus() == UpgradeRunStatus.RUNNING && run.getLogRunId() != null) {
+            if (playbookRunner.cancel(run.getLogRunId()))
+                log.info("Cancelling playbook {} for upgrade run {}", run.getLogRunId(), id);
+        }
+        return runRepository.findById(id);
+    }
+}
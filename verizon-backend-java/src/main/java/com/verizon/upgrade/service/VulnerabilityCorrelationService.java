@@ -0,0 +1,484 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.dto.VulnerabilityCorrelation;
+import com.verizon.upgrade.model.MiddlewareComponent;
+import com.verizon.upgrade.repository.VulnerabilityScanRepository;
+import com.verizon.upgrade.version.Version;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * Links the findings of a vulnerability scan to the inventory and writes the
+ * outcome back onto the matched components and servers.
+ * <p>
+ * The inventory is read once into hash indexes: servers by hostname (full
+ * and short name) and by IP, components by server and install path. The
+ * scan's findings are then streamed past those indexes in a single pass, so
+ * each finding costs a few map lookups rather than a scan of the fleet. A
+ * finding goes to the servers with its hostname (or, failing that, its IP),
+ * and on each to the component whose install path contains the finding's
+ * directory, or else the only component of the finding's software type.
+ * <p>
+ * Components on a server that appears in the scan get their
+ * {@code vulnerabilityCount}, {@code targetVersion} (the highest version
+ * available in the repository that the findings call for, else the highest
+ * fix version) and status set; servers get a status derived from their
+ * components. Only rows that change are written, in JDBC batches.
+ * <p>
+ * Scan findings carry no severity, so the critical count known from the
+ * inventory is kept (capped at the number of findings, and cleared with
+ * them) and shown in the count, e.g. "5 (3 Critical)". A component left
+ * with no findings is "Up to Date", or "Outdated" if its current version is
+ * still below its target.
+ */
+@Service
+@Slf4j
+public class VulnerabilityCorrelationService {
+
+    static final String VULNERABLE = "Vulnerable";
+    static final String UP_TO_DATE = "Up to Date";
+    static final String OUTDATED = "Outdated";
+
+    private static final int UNMATCHED_SAMPLE = 20;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private VulnerabilityScanRepository scanRepository;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @Value("${vulnerability.correlation.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Correlates the findings seen in the given scan (the latest scan if
+     * null). Returns null if there is no such scan.
+     */
+    @Transactional
+    public VulnerabilityCorrelation correlate(Long scanId) {
+        if (scanId == null) {
+            scanId = scanRepository.findTopByOrderByIdDesc().map(s -> s.getId()).orElse(null);
+            if (scanId == null)
+                return null;
+        } else if (!scanRepository.existsById(scanId)) {
+            return null;
+        }
+
+        long started = System.nanoTime();
+        InventoryIndex index = loadInventory();
+        Pass pass = new Pass(index);
+        jdbcTemplate.query("select id, hostname, ip_address, directory, software, target_version, nearest_version,"
+                + " server_id, component_id from vulnerability_findings where last_scan_id = ?",
+                pass::accept, scanId);
+
+        int componentsUpdated = writeComponents(index);
+        int serversUpdated = writeServers(index);
+        int linksUpdated = writeLinks(pass.links);
+        if (componentsUpdated + serversUpdated > 0)
+            events.publishEvent(new InventoryChangedEvent("vulnerability correlation"));
+
+        VulnerabilityCorrelation result = VulnerabilityCorrelation.builder()
+                .scanId(scanId)
+                .findings(pass.findings)
+                .matchedByHostname(pass.byHostname)
+                .matchedByIp(pass.byIp)
+                .matchedToComponent(pass.toComponent)
+                .unmatched(pass.findings - pass.byHostname - pass.byIp)
+                .serversScanned(index.scannedServers())
+                .componentsUpdated(componentsUpdated)
+                .serversUpdated(serversUpdated)
+                .findingLinksUpdated(linksUpdated)
+                .unmatchedHosts(new ArrayList<>(pass.unmatchedHosts))
+                .durationMs((System.nanoTime() - started) / 1_000_000)
+                .build();
+        log.info("Correlated scan #{}: {} findings, {} matched to servers ({} by IP), {} to components;"
+                + " {} components and {} servers updated in {} ms", scanId, result.getFindings(),
+                pass.byHostname + pass.byIp, pass.byIp, pass.toComponent, componentsUpdated, serversUpdated,
+                result.getDurationMs());
+        return result;
+    }
+
+    /**
+     * Fills in {@code critical_count} for components stored before the column
+     * existed, from their {@code vulnerability_count}: one UPDATE per
+     * distinct value.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void backfillCriticalCounts() {
+        List<String> values = jdbcTemplate.queryForList("select distinct vulnerability_count from components"
+                + " where critical_count is null and vulnerability_count is not null", String.class);
+        int updated = 0;
+        for (String value : values) {
+            updated += jdbcTemplate.update("update components set critical_count = ?"
+                    + " where critical_count is null and vulnerability_count = ?",
+                    MiddlewareComponent.criticalCountOf(value), value);
+        }
+        if (updated > 0)
+            log.info("Set the critical count of {} components from their vulnerability count", updated);
+    }
+
+    private InventoryIndex loadInventory() {
+        InventoryIndex index = new InventoryIndex();
+        jdbcTemplate.query("select s.id, s.hostname, s.ip, s.status, c.id, c.type, c.name, c.install_path,"
+                + " c.vulnerability_count, c.critical_count, c.current_version, c.target_version, c.status"
+                + " from servers s join components c on c.server_id = s.id", rs -> {
+                    long serverId = rs.getLong(1);
+                    ServerEntry server = index.servers.get(serverId);
+                    if (server == null) {
+                        server = new ServerEntry(serverId, rs.getString(4));
+                        index.addServer(server, rs.getString(2), rs.getString(3));
+                    }
+                    int critical = rs.getInt(10);
+                    ComponentEntry component = new ComponentEntry(rs.getLong(5), rs.getString(6), rs.getString(7),
+                            rs.getString(9), rs.wasNull() ? null : critical, rs.getString(11), rs.getString(12),
+                            rs.getString(13));
+                    index.addComponent(server, component, rs.getString(8));
+                });
+        return index;
+    }
+
+    private int writeComponents(InventoryIndex index) {
+        List<ComponentEntry> changed = new ArrayList<>();
+        for (ServerEntry server : index.servers.values()) {
+            if (!server.scanned)
+                continue;
+            for (ComponentEntry c : server.components) {
+                if (c.resolve())
+                    changed.add(c);
+            }
+        }
+        jdbcTemplate.batchUpdate("update components set vulnerability_count = ?, critical_count = ?,"
+                + " target_version = ?, status = ? where id = ?", changed, batchSize, (ps, c) -> {
+                    ps.setString(1, c.newCount);
+                    ps.setObject(2, c.newCritical, Types.INTEGER);
+                    ps.setString(3, c.newTarget);
+                    ps.setString(4, c.newStatus);
+                    ps.setLong(5, c.id);
+                });
+        return changed.size();
+    }
+
+    private int writeServers(InventoryIndex index) {
+        List<ServerEntry> changed = new ArrayList<>();
+        for (ServerEntry server : index.servers.values()) {
+            if (server.scanned && server.resolve())
+                changed.add(server);
+        }
+        jdbcTemplate.batchUpdate("update servers set status = ? where id = ?", changed, batchSize, (ps, s) -> {
+            ps.setString(1, s.newStatus);
+            ps.setLong(2, s.id);
+        });
+        return changed.size();
+    }
+
+    private int writeLinks(List<long[]> links) {
+        jdbcTemplate.batchUpdate("update vulnerability_findings set server_id = ?, component_id = ? where id = ?",
+                links, batchSize, (ps, link) -> {
+                    setId(ps, 1, link[1]);
+                    setId(ps, 2, link[2]);
+                    ps.setLong(3, link[0]);
+                });
+        return links.size();
+    }
+
+    private static void setId(PreparedStatement ps, int index, long id) throws SQLException {
+        if (id == 0)
+            ps.setNull(index, Types.BIGINT);
+        else
+            ps.setLong(index, id);
+    }
+
+    private static String key(String value) {
+        if (value == null)
+            return null;
+        String trimmed = value.trim().toLowerCase(Locale.ROOT);
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static String shortName(String hostname) {
+        int dot = hostname.indexOf('.');
+        // Leave IPs and bare names alone
+        return dot > 0 && !Character.isDigit(hostname.charAt(0)) ? hostname.substring(0, dot) : null;
+    }
+
+    private static String normalizePath(String path) {
+        if (path == null)
+            return null;
+        String p = path.trim();
+        while (p.length() > 1 && p.endsWith("/"))
+            p = p.substring(0, p.length() - 1);
+        return p.isEmpty() ? null : p;
+    }
+
+    /**
+     * One streaming pass over a scan's findings.
+     */
+    static final class Pass {
+        final InventoryIndex index;
+        final List<long[]> links = new ArrayList<>(); // {findingId, serverId, componentId} that changed
+        final Set<String> unmatchedHosts = new LinkedHashSet<>();
+        long findings;
+        long byHostname;
+        long byIp;
+        long toComponent;
+
+        Pass(InventoryIndex index) {
+            this.index = index;
+        }
+
+        void accept(ResultSet rs) throws SQLException {
+            match(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                    rs.getString(6), rs.getString(7), rs.getLong(8), rs.getLong(9));
+        }
+
+        /**
+         * Matches one finding; ids are 0 for none.
+         */
+        void match(long findingId, String hostname, String ip, String rawDirectory, String software,
+                String targetVersion, String nearestVersion, long linkedServer, long linkedComponent) {
+            findings++;
+            String directory = normalizePath(rawDirectory);
+
+            List<ServerEntry> servers = index.byHostname(hostname);
+            if (!servers.isEmpty()) {
+                byHostname++;
+            } else {
+                servers = index.byIp(ip);
+                if (!servers.isEmpty())
+                    byIp++;
+                else if (unmatchedHosts.size() < UNMATCHED_SAMPLE)
+                    unmatchedHosts.add(hostname != null && !hostname.isEmpty() ? hostname : ip);
+            }
+
+            long serverId = 0;
+            long componentId = 0;
+            for (ServerEntry server : servers) {
+                server.scanned = true;
+                ComponentEntry component = index.componentAt(server, directory);
+                if (component == null)
+                    component = server.onlyOfType(software);
+                if (component != null) {
+                    component.add(nearestVersion, targetVersion);
+                    if (componentId == 0) {
+                        serverId = server.id;
+                        componentId = component.id;
+                    }
+                } else if (serverId == 0) {
+                    serverId = server.id;
+                }
+            }
+            if (componentId != 0)
+                toComponent++;
+            if (serverId != linkedServer || componentId != linkedComponent)
+                links.add(new long[] { findingId, serverId, componentId });
+        }
+    }
+
+    static final class InventoryIndex {
+        final Map<Long, ServerEntry> servers = new HashMap<>();
+        final Map<String, List<ServerEntry>> byHostname = new HashMap<>();
+        final Map<String, List<ServerEntry>> byIp = new HashMap<>();
+        // "<serverId>:<installPath>"
+        final Map<String, ComponentEntry> byServerPath = new HashMap<>();
+
+        void addServer(ServerEntry server, String hostname, String ip) {
+            servers.put(server.id, server);
+            String host = key(hostname);
+            if (host != null) {
+                byHostname.computeIfAbsent(host, k -> new ArrayList<>(1)).add(server);
+                String shortHost = shortName(host);
+                if (shortHost != null)
+                    byHostname.computeIfAbsent(shortHost, k -> new ArrayList<>(1)).add(server);
+            }
+            String address = key(ip);
+            if (address != null)
+                byIp.computeIfAbsent(address, k -> new ArrayList<>(1)).add(server);
+        }
+
+        void addComponent(ServerEntry server, ComponentEntry component, String installPath) {
+            server.components.add(component);
+            String path = normalizePath(installPath);
+            if (path != null)
+                byServerPath.putIfAbsent(server.id + ":" + path, component);
+        }
+
+        /**
+         * Servers with the hostname, trying the short name when the scan
+         * reports a fully qualified one the inventory doesn't have.
+         */
+        List<ServerEntry> byHostname(String hostname) {
+            String host = key(hostname);
+            if (host == null)
+                return Collections.emptyList();
+            List<ServerEntry> found = byHostname.get(host);
+            if (found == null) {
+                String shortHost = shortName(host);
+                found = shortHost == null ? null : byHostname.get(shortHost);
+            }
+            return found == null ? Collections.emptyList() : found;
+        }
+
+        List<ServerEntry> byIp(String ip) {
+            String address = key(ip);
+            List<ServerEntry> found = address == null ? null : byIp.get(address);
+            return found == null ? Collections.emptyList() : found;
+        }
+
+        /**
+         * The component installed at the directory or the nearest directory
+         * above it: one lookup per path level.
+         */
+        ComponentEntry componentAt(ServerEntry server, String directory) {
+            String prefix = server.id + ":";
+            for (String p = directory; p != null; ) {
+                ComponentEntry component = byServerPath.get(prefix + p);
+                if (component != null)
+                    return component;
+                int slash = p.lastIndexOf('/');
+                p = slash > 0 ? p.substring(0, slash) : null;
+            }
+            return null;
+        }
+
+        int scannedServers() {
+            int scanned = 0;
+            for (ServerEntry server : servers.values()) {
+                if (server.scanned)
+                    scanned++;
+            }
+            return scanned;
+        }
+    }
+
+    static final class ServerEntry {
+        final long id;
+        final String status;
+        final List<ComponentEntry> components = new ArrayList<>(2);
+        boolean scanned;
+        String newStatus;
+
+        ServerEntry(long id, String status) {
+            this.id = id;
+            this.status = status;
+        }
+
+        ComponentEntry onlyOfType(String software) {
+            if (software == null)
+                return null;
+            ComponentEntry found = null;
+            for (ComponentEntry c : components) {
+                if (software.equalsIgnoreCase(c.type) || software.equalsIgnoreCase(c.name)) {
+                    if (found != null)
+                        return null;
+                    found = c;
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Derives the status from the components' new values. True if it
+         * changed.
+         */
+        boolean resolve() {
+            boolean vulnerable = false;
+            boolean allUpToDate = true;
+            for (ComponentEntry c : components) {
+                vulnerable |= VULNERABLE.equals(c.newStatus);
+                allUpToDate &= UP_TO_DATE.equals(c.newStatus);
+            }
+            newStatus = vulnerable ? VULNERABLE : allUpToDate ? UP_TO_DATE : OUTDATED;
+            return !newStatus.equals(status);
+        }
+    }
+
+    static final class ComponentEntry {
+        final long id;
+        final String type;
+        final String name;
+        final String vulnerabilityCount;
+        final Integer criticalCount;
+        final String currentVersion;
+        final String targetVersion;
+        final String status;
+        int findings;
+        Version available; // highest version the findings call for that the repository has
+        Version fix; // highest fix version named by the findings
+        String newCount;
+        Integer newCritical;
+        String newTarget;
+        String newStatus;
+
+        ComponentEntry(long id, String type, String name, String vulnerabilityCount, Integer criticalCount,
+                String currentVersion, String targetVersion, String status) {
+            this.id = id;
+            this.type = type;
+            this.name = name;
+            this.vulnerabilityCount = vulnerabilityCount;
+            this.criticalCount = criticalCount;
+            this.currentVersion = currentVersion;
+            this.targetVersion = targetVersion;
+            this.status = status;
+        }
+
+        void add(String nearestVersion, String fixVersion) {
+            findings++;
+            available = max(available, nearestVersion);
+            fix = max(fix, fixVersion);
+        }
+
+        /**
+         * Works out the values to write. True if any of them changed.
+         */
+        boolean resolve() {
+            Version target = available != null ? available : fix;
+            newTarget = target != null ? target.getRaw() : targetVersion;
+            if (findings > 0) {
+                newCritical = criticalCount == null ? null : Math.min(criticalCount, findings);
+                newCount = newCritical != null && newCritical > 0 ? findings + " (" + newCritical + " Critical)"
+                        : String.valueOf(findings);
+                newStatus = VULNERABLE;
+            } else {
+                newCritical = 0;
+                newCount = "0";
+                boolean derived = VULNERABLE.equals(status) || UP_TO_DATE.equals(status) || OUTDATED.equals(status);
+                newStatus = !derived ? status : isBehind(currentVersion, newTarget) ? OUTDATED : UP_TO_DATE;
+            }
+            return !newCount.equals(vulnerabilityCount) || !Objects.equals(newCritical, criticalCount)
+                    || !Objects.equals(newTarget, targetVersion) || !Objects.equals(newStatus, status);
+        }
+
+        private static boolean isBehind(String current, String target) {
+            if (current == null || target == null)
+                return false;
+            Version c = Version.parse(current);
+            Version t = Version.parse(target);
+            return c.isValid() && t.isValid() && c.compareTo(t) < 0;
+        }
+
+        private static Version max(Version current, String raw) {
+            if (raw == null || raw.isEmpty())
+                return current;
+            Version candidate = Version.parse(raw);
+            if (!candidate.isValid())
+                return current;
+            return current == null || candidate.compareTo(current) > 0 ? candidate : current;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.dto.VulnerabilityResponse;
+import com.verizon.upgrade.model.VulnerabilityFinding;
+import com.verizon.upgrade.model.VulnerabilityScan;
+import com.verizon.upgrade.repository.VulnerabilityFindingRepository;
+import com.verizon.upgrade.repository.VulnerabilityScanRepository;
+import com.verizon.upgrade.util.Hashes;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Stores parsed scan results so the dashboard can query them without
+ * re-uploading the spreadsheet.
+ * <p>
+ * Each finding is keyed by a hash of its scan-derived fields. Re-ingesting a
+ * scan only inserts findings that have not been seen before; known ones get
+ * their last-seen scan bumped and their repository-derived fields (nearest
+ * version, status, action) brought up to date. Uploading the same file as the
+ * most recent scan skips parsing and serves the stored findings, re-resolved
+ * against the current artifact catalog.
+ * <p>
+ * A scan is stored in one transaction. Writers are serialized, and a
+ * duplicate-key race with another writer is retried once, when the rows it
+ * collided on count as already seen.
+ */
+@Service
+@Slf4j
+public class VulnerabilityFindingService {
+
+    private static final int CHUNK_SIZE = 500;
+
+    @Autowired
+    private VulnerabilityService vulnerabilityService;
+
+    @Autowired
+    private VulnerabilityFindingRepository findingRepository;
+
+    @Autowired
+    private VulnerabilityScanRepository scanRepository;
+
+    @Autowired
+    private ArtifactVersionIndex versionIndex;
+
+    @Autowired
+    private VulnerabilityCorrelationService correlationService;
+
+    @Value("${vulnerability.correlation.auto:true}")
+    private boolean autoCorrelate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactions;
+
+    // Serializes scan writes so concurrent jobs don't insert the same finding twice
+    private final Object persistLock = new Object();
+
+    @PostConstruct
+    public void init() {
+        transactions = new TransactionTemplate(transactionManager);
+    }
+
+    public List<VulnerabilityResponse> ingest(MultipartFile file) throws Exception {
+        Path tempFile = Files.createTempFile("vuln-scan-", ".tmp");
+        try {
+            file.transferTo(tempFile);
+            return ingest(tempFile, file.getOriginalFilename(), new ScanProgress());
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    public List<VulnerabilityResponse> ingest(Path file, String filename, ScanProgress progress) throws Exception {
+        String fileHash = Hashes.sha256Hex(file);
+
+        Optional<VulnerabilityScan> latest = scanRepository.findTopByOrderByIdDesc();
+        if (latest.isPresent() && fileHash.equals(latest.get().getFileHash())) {
+            log.info("{} matches the latest ingested scan #{}, serving stored findings", filename,
+                    latest.get().getId());
+            List<VulnerabilityResponse> stored = refreshStored(latest.get().getId());
+            progress.setMatchesFound(stored.size());
+            return stored;
+        }
+
+        List<VulnerabilityResponse> results = vulnerabilityService.parseVulnerabilityFile(file, progress);
+        Long scanId = persist(filename, fileHash, results);
+        if (autoCorrelate) {
+            try {
+                correlationService.correlate(scanId);
+            } catch (RuntimeException e) {
+                log.warn("Could not correlate scan #{} with the inventory: {}", scanId, e.getMessage());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Stored findings matching the given filters. By default only those seen
+     * in the latest scan, so findings that were remediated since drop out.
+     * {@code scanId} selects the findings last seen in that scan instead (for
+     * an older scan, the ones gone since), and {@code includeResolved} every
+     * finding ever stored.
+     */
+    public Page<VulnerabilityFinding> search(String hostname, String software, String status, Long scanId,
+            boolean includeResolved, int page, int size) {
+        PageRequest pageable = PageRequest.of(Math.max(page, 0), Math.max(size, 1), Sort.by("id"));
+        if (scanId == null && !includeResolved) {
+            scanId = scanRepository.findTopByOrderByIdDesc().map(VulnerabilityScan::getId).orElse(null);
+            if (scanId == null)
+                return Page.empty(pageable);
+        }
+        Specification<VulnerabilityFinding> filter = Specification.where(equal("lastScanId", scanId))
+                .and(equal("hostname", blankToNull(hostname)))
+                .and(equal("software", blankToNull(software)))
+                .and(equal("status", blankToNull(status)));
+        return findingRepository.findAll(filter, pageable);
+    }
+
+    /**
+     * Matches rows whose attribute equals the value; no restriction if the
+     * value is null.
+     */
+    private static Specification<VulnerabilityFinding> equal(String attribute, Object value) {
+        if (value == null)
+            return null;
+        return (root, query, cb) -> cb.equal(root.get(attribute), value);
+    }
+
+    /**
+     * The stored findings of a scan, with nearest version, status and action
+     * resolved again against the current artifact catalog; rows whose values
+     * changed are written back.
+     */
+    private List<VulnerabilityResponse> refreshStored(Long scanId) {
+        return transactions.execute(tx -> {
+            List<VulnerabilityFinding> findings = findingRepository.findByLastScanIdOrderByIdAsc(scanId);
+            List<VulnerabilityFinding> changed = new ArrayList<>();
+            for (VulnerabilityFinding finding : findings) {
+                String nearest = versionIndex.findNearestVersion(finding.getSoftware(), finding.getTargetVersion());
+                String status = VulnerabilityService.statusFor(nearest);
+                String action = VulnerabilityService.actionFor(nearest);
+                if (!nearest.equals(finding.getNearestVersion()) || !status.equals(finding.getStatus())
+                        || !action.equals(finding.getAction())) {
+                    finding.setNearestVersion(nearest);
+                    finding.setStatus(status);
+                    finding.setAction(action);
+                    changed.add(finding);
+                }
+            }
+            findingRepository.saveAll(changed);
+            if (!changed.isEmpty())
+                log.info("Re-resolved {} stored findings of scan #{} against the current catalog", changed.size(),
+                        scanId);
+            return findings.stream().map(this::toResponse).collect(Collectors.toList());
+        });
+    }
+
+    private Long persist(String filename, String fileHash, List<VulnerabilityResponse> results) {
+        synchronized (persistLock) {
+            try {
+                return transactions.execute(tx -> persistScan(filename, fileHash, results));
+            } catch (DataIntegrityViolationException e) {
+                // Another writer stored some of these findings first; they are known now
+                log.warn("Duplicate findings while storing {}, retrying: {}", filename, e.getMessage());
+                return transactions.execute(tx -> persistScan(filename, fileHash, results));
+            }
+        }
+    }
+
+    private Long persistScan(String filename, String fileHash, List<VulnerabilityResponse> results) {
+        LocalDateTime now = LocalDateTime.now();
+        VulnerabilityScan scan = new VulnerabilityScan();
+        scan.setFilename(filename);
+        scan.setFileHash(fileHash);
+        scan.setFindingCount(results.size());
+        scan.setIngestedAt(now);
+        scan = scanRepository.save(scan);
+
+        int inserted = 0;
+        for (int from = 0; from < results.size(); from += CHUNK_SIZE) {
+            List<VulnerabilityResponse> chunk = results.subList(from, Math.min(from + CHUNK_SIZE, results.size()));
+
+            Map<String, VulnerabilityResponse> byHash = new LinkedHashMap<>();
+            for (VulnerabilityResponse row : chunk) {
+                byHash.putIfAbsent(contentHash(row), row);
+            }
+
+            Set<String> existing = findingRepository.findExistingHashes(byHash.keySet());
+            markSeen(existing, byHash, scan.getId(), now);
+
+            List<VulnerabilityFinding> fresh = new ArrayList<>();
+            for (Map.Entry<String, VulnerabilityResponse> entry : byHash.entrySet()) {
+                if (!existing.contains(entry.getKey()))
+                    fresh.add(toFinding(entry.getValue(), entry.getKey(), scan.getId(), now));
+            }
+            findingRepository.saveAll(fresh);
+            findingRepository.flush();
+            inserted += fresh.size();
+        }
+
+        scan.setNewFindingCount(inserted);
+        scanRepository.save(scan);
+        log.info("Stored scan #{} ({}): {} findings, {} new", scan.getId(), filename, results.size(), inserted);
+        return scan.getId();
+    }
+
+    /**
+     * Bumps the last-seen scan of known findings and refreshes their derived
+     * fields from this scan's rows: one update per distinct resolution.
+     */
+    private void markSeen(Set<String> existing, Map<String, VulnerabilityResponse> byHash, Long scanId,
+            LocalDateTime now) {
+        Map<List<String>, List<String>> byResolution = new HashMap<>();
+        for (String hash : existing) {
+            VulnerabilityResponse row = byHash.get(hash);
+            byResolution.computeIfAbsent(Arrays.asList(row.getNearestVersion(), row.getStatus(), row.getAction()),
+                    k -> new ArrayList<>()).add(hash);
+        }
+        for (Map.Entry<List<String>, List<String>> entry : byResolution.entrySet()) {
+            List<String> resolution = entry.getKey();
+            findingRepository.markSeen(entry.getValue(), scanId, now, resolution.get(0), resolution.get(1),
+                    resolution.get(2));
+        }
+    }
+
+    private String contentHash(VulnerabilityResponse row) {
+        return Hashes.sha256Hex(row.getHostname(), row.getIpAddress(), row.getDirectory(), row.getSoftware(),
+                row.getVulnerabilities(), row.getCurrentVersion(), row.getTargetVersion());
+    }
+
+    private VulnerabilityFinding toFinding(VulnerabilityResponse row, String hash, Long scanId, LocalDateTime now) {
+        VulnerabilityFinding finding = new VulnerabilityFinding();
+        finding.setHostname(row.getHostname());
+        finding.setIpAddress(row.getIpAddress());
+        finding.setSoftware(row.getSoftware());
+        finding.setDirectory(row.getDirectory());
+        finding.setVulnerabilities(row.getVulnerabilities());
+        finding.setCurrentVersion(row.getCurrentVersion());
+        finding.setTargetVersion(row.getTargetVersion());
+        finding.setNearestVersion(row.getNearestVersion());
+        finding.setStatus(row.getStatus());
+        finding.setAction(row.getAction());
+        finding.setContentHash(hash);
+        finding.setFirstScanId(scanId);
+        finding.setLastScanId(scanId);
+        finding.setFirstSeenAt(now);
+        finding.setLastSeenAt(now);
+        return finding;
+    }
+
+    private VulnerabilityResponse toResponse(VulnerabilityFinding finding) {
+        return VulnerabilityResponse.builder()
+                .hostname(finding.getHostname())
+                .ipAddress(finding.getIpAddress())
+                .software(finding.getSoftware())
+                .directory(finding.getDirectory())
+                .vulnerabilities(finding.getVulnerabilities())
+                .currentVersion(finding.getCurrentVersion())
+                .targetVersion(finding.getTargetVersion())
+                .availableVersions(versionIndex.getVersions(finding.getSoftware()))
+                .nearestVersion(finding.getNearestVersion())
+                .status(finding.getStatus())
+                .action(finding.getAction())
+                .build();
+    }
+
+    private String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
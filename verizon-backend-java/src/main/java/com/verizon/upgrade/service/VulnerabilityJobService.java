@@ -0,0 +1,180 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.dto.VulnerabilityJobStatus;
+import com.verizon.upgrade.dto.VulnerabilityResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs vulnerability scan parses in the background so uploads return right
+ * away. Jobs are kept in memory; finished jobs and their results are dropped
+ * once the configured retention period has passed, checked every minute.
+ */
+@Service
+@Slf4j
+public class VulnerabilityJobService {
+
+    @Autowired
+    private VulnerabilityFindingService findingService;
+
+    @Value("${vulnerability.jobs.concurrency:2}")
+    private int concurrency;
+
+    @Value("${vulnerability.jobs.queue-capacity:20}")
+    private int queueCapacity;
+
+    @Value("${vulnerability.jobs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService purger;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "vuln-job-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "vuln-job-purge");
+            t.setDaemon(true);
+            return t;
+        });
+        purger.scheduleWithFixedDelay(this::purgeExpired, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Copies the upload to a temp file and queues it for parsing.
+     *
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    public VulnerabilityJobStatus submit(MultipartFile file) throws IOException {
+        Path tempFile = Files.createTempFile("vuln-job-", ".tmp");
+        Job job = new Job(UUID.randomUUID().toString(), file.getOriginalFilename());
+        try {
+            file.transferTo(tempFile);
+            jobs.put(job.id, job);
+            executor.execute(() -> run(job, tempFile));
+        } catch (IOException | RuntimeException e) {
+            // The job never got the file, so nothing else will delete it
+            jobs.remove(job.id);
+            deleteTempFile(tempFile);
+            throw e;
+        }
+        log.info("Queued vulnerability scan job {} for {}", job.id, job.filename);
+        return job.toStatus();
+    }
+
+    public VulnerabilityJobStatus getStatus(String jobId) {
+        Job job = jobs.get(jobId);
+        return job == null ? null : job.toStatus();
+    }
+
+    /**
+     * A page of the job's results, or null if the job is unknown. Results are
+     * empty until the job has completed.
+     */
+    public Page<VulnerabilityResponse> getResults(String jobId, int page, int size) {
+        Job job = jobs.get(jobId);
+        if (job == null)
+            return null;
+
+        PageRequest request = PageRequest.of(Math.max(page, 0), Math.max(size, 1));
+        List<VulnerabilityResponse> results = job.results == null ? Collections.emptyList() : job.results;
+        int from = (int) Math.min(request.getOffset(), results.size());
+        int to = Math.min(from + request.getPageSize(), results.size());
+        return new PageImpl<>(results.subList(from, to), request, results.size());
+    }
+
+    private void run(Job job, Path file) {
+        job.status = "RUNNING";
+        job.startedAt = LocalDateTime.now();
+        try {
+            job.results = findingService.ingest(file, job.filename, job.progress);
+            job.status = "COMPLETED";
+        } catch (Exception e) {
+            log.error("Vulnerability scan job {} failed", job.id, e);
+            job.error = e.getMessage();
+            job.status = "FAILED";
+        } finally {
+            job.completedAt = LocalDateTime.now();
+            deleteTempFile(file);
+        }
+    }
+
+    private void deleteTempFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete temp file {}", file, e);
+        }
+    }
+
+    void purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        int before = jobs.size();
+        jobs.values().removeIf(job -> job.completedAt != null && job.completedAt.isBefore(cutoff));
+        if (jobs.size() < before)
+            log.debug("Purged {} expired vulnerability scan jobs", before - jobs.size());
+    }
+
+    private static class Job {
+        final String id;
+        final String filename;
+        final LocalDateTime submittedAt = LocalDateTime.now();
+        final ScanProgress progress = new ScanProgress();
+        volatile String status = "QUEUED";
+        volatile String error;
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime completedAt;
+        volatile List<VulnerabilityResponse> results;
+
+        Job(String id, String filename) {
+            this.id = id;
+            this.filename = filename;
+        }
+
+        VulnerabilityJobStatus toStatus() {
+            return VulnerabilityJobStatus.builder()
+                    .jobId(id)
+                    .filename(filename)
+                    .status(status)
+                    .rowsScanned(progress.getRowsScanned())
+                    .matchesFound(progress.getMatchesFound())
+                    .error(error)
+                    .submittedAt(submittedAt)
+                    .startedAt(startedAt)
+                    .completedAt(completedAt)
+                    .build();
+        }
+    }
+}
@@ -1,35 +1,121 @@
 package com.verizon.upgrade.service;
 
 import com.verizon.upgrade.dto.VulnerabilityResponse;
-import com.verizon.upgrade.model.SoftwareArtifact;
+import com.verizon.upgrade.parser.PluginOutputExtractor;
+import com.verizon.upgrade.parser.StreamingSheetReader;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @Slf4j
 public class VulnerabilityService {
 
+    /** Rows buffered while looking for the header row in streaming mode. */
+    private static final int HEADER_SEARCH_ROWS = 500;
+
     @Autowired
-    private ArtifactService artifactService;
+    private ArtifactVersionIndex versionIndex;
+
+    private final StreamingSheetReader sheetReader = new StreamingSheetReader();
+
+    @Value("${vulnerability.parser.streaming:true}")
+    private boolean streamingEnabled;
+
+    /** Worker threads for row processing; 0 means one per core, 1 disables the pool. */
+    @Value("${vulnerability.parser.parallelism:0}")
+    private int parallelism;
+
+    @Value("${vulnerability.parser.batch-size:512}")
+    private int batchSize;
+
+    private ExecutorService rowWorkers;
+
+    @PostConstruct
+    public void init() {
+        if (parallelism <= 0)
+            parallelism = Runtime.getRuntime().availableProcessors();
+        if (parallelism > 1) {
+            AtomicInteger threadCount = new AtomicInteger();
+            rowWorkers = Executors.newFixedThreadPool(parallelism, r -> {
+                Thread t = new Thread(r, "vuln-parse-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            log.info("Vulnerability row processing will use {} worker threads", parallelism);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (rowWorkers != null)
+            rowWorkers.shutdownNow();
+    }
 
     public List<VulnerabilityResponse> parseVulnerabilityExcel(MultipartFile file) throws Exception {
-        // Use a Set to automatically remove duplicate rows
-        Set<VulnerabilityResponse> uniqueResults = new LinkedHashSet<>();
+        Path tempFile = Files.createTempFile("vuln-scan-", ".tmp");
+        try {
+            file.transferTo(tempFile);
+            return parseVulnerabilityFile(tempFile, new ScanProgress());
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Parses a scan export already on local disk, updating {@code progress} as
+     * rows are read.
+     */
+    public List<VulnerabilityResponse> parseVulnerabilityFile(Path file, ScanProgress progress) throws Exception {
+        if (streamingEnabled && FileMagic.valueOf(file.toFile()) == FileMagic.OOXML) {
+            return parseStreaming(file, progress);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return parseWorkbook(in, progress);
+        }
+    }
 
-        try (Workbook workbook = WorkbookFactory.create(file.getInputStream())) {
+    /**
+     * Single-pass SAX parse of an .xlsx scan export. Rows seen before the header
+     * row are held in a small bounded buffer and replayed once the column layout
+     * is known, so memory stays flat regardless of the sheet size. When a worker
+     * pool is configured, rows are processed in batches off the reader thread.
+     */
+    private List<VulnerabilityResponse> parseStreaming(Path file, ScanProgress progress) throws Exception {
+        log.info("Starting streaming parse of {}", file);
+        StreamingScan scan = new StreamingScan(progress);
+        sheetReader.readFirstSheet(file, scan);
+        scan.finish();
+
+        log.info("Finished parsing. Found {} unique vulnerabilities.", scan.uniqueResults.size());
+        return scan.uniqueResults.toList();
+    }
+
+    private List<VulnerabilityResponse> parseWorkbook(InputStream in, ScanProgress progress) throws Exception {
+        // Keyed on host/IP/directory/software/fix so duplicate rows are dropped
+        UniqueFindings uniqueResults = new UniqueFindings();
+
+        try (Workbook workbook = WorkbookFactory.create(in)) {
             Sheet sheet = workbook.getSheetAt(0);
 
             // --- STEP 1: Attempt to find headers dynamically ---
-            int ipIdx = -1, hostIdx = -1, familyIdx = -1, vulIdx = -1, outputIdx = -1;
-            boolean headersFound = false;
+            ColumnLayout layout = null;
             int headerRowNum = -1;
 
             log.info("Starting Header Search (Full File)...");
@@ -38,54 +124,18 @@ public class VulnerabilityService {
                 Row row = searchIterator.next();
 
                 // LIMIT REMOVED: We now scan every row until headers are found or EOF
-
-                for (Cell cell : row) {
-                    String h = getCellValue(cell).toLowerCase().trim();
-                    if (ipIdx == -1 && (h.contains("ip address") || h.equals("ip")))
-                        ipIdx = cell.getColumnIndex();
-                    else if (hostIdx == -1 && (h.contains("hostname") || h.contains("dns name")
-                            || h.contains("system name") || h.contains("asset name")))
-                        hostIdx = cell.getColumnIndex();
-                    else if (familyIdx == -1 && (h.contains("family") || h.contains("plugin family")))
-                        familyIdx = cell.getColumnIndex();
-                    else if (vulIdx == -1 && (h.contains("vul name") || h.contains("plugin name") || h.equals("name")))
-                        vulIdx = cell.getColumnIndex();
-                    else if (outputIdx == -1 && (h.contains("plugin output") || h.contains("output")))
-                        outputIdx = cell.getColumnIndex();
-                }
-
-                // If we found the critical columns, lock them in
-                if (ipIdx != -1 && hostIdx != -1) {
-                    headersFound = true;
+                layout = ColumnLayout.detect(cellValues(row));
+                if (layout != null) {
                     headerRowNum = row.getRowNum();
-                    // Set defaults for others if specific headers weren't matched
-                    if (familyIdx == -1)
-                        familyIdx = 36;
-                    if (vulIdx == -1)
-                        vulIdx = 35;
-                    if (outputIdx == -1)
-                        outputIdx = 46;
-                    log.info("Headers FOUND on Row {}: IP={} Host={} Family={} Vul={} Output={}", headerRowNum, ipIdx,
-                            hostIdx, familyIdx, vulIdx, outputIdx);
+                    log.info("Headers FOUND on Row {}: {}", headerRowNum, layout);
                     break;
                 }
-                // Reset for next row
-                ipIdx = -1;
-                hostIdx = -1;
-                familyIdx = -1;
-                vulIdx = -1;
-                outputIdx = -1;
             }
 
             // --- STEP 2: Fallback if headers missing ---
-            if (!headersFound) {
+            if (layout == null) {
                 log.warn("Headers NOT found by name after scanning full file. Falling back to OBSERVED LOG INDICES.");
-                // CORRECTED INDICES BASED ON YOUR LOGS
-                ipIdx = 0;
-                hostIdx = 1;
-                vulIdx = 35;
-                familyIdx = 36;
-                outputIdx = 46;
+                layout = ColumnLayout.fallback();
             }
 
             // --- STEP 3: Process Data ---
@@ -97,69 +147,272 @@ public class VulnerabilityService {
                 if (row.getRowNum() == headerRowNum || row == null || row.getLastCellNum() <= 0)
                     continue;
 
-                // Skip if this looks like a header repetition
-                String checkIp = getCellValue(row.getCell(ipIdx));
-                if (checkIp.toLowerCase().contains("ip address") || checkIp.toLowerCase().equals("ip"))
-                    continue;
+                progress.rowScanned();
+                VulnerabilityResponse responseRow = processRow(layout, cellValues(row));
+                if (responseRow != null) {
+                    uniqueResults.add(responseRow);
+                    progress.setMatchesFound(uniqueResults.size());
+                }
+            }
+        }
 
-                Cell familyCell = row.getCell(familyIdx, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-                Cell outputCell = row.getCell(outputIdx, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
+        log.info("Finished parsing. Found {} unique vulnerabilities.", uniqueResults.size());
+        return uniqueResults.toList();
+    }
 
-                String family = getCellValue(familyCell);
-                String pluginOutput = getCellValue(outputCell);
+    /**
+     * Applies the middleware filters to one data row and builds its response, or
+     * returns null when the row is not a middleware finding.
+     */
+    private VulnerabilityResponse processRow(ColumnLayout layout, String[] cells) {
+        // Skip if this looks like a header repetition
+        String checkIp = cell(cells, layout.ipIdx);
+        if (checkIp.toLowerCase().contains("ip address") || checkIp.toLowerCase().equals("ip"))
+            return null;
+
+        String family = cell(cells, layout.familyIdx);
+        String pluginOutput = cell(cells, layout.outputIdx);
+
+        // 1. General Exclusion Filter
+        if (containsAny(family, "Local security checks", "Kernal.", "General",
+                "Oracle Linux Local Security Checks")) {
+            return null;
+        }
 
-                // 1. General Exclusion Filter
-                if (containsAny(family, "Local security checks", "Kernal.", "General",
-                        "Oracle Linux Local Security Checks")) {
-                    continue;
-                }
+        PluginOutputExtractor.Result extracted = PluginOutputExtractor.extract(pluginOutput);
+        String path = extracted.getPath();
+        if (path.isEmpty())
+            return null; // Skip if no path found
+
+        // 2. STRICT PATH FILTERING: Only /apps/opt/application/mw or /apps/opt/mw
+        if (!startsWithAny(path, "/apps/opt/application/mw", "/apps/opt/mw"))
+            return null;
+
+        String softwareType = deriveSoftware(path);
+        String targetVersionValue = extracted.getFixVersion();
+
+        // Shared, immutable per-type list; not copied into each row
+        List<String> availableVersions = versionIndex.getVersions(softwareType);
+
+        String nearestVersion = versionIndex.findNearestVersion(softwareType, targetVersionValue);
+
+        return VulnerabilityResponse.builder()
+                .hostname(cell(cells, layout.hostIdx))
+                .ipAddress(checkIp)
+                .vulnerabilities(cell(cells, layout.vulIdx))
+                .directory(path)
+                .software(softwareType)
+                .currentVersion(extracted.getReportedVersion())
+                .targetVersion(targetVersionValue)
+                .availableVersions(availableVersions)
+                .nearestVersion(nearestVersion)
+                .status(statusFor(nearestVersion))
+                .action(actionFor(nearestVersion))
+                .build();
+    }
+
+    /**
+     * Finding status given the repository version that fixes it (empty if
+     * none does).
+     */
+    static String statusFor(String nearestVersion) {
+        return nearestVersion.isEmpty() ? "Not Prepared" : "Ready to Patch";
+    }
+
+    static String actionFor(String nearestVersion) {
+        return nearestVersion.isEmpty() ? "Upload Software" : "Patch Now";
+    }
+
+    /**
+     * Row callback for the SAX reader. Until the header row is located, rows are
+     * parked in {@link #pending}; if no header shows up within
+     * {@link #HEADER_SEARCH_ROWS} rows the fallback indices are used instead.
+     * <p>
+     * Data rows are grouped into batches. With a worker pool, each batch is
+     * processed on the pool and the reader keeps at most two batches per worker
+     * in flight; results are merged strictly in submission order so the output
+     * keeps the same first-seen ordering as a sequential parse.
+     */
+    private class StreamingScan implements StreamingSheetReader.RowHandler {
+        private final UniqueFindings uniqueResults = new UniqueFindings();
+        private final Deque<Future<List<VulnerabilityResponse>>> inFlight = new ArrayDeque<>();
+        private final ScanProgress progress;
+        private List<String[]> pending = new ArrayList<>();
+        private List<String[]> batch = new ArrayList<>(batchSize);
+        private ColumnLayout layout;
+
+        StreamingScan(ScanProgress progress) {
+            this.progress = progress;
+        }
+
+        @Override
+        public void handleRow(int rowNum, String[] cells) {
+            progress.rowScanned();
+            if (layout != null) {
+                accept(cells);
+                return;
+            }
+
+            ColumnLayout detected = ColumnLayout.detect(cells);
+            if (detected != null) {
+                log.info("Headers FOUND on Row {}: {}", rowNum, detected);
+                useLayout(detected);
+                return;
+            }
+
+            pending.add(cells);
+            if (pending.size() > HEADER_SEARCH_ROWS) {
+                log.warn("Headers NOT found in the first {} rows. Falling back to OBSERVED LOG INDICES.",
+                        HEADER_SEARCH_ROWS);
+                useLayout(ColumnLayout.fallback());
+            }
+        }
+
+        void finish() {
+            if (layout == null) {
+                log.warn("Headers NOT found by name after scanning full file. Falling back to OBSERVED LOG INDICES.");
+                useLayout(ColumnLayout.fallback());
+            }
+            dispatch();
+            while (!inFlight.isEmpty())
+                mergeOldest();
+        }
+
+        private void useLayout(ColumnLayout resolved) {
+            layout = resolved;
+            for (String[] cells : pending) {
+                accept(cells);
+            }
+            pending = null;
+        }
 
-                String path = extractPath(pluginOutput);
-                if (path.isEmpty())
-                    continue; // Skip if no path found
-
-                // 2. STRICT PATH FILTERING: Only /apps/opt/application/mw or /apps/opt/mw
-                boolean isTargetMiddleware = startsWithAny(path, "/apps/opt/application/mw", "/apps/opt/mw");
-
-                if (isTargetMiddleware) {
-                    String softwareType = deriveSoftware(path);
-                    String targetVersionValue = extractFix(pluginOutput);
-
-                    List<String> availableVersions = artifactService.getByType(softwareType)
-                            .stream()
-                            .map(SoftwareArtifact::getVersion)
-                            .sorted(Comparator.reverseOrder())
-                            .collect(Collectors.toList());
-
-                    String nearestVersion = findNearestVersion(availableVersions, targetVersionValue);
-
-                    VulnerabilityResponse responseRow = VulnerabilityResponse.builder()
-                            .hostname(getCellValue(row.getCell(hostIdx, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK)))
-                            .ipAddress(getCellValue(row.getCell(ipIdx, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK)))
-                            .vulnerabilities(
-                                    getCellValue(row.getCell(vulIdx, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK)))
-                            .directory(path)
-                            .software(softwareType)
-                            .currentVersion(extractVersion(pluginOutput))
-                            .targetVersion(targetVersionValue)
-                            .availableVersions(availableVersions)
-                            .nearestVersion(nearestVersion)
-                            .status(nearestVersion.isEmpty() ? "Not Prepared" : "Ready to Patch")
-                            .action(nearestVersion.isEmpty() ? "Upload Software" : "Patch Now")
-                            .build();
-
-                    // Add to Set (automatically handles duplicates)
+        private void accept(String[] cells) {
+            if (rowWorkers == null) {
+                VulnerabilityResponse responseRow = processRow(layout, cells);
+                if (responseRow != null) {
                     uniqueResults.add(responseRow);
+                    progress.setMatchesFound(uniqueResults.size());
                 }
+                return;
             }
+            batch.add(cells);
+            if (batch.size() >= batchSize)
+                dispatch();
         }
 
-        log.info("Finished parsing. Found {} unique vulnerabilities.", uniqueResults.size());
-        return new ArrayList<>(uniqueResults);
+        private void dispatch() {
+            if (batch.isEmpty())
+                return;
+            List<String[]> rows = batch;
+            ColumnLayout rowLayout = layout;
+            batch = new ArrayList<>(batchSize);
+
+            while (inFlight.size() >= parallelism * 2)
+                mergeOldest();
+            inFlight.add(rowWorkers.submit(() -> {
+                List<VulnerabilityResponse> out = new ArrayList<>();
+                for (String[] cells : rows) {
+                    VulnerabilityResponse responseRow = processRow(rowLayout, cells);
+                    if (responseRow != null)
+                        out.add(responseRow);
+                }
+                return out;
+            }));
+        }
+
+        private void mergeOldest() {
+            try {
+                uniqueResults.addAll(inFlight.poll().get());
+                progress.setMatchesFound(uniqueResults.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelAll();
+                throw new IllegalStateException("Interrupted while processing scan rows", e);
+            } catch (ExecutionException e) {
+                cancelAll();
+                throw new IllegalStateException("Failed to process scan rows", e.getCause());
+            }
+        }
+
+        private void cancelAll() {
+            inFlight.forEach(f -> f.cancel(true));
+            inFlight.clear();
+        }
+    }
+
+    /**
+     * Column positions of the fields we read from a scan export.
+     */
+    private static final class ColumnLayout {
+        final int ipIdx, hostIdx, familyIdx, vulIdx, outputIdx;
+
+        private ColumnLayout(int ipIdx, int hostIdx, int familyIdx, int vulIdx, int outputIdx) {
+            this.ipIdx = ipIdx;
+            this.hostIdx = hostIdx;
+            this.familyIdx = familyIdx;
+            this.vulIdx = vulIdx;
+            this.outputIdx = outputIdx;
+        }
+
+        // CORRECTED INDICES BASED ON YOUR LOGS
+        static ColumnLayout fallback() {
+            return new ColumnLayout(0, 1, 36, 35, 46);
+        }
+
+        /**
+         * Returns the layout if this row is the header row (IP and hostname columns
+         * both present), otherwise null.
+         */
+        static ColumnLayout detect(String[] cells) {
+            int ipIdx = -1, hostIdx = -1, familyIdx = -1, vulIdx = -1, outputIdx = -1;
+            for (int i = 0; i < cells.length; i++) {
+                String h = cells[i].toLowerCase().trim();
+                if (h.isEmpty())
+                    continue;
+                if (ipIdx == -1 && (h.contains("ip address") || h.equals("ip")))
+                    ipIdx = i;
+                else if (hostIdx == -1 && (h.contains("hostname") || h.contains("dns name")
+                        || h.contains("system name") || h.contains("asset name")))
+                    hostIdx = i;
+                else if (familyIdx == -1 && (h.contains("family") || h.contains("plugin family")))
+                    familyIdx = i;
+                else if (vulIdx == -1 && (h.contains("vul name") || h.contains("plugin name") || h.equals("name")))
+                    vulIdx = i;
+                else if (outputIdx == -1 && (h.contains("plugin output") || h.contains("output")))
+                    outputIdx = i;
+            }
+
+            if (ipIdx == -1 || hostIdx == -1)
+                return null;
+            // Set defaults for others if specific headers weren't matched
+            return new ColumnLayout(ipIdx, hostIdx,
+                    familyIdx == -1 ? 36 : familyIdx,
+                    vulIdx == -1 ? 35 : vulIdx,
+                    outputIdx == -1 ? 46 : outputIdx);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("IP=%d Host=%d Family=%d Vul=%d Output=%d", ipIdx, hostIdx, familyIdx, vulIdx,
+                    outputIdx);
+        }
     }
 
     // --- Helper Methods ---
 
+    private String[] cellValues(Row row) {
+        int width = Math.max(row.getLastCellNum(), 0);
+        String[] cells = new String[width];
+        for (int i = 0; i < width; i++) {
+            cells[i] = getCellValue(row.getCell(i));
+        }
+        return cells;
+    }
+
+    private String cell(String[] cells, int idx) {
+        return idx >= 0 && idx < cells.length ? cells[idx] : "";
+    }
+
     private String getCellValue(Cell cell) {
         if (cell == null)
             return "";
@@ -201,35 +454,6 @@ public class VulnerabilityService {
         return false;
     }
 
-    private String extractPath(String output) {
-        if (output == null)
-            return "";
-        Pattern p = Pattern.compile("Path\\s*:\\s*([^\\s\\n\\r]+)", Pattern.CASE_INSENSITIVE);
-        Matcher m = p.matcher(output);
-        return m.find() ? m.group(1) : "";
-    }
-
-    private String extractVersion(String output) {
-        if (output == null)
-            return "";
-        Pattern p = Pattern.compile("(Reported Version|Installed version)\\s*:\\s*([^\\s\\n\\r]+)",
-                Pattern.CASE_INSENSITIVE);
-        Matcher m = p.matcher(output);
-        return m.find() ? m.group(2) : "";
-    }
-
-    private String extractFix(String output) {
-        if (output == null)
-            return "";
-        Pattern p = Pattern.compile("(Fixed version|Should be)[^0-9]*([0-9]+(?:\\.[0-9a-z]+)+)",
-                Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-        Matcher m = p.matcher(output);
-        if (m.find()) {
-            return m.group(2);
-        }
-        return "";
-    }
-
     private String deriveSoftware(String path) {
         if (path == null)
             return "Unknown";
@@ -250,26 +474,4 @@ public class VulnerabilityService {
             return "OpenSSL";
         return "Middleware";
     }
-
-    private String findNearestVersion(List<String> available, String target) {
-        if (available == null || available.isEmpty())
-            return "";
-        if (target == null || target.isEmpty())
-            return available.get(0);
-
-        // Exact match
-        if (available.contains(target))
-            return target;
-
-        // Try to find same major version
-        String major = target.split("\\.")[0];
-        for (String v : available) {
-            String vMajor = v.split("\\.")[0];
-            if (vMajor.equals(major))
-                return v;
-        }
-
-        // Return latest available as fallback
-        return available.get(0);
-    }
 }
@@ -0,0 +1,62 @@
+package com.verizon.upgrade.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 helpers producing lower-case hex strings.
+ */
+public final class Hashes {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final char FIELD_SEPARATOR = '\u001f';
+
+    private Hashes() {
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Hash of the given fields; nulls hash like empty strings.
+     */
+    public static String sha256Hex(String... fields) {
+        MessageDigest digest = sha256();
+        for (String field : fields) {
+            if (field != null)
+                digest.update(field.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) FIELD_SEPARATOR);
+        }
+        return toHex(digest.digest());
+    }
+
+    public static String sha256Hex(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) != -1)
+                digest.update(buffer, 0, n);
+        }
+        return toHex(digest.digest());
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            out[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,179 @@
+package com.verizon.upgrade.version;
+
+import java.util.Arrays;
+
+/**
+ * Parsed, comparable form of a middleware version string.
+ * <p>
+ * Handles the formats we see in scans and the artifact repository:
+ * <ul>
+ * <li>dotted numbers: {@code 2.4.65}, {@code 17.0.17}</li>
+ * <li>Java update builds: {@code 1.8.0_211} and {@code 8u211} both read as
+ * {@code 8.0.211}, so the two spellings of one JDK compare equal and rank below
+ * {@code 11.0.2}. The legacy {@code 1.} prefix is only dropped when an
+ * {@code _} update number is present; a bare {@code 1.8.0} stays as is.</li>
+ * <li>OpenSSL letter releases: {@code 1.1.1w} (ranks above {@code 1.1.1})</li>
+ * <li>pre-release qualifiers: {@code 2.4.0-rc1}, {@code 21-ea} (rank below the release)</li>
+ * </ul>
+ * Missing trailing components compare as zero, so {@code 2.4} equals {@code 2.4.0}.
+ */
+public final class Version implements Comparable<Version> {
+
+    private static final int PRE_RELEASE = -1;
+    private static final int RELEASE = 0;
+    private static final int POST_RELEASE = 1;
+
+    private static final String[] PRE_RELEASE_QUALIFIERS = {
+            "alpha", "beta", "rc", "cr", "ea", "snapshot", "pre", "preview", "dev"
+    };
+    private static final String[] RELEASE_QUALIFIERS = { "ga", "final", "release" };
+
+    private final String raw;
+    private final int[] parts;
+    private final int suffixRank;
+    private final String suffix;
+    private final int suffixNumber;
+
+    private Version(String raw, int[] parts, int suffixRank, String suffix, int suffixNumber) {
+        this.raw = raw;
+        this.parts = parts;
+        this.suffixRank = suffixRank;
+        this.suffix = suffix;
+        this.suffixNumber = suffixNumber;
+    }
+
+    public static Version parse(String raw) {
+        String s = raw == null ? "" : raw.trim();
+        int len = s.length();
+        int[] parts = new int[4];
+        int count = 0;
+
+        // Skip prefixes like "v" or "jdk-"
+        int i = 0;
+        while (i < len && !Character.isDigit(s.charAt(i)))
+            i++;
+
+        int suffixRank = RELEASE;
+        String suffix = "";
+        int suffixNumber = 0;
+        boolean javaUpdate = false;
+
+        while (i < len) {
+            char c = s.charAt(i);
+            if (Character.isDigit(c)) {
+                int value = 0;
+                while (i < len && Character.isDigit(s.charAt(i))) {
+                    value = saturatedAppend(value, s.charAt(i));
+                    i++;
+                }
+                if (count == parts.length)
+                    parts = Arrays.copyOf(parts, count * 2);
+                parts[count++] = value;
+            } else if (c == '.' || c == '_' || c == '+') {
+                javaUpdate |= c == '_';
+                i++;
+            } else if (Character.isLetter(c)) {
+                int start = i;
+                while (i < len && Character.isLetter(s.charAt(i)))
+                    i++;
+                String letters = s.substring(start, i).toLowerCase();
+
+                // Java "8u211" is 8.0.211
+                if (letters.equals("u") && i < len && Character.isDigit(s.charAt(i))) {
+                    if (count == 1)
+                        parts[count++] = 0;
+                    continue;
+                }
+
+                boolean attached = start > 0 && Character.isDigit(s.charAt(start - 1));
+                suffix = letters;
+                suffixRank = rankOf(letters, attached);
+                int n = 0;
+                while (i < len && Character.isDigit(s.charAt(i))) {
+                    n = saturatedAppend(n, s.charAt(i));
+                    i++;
+                }
+                suffixNumber = n;
+                break;
+            } else {
+                // '-' or anything else: a qualifier may follow
+                i++;
+            }
+        }
+
+        // Java "1.8.0_211" is 8.0.211
+        if (javaUpdate && count >= 3 && parts[0] == 1 && parts[1] > 1)
+            return new Version(raw, Arrays.copyOfRange(parts, 1, count), suffixRank, suffix, suffixNumber);
+        return new Version(raw, Arrays.copyOf(parts, count), suffixRank, suffix, suffixNumber);
+    }
+
+    private static int rankOf(String letters, boolean attachedToNumber) {
+        for (String q : PRE_RELEASE_QUALIFIERS) {
+            if (q.equals(letters))
+                return PRE_RELEASE;
+        }
+        for (String q : RELEASE_QUALIFIERS) {
+            if (q.equals(letters))
+                return RELEASE;
+        }
+        // OpenSSL style "1.1.1w" or any other trailing label
+        return attachedToNumber || letters.length() <= 2 ? POST_RELEASE : RELEASE;
+    }
+
+    private static int saturatedAppend(int value, char digit) {
+        if (value > (Integer.MAX_VALUE - 9) / 10)
+            return Integer.MAX_VALUE;
+        return value * 10 + (digit - '0');
+    }
+
+    /**
+     * True if at least one numeric component was found.
+     */
+    public boolean isValid() {
+        return parts.length > 0;
+    }
+
+    public String getRaw() {
+        return raw;
+    }
+
+    @Override
+    public int compareTo(Version other) {
+        int n = Math.max(parts.length, other.parts.length);
+        for (int i = 0; i < n; i++) {
+            int a = i < parts.length ? parts[i] : 0;
+            int b = i < other.parts.length ? other.parts[i] : 0;
+            if (a != b)
+                return Integer.compare(a, b);
+        }
+        if (suffixRank != other.suffixRank)
+            return Integer.compare(suffixRank, other.suffixRank);
+        if (suffixRank == RELEASE)
+            return 0;
+        int c = suffix.compareTo(other.suffix);
+        if (c != 0)
+            return c;
+        return Integer.compare(suffixNumber, other.suffixNumber);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Version && compareTo((Version) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int end = parts.length;
+        while (end > 0 && parts[end - 1] == 0)
+            end--;
+        int h = Arrays.hashCode(Arrays.copyOf(parts, end));
+        if (suffixRank != RELEASE)
+            h = 31 * (31 * (31 * h + suffixRank) + suffix.hashCode()) + suffixNumber;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return raw;
+    }
+}
@@ -0,0 +1,53 @@
+package com.verizon.upgrade.version;
+
+import java.util.*;
+
+/**
+ * Sorted set of available versions for one software type. Versions are
+ * parsed once when the catalog is built; lookups are floor/ceiling queries
+ * on a {@link NavigableMap}.
+ */
+public final class VersionCatalog {
+
+    public static final VersionCatalog EMPTY = new VersionCatalog(Collections.emptyList());
+
+    private final NavigableMap<Version, String> versions = new TreeMap<>();
+    private final List<String> newestFirst;
+
+    public VersionCatalog(Collection<String> rawVersions) {
+        for (String raw : rawVersions) {
+            if (raw == null || raw.isBlank())
+                continue;
+            versions.putIfAbsent(Version.parse(raw), raw);
+        }
+        newestFirst = Collections.unmodifiableList(new ArrayList<>(versions.descendingMap().values()));
+    }
+
+    /**
+     * All versions, newest first. The same list instance is returned on every
+     * call.
+     */
+    public List<String> newestFirst() {
+        return newestFirst;
+    }
+
+    public boolean isEmpty() {
+        return versions.isEmpty();
+    }
+
+    /**
+     * Lowest available version that is at least {@code fixVersion}. When no fix
+     * version is known the newest available version is returned; when nothing
+     * available satisfies the fix, an empty string.
+     */
+    public String resolve(String fixVersion) {
+        if (versions.isEmpty())
+            return "";
+        Version fix = Version.parse(fixVersion);
+        if (!fix.isValid())
+            return versions.lastEntry().getValue();
+
+        Map.Entry<Version, String> match = versions.ceilingEntry(fix);
+        return match != null ? match.getValue() : "";
+    }
+}
@@ -0,0 +1,71 @@
+package com.verizon.upgrade.controller;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArtifactControllerTest {
+
+    private static final long LENGTH = 1000;
+
+    @ParameterizedTest
+    @CsvSource({
+            "'bytes=0-99',       0,   100",
+            "'bytes=100-199',    100, 200",
+            "'bytes=500-',       500, 1000",
+            "'bytes=999-999',    999, 1000",
+            "'bytes=0-0',        0,   1",
+            // last past the end is cut to the end
+            "'bytes=900-5000',   900, 1000",
+            "'bytes=0-9223372036854775807', 0, 1000",
+            // suffix: the last N bytes, all of them if N is larger
+            "'bytes=-100',       900, 1000",
+            "'bytes=-1000',      0,   1000",
+            "'bytes=-5000',      0,   1000",
+            "'Bytes=10-19',      10,  20",
+            "'bytes= 10 - 19 ',  10,  20",
+    })
+    void singleRange(String header, long start, long end) {
+        assertArrayEquals(new long[] {start, end}, ArtifactController.parseRange(header, LENGTH));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "bytes=1000-",
+            "bytes=1000-1999",
+            "bytes=5000-",
+            "bytes=-0",
+    })
+    void unsatisfiable(String header) {
+        assertNull(ArtifactController.parseRange(header, LENGTH));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // several ranges at once, which a server may answer with the whole file
+            "bytes=0-9,20-29",
+            // other units, or no range at all
+            "items=0-9",
+            "bytes=",
+            "bytes=5",
+            "bytes=-",
+            // malformed numbers and reversed bounds are ignored, not refused
+            "bytes=abc-def",
+            "bytes=+5-10",
+            "bytes=5--10",
+            "bytes=--5",
+            "bytes=20-10",
+            "bytes=99999999999999999999-",
+    })
+    void ignored(String header) {
+        assertArrayEquals(new long[0], ArtifactController.parseRange(header, LENGTH));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"bytes=0-", "bytes=-1"})
+    void emptyFileCannotSatisfyARange(String header) {
+        assertNull(ArtifactController.parseRange(header, 0));
+    }
+}
@@ -0,0 +1,40 @@
+package com.verizon.upgrade.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MiddlewareComponentTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "'3 Critical',      3",
+            "'3 critical',      3",
+            "'12  CRITICAL',    12",
+            "'5 (3 Critical)',  3",
+            "'0',               0",
+            "'7',               0",
+            "'2 High',          0",
+            "'Critical',        0",
+    })
+    void criticalCountOf(String vulnerabilityCount, int expected) {
+        assertEquals(expected, MiddlewareComponent.criticalCountOf(vulnerabilityCount));
+    }
+
+    @Test
+    void noValueMeansUnknown() {
+        assertNull(MiddlewareComponent.criticalCountOf(null));
+        assertNull(MiddlewareComponent.criticalCountOf(" "));
+    }
+
+    @Test
+    void criticalCountFollowsVulnerabilityCount() {
+        MiddlewareComponent c = new MiddlewareComponent("Java", "Java", "11.0.12", "2 Critical", "11.0.21",
+                "Vulnerable", "/opt/java");
+        assertEquals(2, c.getCriticalCount());
+        c.setVulnerabilityCount("0");
+        assertEquals(0, c.getCriticalCount());
+    }
+}
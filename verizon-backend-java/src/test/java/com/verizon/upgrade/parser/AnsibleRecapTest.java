@@ -0,0 +1,129 @@
+package com.verizon.upgrade.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnsibleRecapTest {
+
+    private static final String OUTPUT = String.join("\n",
+            "PLAY [Upgrade Apache] **********************************************************",
+            "",
+            "TASK [Gathering Facts] *********************************************************",
+            "ok: [web01]",
+            "ok: [web02]",
+            "ok: [web010]",
+            "",
+            "TASK [PRECHECK | Stat install dir] *********************************************",
+            "ok: [web01]",
+            "fatal: [web02]: FAILED! => {\"msg\": \"missing /opt/apache\"}",
+            "",
+            "TASK [DEPLOY | Extract Tarball] ************************************************",
+            "changed: [web01]",
+            "",
+            "PLAY RECAP *********************************************************************",
+            "web01                      : ok=5    changed=2    unreachable=0    failed=0    skipped=1",
+            "web02                      : ok=1    changed=0    unreachable=0    failed=1    skipped=0",
+            "web010                     : ok=1    changed=0    unreachable=1    failed=0    skipped=0",
+            "");
+
+    private static AnsibleRecap.Collector feed(String output, List<String> hosts) {
+        AnsibleRecap.Collector collector = new AnsibleRecap.Collector(hosts);
+        output.lines().forEach(collector);
+        return collector;
+    }
+
+    @Test
+    void readsRecapPerHost() {
+        Map<String, AnsibleRecap.HostResult> results = feed(OUTPUT, List.of()).getResults();
+        assertEquals(3, results.size());
+
+        AnsibleRecap.HostResult web01 = results.get("web01");
+        assertEquals(5, web01.getOk());
+        assertEquals(2, web01.getChanged());
+        assertTrue(web01.isSuccess());
+
+        assertEquals(1, results.get("web02").getFailed());
+        assertFalse(results.get("web02").isSuccess());
+        assertEquals(1, results.get("web010").getUnreachable());
+        assertFalse(results.get("web010").isSuccess());
+    }
+
+    @Test
+    void hostsThatNeverReachTheRecapAreMissing() {
+        String truncated = OUTPUT.substring(0, OUTPUT.indexOf("PLAY RECAP"));
+        assertTrue(feed(truncated, List.of("web01")).getResults().isEmpty());
+    }
+
+    @Test
+    void laterRecapSupersedesEarlierOne() {
+        String twoPlays = OUTPUT + String.join("\n",
+                "PLAY [Verify] ******************************************************************",
+                "TASK [Check] *******************************************************************",
+                "ok: [web01]",
+                "PLAY RECAP *********************************************************************",
+                "web01                      : ok=1    changed=0    unreachable=0    failed=0",
+                "");
+        Map<String, AnsibleRecap.HostResult> results = feed(twoPlays, List.of()).getResults();
+        assertEquals(1, results.size());
+        assertEquals(1, results.get("web01").getOk());
+    }
+
+    @Test
+    void keepsOnlyTheRequestedHostsLinesWithTheirTasks() {
+        AnsibleRecap.Collector collector = feed(OUTPUT, List.of("web01", "web02"));
+
+        String web01 = collector.linesForHost("web01");
+        assertEquals(String.join("\n",
+                "TASK [Gathering Facts] *********************************************************",
+                "ok: [web01]",
+                "TASK [PRECHECK | Stat install dir] *********************************************",
+                "ok: [web01]",
+                "TASK [DEPLOY | Extract Tarball] ************************************************",
+                "changed: [web01]",
+                "PLAY RECAP *********************************************************************",
+                "web01                      : ok=5    changed=2    unreachable=0    failed=0    skipped=1",
+                ""), web01);
+        // web010 shares a prefix with web01 but is a different host
+        assertFalse(web01.contains("web010"));
+
+        String web02 = collector.linesForHost("web02");
+        assertTrue(web02.contains("fatal: [web02]: FAILED!"));
+        assertFalse(web02.contains("DEPLOY"));
+
+        assertEquals("", collector.linesForHost("web010"));
+    }
+
+    @Test
+    void attributesDelegatedAndRetriedResultsToTheirHost() {
+        AnsibleRecap.Collector collector = feed(String.join("\n",
+                "TASK [DOWNLOAD | Fetch & Verify Binary] ****************************************",
+                "FAILED - RETRYING: [web01]: DOWNLOAD | Fetch & Verify Binary (3 retries left).",
+                "ok: [web02 -> localhost]",
+                "ok: [web01] => {\"msg\": \"mirrors [web02]\"}",
+                ""), List.of("web01", "web02"));
+
+        String web01 = collector.linesForHost("web01");
+        assertTrue(web01.contains("FAILED - RETRYING: [web01]"));
+        assertTrue(web01.contains("mirrors [web02]"));
+        String web02 = collector.linesForHost("web02");
+        assertTrue(web02.contains("ok: [web02 -> localhost]"));
+        // Only the leading host tag counts, not one quoted in another host's output
+        assertFalse(web02.contains("mirrors"));
+    }
+
+    @Test
+    void capsLinesKeptPerHost() {
+        AnsibleRecap.Collector collector = new AnsibleRecap.Collector(List.of("web01"));
+        collector.accept("TASK [Loop] ********");
+        String line = "ok: [web01] => (item=" + "x".repeat(200) + ")";
+        for (int i = 0; i < 2000; i++)
+            collector.accept(line);
+        String kept = collector.linesForHost("web01");
+        assertTrue(kept.length() <= 64 * 1024, "kept " + kept.length());
+        assertTrue(kept.endsWith(line + "\n"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.verizon.upgrade.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+    @Test
+    void plainFields() throws IOException {
+        List<String[]> records = readAll("a,b,c\n1,2,3\n");
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[] {"a", "b", "c"}, records.get(0));
+        assertArrayEquals(new String[] {"1", "2", "3"}, records.get(1));
+    }
+
+    @Test
+    void lastRecordWithoutNewline() throws IOException {
+        List<String[]> records = readAll("a,b\n1,2");
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[] {"1", "2"}, records.get(1));
+    }
+
+    @Test
+    void emptyFields() throws IOException {
+        assertArrayEquals(new String[] {"", "x", "", ""}, readAll(",x,,\n").get(0));
+    }
+
+    @Test
+    void crlfLineEndings() throws IOException {
+        List<String[]> records = readAll("a,b\r\n1,2\r\n");
+        assertArrayEquals(new String[] {"a", "b"}, records.get(0));
+        assertArrayEquals(new String[] {"1", "2"}, records.get(1));
+    }
+
+    @Test
+    void quotedFieldsWithCommasQuotesAndLineBreaks() throws IOException {
+        List<String[]> records = readAll("\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\"\nnext,row\n");
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[] {"a,b", "say \"hi\"", "two\nlines"}, records.get(0));
+        assertArrayEquals(new String[] {"next", "row"}, records.get(1));
+    }
+
+    @Test
+    void emptyQuotedField() throws IOException {
+        assertArrayEquals(new String[] {"", "x"}, readAll("\"\",x\n").get(0));
+    }
+
+    @Test
+    void quoteInsideUnquotedFieldIsLiteral() throws IOException {
+        assertArrayEquals(new String[] {"5\" disk", "y"}, readAll("5\" disk,y\n").get(0));
+    }
+
+    @Test
+    void blankLineIsOneEmptyField() throws IOException {
+        List<String[]> records = readAll("a\n\nb\n");
+        assertEquals(3, records.size());
+        assertArrayEquals(new String[] {""}, records.get(1));
+    }
+
+    @Test
+    void emptyInput() throws IOException {
+        assertTrue(readAll("").isEmpty());
+    }
+
+    @Test
+    void lineNumberCountsBreaksInsideQuotes() throws IOException {
+        try (CsvReader csv = new CsvReader(new StringReader("h\n\"a\nb\"\nc\n"))) {
+            csv.next();
+            assertEquals(2, csv.getLineNumber());
+            csv.next();
+            assertEquals(4, csv.getLineNumber());
+            csv.next();
+            assertEquals(5, csv.getLineNumber());
+            assertNull(csv.next());
+        }
+    }
+
+    @Test
+    void unterminatedQuoteFails() {
+        IOException e = assertThrows(IOException.class, () -> readAll("a,\"open\nstill open"));
+        assertTrue(e.getMessage().contains("line"), e.getMessage());
+    }
+
+    @Test
+    void recordsLongerThanTheBuffer() throws IOException {
+        String big = "x".repeat(20_000);
+        List<String[]> records = readAll(big + ",\"" + big + "\"\nend\n");
+        assertEquals(big, records.get(0)[0]);
+        assertEquals(big, records.get(0)[1]);
+        assertArrayEquals(new String[] {"end"}, records.get(1));
+    }
+
+    @Test
+    void readerReturningFewCharsAtATime() throws IOException {
+        Reader trickle = new StringReader("\"a\"\"b\",c\r\nd,e\n") {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 1));
+            }
+        };
+        List<String[]> records = new ArrayList<>();
+        try (CsvReader csv = new CsvReader(trickle)) {
+            String[] record;
+            while ((record = csv.next()) != null)
+                records.add(record);
+        }
+        assertArrayEquals(new String[] {"a\"b", "c"}, records.get(0));
+        assertArrayEquals(new String[] {"d", "e"}, records.get(1));
+    }
+
+    private static List<String[]> readAll(String text) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        try (CsvReader csv = new CsvReader(new StringReader(text))) {
+            String[] record;
+            while ((record = csv.next()) != null)
+                records.add(record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,103 @@
+package com.verizon.upgrade.parser;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link PluginOutputExtractor} against the three regular expressions it
+ * replaced, both as VulnerabilityService ran them (compiled on every call)
+ * and precompiled. Not run by the test phase; run it with
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main PluginOutputExtractorBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PluginOutputExtractorBenchmark {
+
+    private static final String PATH_REGEX = "Path\\s*:\\s*([^\\s\\n\\r]+)";
+    private static final String VERSION_REGEX = "(Reported Version|Installed version)\\s*:\\s*([^\\s\\n\\r]+)";
+    private static final String FIX_REGEX = "(Fixed version|Should be)[^0-9]*([0-9]+(?:\\.[0-9a-z]+)+)";
+
+    private static final Pattern PATH = Pattern.compile(PATH_REGEX, Pattern.CASE_INSENSITIVE);
+    private static final Pattern VERSION = Pattern.compile(VERSION_REGEX, Pattern.CASE_INSENSITIVE);
+    private static final Pattern FIX = Pattern.compile(FIX_REGEX, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final String TYPICAL = "\n  Path              : /apps/opt/mw/apache\n"
+            + "  Installed version : 2.4.52\n  Fixed version     : 2.4.58\n";
+
+    // Several installs, as the Java plugins report every JRE they find; the fix comes last
+    private static final String SEVERAL_INSTALLS;
+
+    // No fix version at all, so every pattern runs to the end of the text
+    private static final String NO_FIX;
+
+    static {
+        StringBuilder sb = new StringBuilder("\nThe following vulnerable instances of Java are installed on the"
+                + " remote host :\n\n");
+        for (int i = 0; i < 12; i++) {
+            sb.append("  Path              : /apps/opt/mw/java").append(i).append("/jre\n")
+                    .append("  Installed version : 1.8.0_2").append(10 + i).append('\n')
+                    .append("  Vendor            : Oracle Corporation\n\n");
+        }
+        SEVERAL_INSTALLS = sb.append("  Should be         : 1.8.0_381 / 11.0.20 / 17.0.8\n").toString();
+
+        sb = new StringBuilder();
+        for (int i = 0; i < 40; i++)
+            sb.append("  Registry key : HKLM\\SOFTWARE\\Vendor\\Product\\Component").append(i).append('\n');
+        NO_FIX = sb.toString();
+    }
+
+    @Param({"typical", "severalInstalls", "noFix"})
+    String sample;
+
+    private String output;
+
+    @Setup
+    public void setUp() {
+        switch (sample) {
+            case "severalInstalls":
+                output = SEVERAL_INSTALLS;
+                break;
+            case "noFix":
+                output = NO_FIX;
+                break;
+            default:
+                output = TYPICAL;
+        }
+    }
+
+    @Benchmark
+    public void regexesCompiledPerCall(Blackhole bh) {
+        bh.consume(group(Pattern.compile(PATH_REGEX, Pattern.CASE_INSENSITIVE), 1));
+        bh.consume(group(Pattern.compile(VERSION_REGEX, Pattern.CASE_INSENSITIVE), 2));
+        bh.consume(group(Pattern.compile(FIX_REGEX, Pattern.CASE_INSENSITIVE | Pattern.DOTALL), 2));
+    }
+
+    @Benchmark
+    public void regexesPrecompiled(Blackhole bh) {
+        bh.consume(group(PATH, 1));
+        bh.consume(group(VERSION, 2));
+        bh.consume(group(FIX, 2));
+    }
+
+    @Benchmark
+    public PluginOutputExtractor.Result extractor() {
+        return PluginOutputExtractor.extract(output);
+    }
+
+    private String group(Pattern pattern, int group) {
+        Matcher m = pattern.matcher(output);
+        return m.find() ? m.group(group) : "";
+    }
+}
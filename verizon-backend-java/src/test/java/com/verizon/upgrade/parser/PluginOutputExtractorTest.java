@@ -0,0 +1,110 @@
+package com.verizon.upgrade.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+/**
+ * Checks the scanner against the regular expressions it replaced, which are
+ * kept here as the reference.
+ */
+class PluginOutputExtractorTest {
+
+    private static final Pattern PATH = Pattern.compile("Path\\s*:\\s*([^\\s\\n\\r]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern VERSION = Pattern.compile(
+            "(Reported Version|Installed version)\\s*:\\s*([^\\s\\n\\r]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FIX = Pattern.compile("(Fixed version|Should be)[^0-9]*([0-9]+(?:\\.[0-9a-z]+)+)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    static Stream<Arguments> outputs() {
+        return Stream.of(
+                arguments("typical", "\n  Path              : /opt/apache/httpd\n"
+                        + "  Installed version : 2.4.52\n  Fixed version     : 2.4.58\n",
+                        "/opt/apache/httpd", "2.4.52", "2.4.58"),
+                // The fix pattern has no "_", so a Java update fix stops at 1.8.0
+                arguments("reported version", "Path : /usr/java/jdk1.8.0_211\nReported Version : 1.8.0_211\n"
+                        + "Should be : 1.8.0_381 / 11.0.20", "/usr/java/jdk1.8.0_211", "1.8.0_211", "1.8.0"),
+                arguments("crlf", "Path : C:\\Apache24\r\nInstalled version : 2.4.41\r\nFixed version : 2.4.54\r\n",
+                        "C:\\Apache24", "2.4.41", "2.4.54"),
+                arguments("multiple paths, first wins", "Path : /opt/a\nInstalled version : 1.0\n\n"
+                        + "Path : /opt/b\nInstalled version : 2.0\nFixed version : 2.1", "/opt/a", "1.0", "2.1"),
+                arguments("missing path", "Installed version : 2.4.41\nFixed version : 2.4.54", "", "2.4.41",
+                        "2.4.54"),
+                arguments("missing version", "Path : /opt/x\nFixed version : 3.1.4", "/opt/x", "", "3.1.4"),
+                arguments("missing fix", "Path : /opt/x\nInstalled version : 3.0", "/opt/x", "3.0", ""),
+                arguments("empty", "", "", "", ""),
+                arguments("no colon", "Path /opt/x\nInstalled version 3.0", "", "", ""),
+                arguments("colon without value", "Path :   \nInstalled version : 3.0", "Installed", "3.0", ""),
+                arguments("case-insensitive", "PATH: /opt/x\nINSTALLED VERSION:1.2.3\nSHOULD BE:1.2.4",
+                        "/opt/x", "1.2.3", "1.2.4"),
+                arguments("keyword inside a word", "Classpath : /opt/lib\nversion : 1", "/opt/lib", "", ""),
+                arguments("fix without dot is skipped", "Fixed version : 9\nShould be : 9.0.1", "", "", "9.0.1"),
+                arguments("fix spans lines", "Fixed version :\n\n  see advisory, upgrade to 2.4.58 or later",
+                        "", "", "2.4.58"),
+                arguments("fix with letters", "Fixed version : 1.1.1w", "", "", "1.1.1w"),
+                arguments("fix trailing dot", "Fixed version : 2.4.58.", "", "", "2.4.58"),
+                arguments("tabs and form feed", "Path\t:\t/opt/t\fInstalled version\t:\t7", "/opt/t", "7", ""),
+                arguments("non-ASCII lookalike keywords", "ſhould be : 1.2.3\nınstalled version : 4\nPath : /p",
+                        "/p", "", ""));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("outputs")
+    void matchesExpectedValues(String name, String output, String path, String version, String fix) {
+        PluginOutputExtractor.Result result = PluginOutputExtractor.extract(output);
+        assertEquals(path, result.getPath(), "path");
+        assertEquals(version, result.getReportedVersion(), "version");
+        assertEquals(fix, result.getFixVersion(), "fix");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("outputs")
+    void matchesOldRegexes(String name, String output) {
+        assertSameAsRegexes(output);
+    }
+
+    @Test
+    void handlesNull() {
+        assertEquals("", PluginOutputExtractor.extract(null).getPath());
+    }
+
+    /**
+     * Random outputs assembled from keyword fragments, separators and noise.
+     */
+    @Test
+    void matchesOldRegexesOnGeneratedOutputs() {
+        String[] fragments = { "Path", "path", "PATH", "Classpath", "Reported Version", "Installed version",
+                "installed VERSION", "Fixed version", "Should be", "should BE", " ", "  ", "\t", "\r\n", "\n", ":",
+                " : ", "/opt/apache", "C:\\Java", "2.4.58", "1.8.0_211", "9", "1.", ".5", "1.1.1w", "x", "-", "ı",
+                "ſ", "version", "be" };
+        Random random = new Random(42);
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int parts = random.nextInt(16);
+            for (int k = 0; k < parts; k++)
+                sb.append(fragments[random.nextInt(fragments.length)]);
+            assertSameAsRegexes(sb.toString());
+        }
+    }
+
+    private static void assertSameAsRegexes(String output) {
+        PluginOutputExtractor.Result result = PluginOutputExtractor.extract(output);
+        assertEquals(group(PATH, output, 1), result.getPath(), () -> "path of " + output);
+        assertEquals(group(VERSION, output, 2), result.getReportedVersion(), () -> "version of " + output);
+        assertEquals(group(FIX, output, 2), result.getFixVersion(), () -> "fix of " + output);
+    }
+
+    private static String group(Pattern pattern, String output, int group) {
+        Matcher m = pattern.matcher(output);
+        return m.find() ? m.group(group) : "";
+    }
+}
@@ -0,0 +1,61 @@
+package com.verizon.upgrade.parser;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamingSheetReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsSharedStringsRichTextAndGaps() throws Exception {
+        Path file = dir.resolve("scan.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Findings");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Host");
+            header.createCell(1).setCellValue("Plugin Output");
+
+            Row first = sheet.createRow(1);
+            first.createCell(0).setCellValue("  web01  ");
+            XSSFRichTextString rich = new XSSFRichTextString("Path : /opt/apache");
+            XSSFFont bold = workbook.createFont();
+            bold.setBold(true);
+            rich.applyFont(0, 4, bold);
+            first.createCell(1).setCellValue(rich);
+
+            // Blank row is skipped, missing cells come back empty
+            Row third = sheet.createRow(3);
+            third.createCell(0).setCellValue("web01");
+            third.createCell(2).setCellValue(42);
+            workbook.write(out);
+        }
+
+        List<String[]> rows = new ArrayList<>();
+        List<Integer> rowNums = new ArrayList<>();
+        new StreamingSheetReader().readFirstSheet(file, (rowNum, cells) -> {
+            rowNums.add(rowNum);
+            rows.add(cells);
+        });
+
+        assertEquals(List.of(0, 1, 3), rowNums);
+        assertArrayEquals(new String[] { "Host", "Plugin Output" }, rows.get(0));
+        assertArrayEquals(new String[] { "web01", "Path : /opt/apache" }, rows.get(1));
+        assertArrayEquals(new String[] { "web01", "", "42" }, rows.get(2));
+    }
+}
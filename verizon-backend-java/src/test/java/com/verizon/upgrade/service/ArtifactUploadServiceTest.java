@@ -0,0 +1,251 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.dto.ArtifactUploadRequest;
+import com.verizon.upgrade.dto.ArtifactUploadStatus;
+import com.verizon.upgrade.model.SoftwareArtifact;
+import com.verizon.upgrade.util.Hashes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Chunked uploads into an {@link ArtifactStore} in a temporary directory;
+ * recording the artifact is mocked.
+ */
+class ArtifactUploadServiceTest {
+
+    private static final int CHUNK = 1024 * 1024;
+
+    @TempDir
+    Path storeDir;
+
+    private ArtifactStore store;
+    private ArtifactService artifactService;
+    private ArtifactUploadService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new ArtifactStore();
+        ReflectionTestUtils.setField(store, "storeDir", storeDir.toString());
+        store.init();
+
+        artifactService = mock(ArtifactService.class);
+        when(artifactService.record(any(), any(), any(), any(), any())).thenAnswer(call -> {
+            ArtifactStore.Blob blob = call.getArgument(4);
+            SoftwareArtifact artifact = new SoftwareArtifact();
+            artifact.setSha256(blob.sha256);
+            return artifact;
+        });
+
+        service = new ArtifactUploadService();
+        ReflectionTestUtils.setField(service, "store", store);
+        ReflectionTestUtils.setField(service, "artifactService", artifactService);
+        ReflectionTestUtils.setField(service, "defaultChunkSizeMb", 1);
+        ReflectionTestUtils.setField(service, "expiryMinutes", 60L);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        service.close();
+    }
+
+    @Test
+    void assemblesChunksSentOutOfOrder() throws IOException {
+        byte[] content = content(3 * CHUNK + 1234);
+        ArtifactUploadStatus status = start(content, Hashes.toHex(Hashes.sha256().digest(content)));
+        assertEquals(4, status.getChunkCount());
+
+        for (int index : new int[] {2, 0, 3, 1})
+            send(status.getUploadId(), index, content);
+
+        SoftwareArtifact artifact = service.complete(status.getUploadId());
+        assertStored(content, artifact);
+        assertNull(service.status(status.getUploadId()));
+        assertEquals(0, incomingFiles());
+    }
+
+    @Test
+    void acceptsChunksInParallel() throws Exception {
+        byte[] content = content(16 * CHUNK - 7);
+        String uploadId = start(content, null).getUploadId();
+
+        List<Integer> order = IntStream.range(0, 16).boxed().collect(Collectors.toList());
+        Collections.shuffle(order, new Random(42));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> sent = new ArrayList<>();
+            for (int index : order)
+                sent.add(pool.submit(() -> send(uploadId, index, content)));
+            for (Future<?> f : sent)
+                f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertStored(content, service.complete(uploadId));
+    }
+
+    @Test
+    void resumesFromTheMissingChunks() throws IOException {
+        byte[] content = content(5 * CHUNK);
+        String uploadId = start(content, null).getUploadId();
+        send(uploadId, 0, content);
+        send(uploadId, 3, content);
+
+        ArtifactUploadStatus status = service.status(uploadId);
+        assertEquals(Arrays.asList(1, 2, 4), status.getMissingChunks());
+        assertEquals(2, status.getReceivedChunks());
+        assertEquals(2L * CHUNK, status.getReceivedBytes());
+
+        // A received chunk sent again is not rewritten
+        ArtifactUploadStatus again = service.writeChunk(uploadId, 3, new ByteArrayInputStream(new byte[CHUNK]));
+        assertEquals(Arrays.asList(1, 2, 4), again.getMissingChunks());
+
+        for (int index : status.getMissingChunks())
+            send(uploadId, index, content);
+        assertStored(content, service.complete(uploadId));
+    }
+
+    @Test
+    void shortOrLongChunkStaysMissing() throws IOException {
+        byte[] content = content(2 * CHUNK + 10);
+        String uploadId = start(content, null).getUploadId();
+
+        IllegalArgumentException shortBody = assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(uploadId, 0, new ByteArrayInputStream(content, 0, CHUNK - 1)));
+        assertTrue(shortBody.getMessage().contains("expected"), shortBody.getMessage());
+        assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(uploadId, 2, new ByteArrayInputStream(new byte[11])));
+        assertEquals(Arrays.asList(0, 1, 2), service.status(uploadId).getMissingChunks());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(uploadId, 3, new ByteArrayInputStream(new byte[0])));
+        assertThrows(IllegalStateException.class, () -> service.complete(uploadId));
+
+        for (int index = 0; index < 3; index++)
+            send(uploadId, index, content);
+        assertStored(content, service.complete(uploadId));
+    }
+
+    @Test
+    void hashesTheContiguousPrefixAsChunksArrive() throws IOException {
+        byte[] content = content(4 * CHUNK);
+        String uploadId = start(content, null).getUploadId();
+        send(uploadId, 0, content);
+        send(uploadId, 2, content);
+        assertEquals(1, hashedChunks(uploadId));
+        send(uploadId, 1, content);
+        assertEquals(3, hashedChunks(uploadId));
+    }
+
+    @Test
+    void completeHashesChunksTheRunningDigestHasNotReached() throws IOException {
+        byte[] content = content(4 * CHUNK + 99);
+        String uploadId = start(content, Hashes.toHex(Hashes.sha256().digest(content))).getUploadId();
+        send(uploadId, 0, content);
+        send(uploadId, 1, content);
+        assertEquals(2, hashedChunks(uploadId));
+
+        // As if another writer were hashing: the last chunks are left to complete()
+        Object upload = upload(uploadId);
+        ReflectionTestUtils.setField(upload, "hashing", true);
+        send(uploadId, 4, content);
+        send(uploadId, 3, content);
+        send(uploadId, 2, content);
+        assertEquals(2, hashedChunks(uploadId));
+        ReflectionTestUtils.setField(upload, "hashing", false);
+
+        assertStored(content, service.complete(uploadId));
+    }
+
+    @Test
+    void checksumMismatchDiscardsTheUpload() throws IOException {
+        byte[] content = content(CHUNK + 1);
+        byte[] other = content.clone();
+        other[0] ^= 1;
+        String uploadId = start(content, Hashes.toHex(Hashes.sha256().digest(other))).getUploadId();
+        send(uploadId, 0, content);
+        send(uploadId, 1, content);
+
+        assertThrows(ArtifactUploadService.ChecksumMismatchException.class, () -> service.complete(uploadId));
+        assertNull(service.status(uploadId));
+        assertEquals(0, incomingFiles());
+        verify(artifactService, never()).record(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void purgesIdleUploads() throws IOException {
+        String uploadId = start(content(CHUNK), null).getUploadId();
+        service.purgeExpired();
+        assertNotNull(service.status(uploadId));
+
+        ReflectionTestUtils.setField(service, "expiryMinutes", 0L);
+        service.purgeExpired();
+        assertNull(service.status(uploadId));
+        assertEquals(0, incomingFiles());
+    }
+
+    private ArtifactUploadStatus start(byte[] content, String sha256) throws IOException {
+        return service.start(new ArtifactUploadRequest("Java", "17.0.8", "JAVA", "jdk-17.0.8.tar.gz",
+                (long) content.length, CHUNK, sha256));
+    }
+
+    private ArtifactUploadStatus send(String uploadId, int index, byte[] content) throws IOException {
+        int offset = index * CHUNK;
+        int length = Math.min(CHUNK, content.length - offset);
+        return service.writeChunk(uploadId, index, new ByteArrayInputStream(content, offset, length));
+    }
+
+    private void assertStored(byte[] content, SoftwareArtifact artifact) throws IOException {
+        String sha256 = Hashes.toHex(Hashes.sha256().digest(content));
+        assertEquals(sha256, artifact.getSha256());
+        assertArrayEquals(content, Files.readAllBytes(store.blobPath(sha256)));
+        verify(artifactService).record(eq("Java"), eq("17.0.8"), eq("JAVA"), eq("jdk-17.0.8.tar.gz"), any());
+    }
+
+    private Object upload(String uploadId) {
+        Map<?, ?> uploads = (Map<?, ?>) ReflectionTestUtils.getField(service, "uploads");
+        return uploads.get(uploadId);
+    }
+
+    private int hashedChunks(String uploadId) {
+        return (Integer) ReflectionTestUtils.getField(upload(uploadId), "hashedChunks");
+    }
+
+    private long incomingFiles() throws IOException {
+        try (Stream<Path> files = Files.list(storeDir.resolve(".blobs").resolve("incoming"))) {
+            return files.count();
+        }
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+}
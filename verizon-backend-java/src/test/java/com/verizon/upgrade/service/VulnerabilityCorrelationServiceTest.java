@@ -0,0 +1,222 @@
+package com.verizon.upgrade.service;
+
+import com.verizon.upgrade.service.VulnerabilityCorrelationService.ComponentEntry;
+import com.verizon.upgrade.service.VulnerabilityCorrelationService.InventoryIndex;
+import com.verizon.upgrade.service.VulnerabilityCorrelationService.Pass;
+import com.verizon.upgrade.service.VulnerabilityCorrelationService.ServerEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Matching and resolution against an in-memory inventory index, without a
+ * database.
+ */
+class VulnerabilityCorrelationServiceTest {
+
+    private InventoryIndex index;
+    private long nextFindingId;
+
+    // web01.corp.example.com, 10.0.0.1: Apache at /apps/opt/mw/apache, Java at /apps/opt/mw/java
+    private ServerEntry web01;
+    private ComponentEntry web01Apache;
+    private ComponentEntry web01Java;
+    // app02, 10.0.0.2: two Java installs, no Apache
+    private ServerEntry app02;
+    private ComponentEntry app02JavaA;
+    private ComponentEntry app02JavaB;
+
+    @BeforeEach
+    void inventory() {
+        index = new InventoryIndex();
+        web01 = server(1, "web01.corp.example.com", "10.0.0.1");
+        web01Apache = component(web01, 11, "Apache", "/apps/opt/mw/apache/", "2.4.58", "2.4.58", "Up to Date");
+        web01Java = component(web01, 12, "Java", "/apps/opt/mw/java", "17.0.8", "17.0.8", "Up to Date");
+        app02 = server(2, "APP02", "10.0.0.2");
+        app02JavaA = component(app02, 21, "Java", "/apps/opt/mw/java11", "11.0.20", "11.0.20", "Up to Date");
+        app02JavaB = component(app02, 22, "Java", "/apps/opt/mw/java17", "17.0.8", "17.0.8", "Up to Date");
+    }
+
+    @Test
+    void matchesHostnameIgnoringCaseAndWhitespace() {
+        Pass pass = new Pass(index);
+        finding(pass, "  WEB01.corp.example.com ", "", "/apps/opt/mw/apache/bin", "Apache");
+        assertEquals(1, pass.byHostname);
+        assertEquals(1, web01Apache.findings);
+        assertTrue(web01.scanned);
+    }
+
+    @Test
+    void matchesShortNameEitherWay() {
+        Pass pass = new Pass(index);
+        // Inventory has the FQDN, scan reports the short name
+        finding(pass, "web01", "", "/apps/opt/mw/apache", "Apache");
+        // Inventory has the short name, scan reports a FQDN
+        finding(pass, "app02.corp.example.com", "", "/apps/opt/mw/java11/jre", "Java");
+        assertEquals(2, pass.byHostname);
+        assertEquals(1, web01Apache.findings);
+        assertEquals(1, app02JavaA.findings);
+    }
+
+    @Test
+    void fallsBackToIpAndSamplesUnmatchedHosts() {
+        Pass pass = new Pass(index);
+        finding(pass, "unknown-host", "10.0.0.2", "/apps/opt/mw/java17", "Java");
+        finding(pass, "ghost", "10.9.9.9", "/apps/opt/mw/java", "Java");
+        finding(pass, "", "10.9.9.8", "/apps/opt/mw/java", "Java");
+        assertEquals(0, pass.byHostname);
+        assertEquals(1, pass.byIp);
+        assertEquals(1, app02JavaB.findings);
+        assertEquals(List.of("ghost", "10.9.9.8"), List.copyOf(pass.unmatchedHosts));
+    }
+
+    @Test
+    void matchesTheComponentInstalledAboveTheDirectory() {
+        Pass pass = new Pass(index);
+        finding(pass, "app02", "", "/apps/opt/mw/java17/lib/security/", "Java");
+        assertEquals(0, app02JavaA.findings);
+        assertEquals(1, app02JavaB.findings);
+        assertArrayEquals(new long[] {1, 2, 22}, pass.links.get(0));
+    }
+
+    @Test
+    void pathPrefixMustEndAtADirectoryBoundary() {
+        Pass pass = new Pass(index);
+        // /apps/opt/mw/java1 is not under /apps/opt/mw/java11, and app02 has two Java components
+        finding(pass, "app02", "", "/apps/opt/mw/java1", "Java");
+        assertEquals(0, app02JavaA.findings + app02JavaB.findings);
+        assertEquals(0, pass.toComponent);
+        // Still linked to the server
+        assertArrayEquals(new long[] {1, 2, 0}, pass.links.get(0));
+    }
+
+    @Test
+    void fallsBackToTheOnlyComponentOfTheType() {
+        Pass pass = new Pass(index);
+        finding(pass, "web01", "", "/somewhere/else", "apache");
+        assertEquals(1, web01Apache.findings);
+        assertEquals(1, pass.toComponent);
+    }
+
+    @Test
+    void onlyChangedLinksAreWritten() {
+        Pass pass = new Pass(index);
+        pass.match(7, "web01", "", "/apps/opt/mw/java", "Java", null, null, 1, 12);
+        pass.match(8, "web01", "", "/apps/opt/mw/java", "Java", null, null, 1, 11);
+        assertEquals(1, pass.links.size());
+        assertArrayEquals(new long[] {8, 1, 12}, pass.links.get(0));
+    }
+
+    @Test
+    void sharedHostnameFeedsEveryServer() {
+        ServerEntry twin = server(3, "web01.corp.example.com", "10.0.0.3");
+        ComponentEntry twinApache = component(twin, 31, "Apache", "/apps/opt/mw/apache", "2.4.58", "2.4.58",
+                "Up to Date");
+        Pass pass = new Pass(index);
+        finding(pass, "web01.corp.example.com", "", "/apps/opt/mw/apache", "Apache");
+        assertEquals(1, web01Apache.findings);
+        assertEquals(1, twinApache.findings);
+        assertTrue(twin.scanned);
+        // Linked to the first match
+        assertArrayEquals(new long[] {1, 1, 11}, pass.links.get(0));
+    }
+
+    @Test
+    void findingsMakeTheComponentVulnerableAndPickTheTarget() {
+        ComponentEntry c = new ComponentEntry(1, "Apache", "Apache", "3 Critical", 3, "2.4.58", "2.4.58",
+                "Up to Date");
+        c.add("2.4.62", "2.4.60");
+        c.add("", "2.4.65");
+        assertTrue(c.resolve());
+        assertEquals("Vulnerable", c.newStatus);
+        // The highest repository version the findings call for wins over a higher fix version
+        assertEquals("2.4.62", c.newTarget);
+        assertEquals("2 (2 Critical)", c.newCount);
+        assertEquals(2, c.newCritical);
+    }
+
+    @Test
+    void fixVersionIsTheTargetWhenTheRepositoryHasNone() {
+        ComponentEntry c = new ComponentEntry(1, "Java", "Java", "0", 0, "17.0.8", "17.0.8", "Up to Date");
+        c.add("", "17.0.10");
+        c.resolve();
+        assertEquals("17.0.10", c.newTarget);
+        assertEquals("1", c.newCount);
+        assertEquals(0, c.newCritical);
+    }
+
+    @Test
+    void unknownCriticalsStayUnknown() {
+        ComponentEntry c = new ComponentEntry(1, "Java", "Java", null, null, "17.0.8", "17.0.8", "Outdated");
+        c.add("17.0.10", "17.0.10");
+        c.resolve();
+        assertEquals("1", c.newCount);
+        assertNull(c.newCritical);
+    }
+
+    @Test
+    void clearedComponentStillBehindItsTargetIsOutdated() {
+        ComponentEntry c = new ComponentEntry(1, "Java", "Java", "2 Critical", 2, "11.0.12", "11.0.21",
+                "Vulnerable");
+        assertTrue(c.resolve());
+        assertEquals("Outdated", c.newStatus);
+        assertEquals("0", c.newCount);
+        assertEquals(0, c.newCritical);
+    }
+
+    @Test
+    void clearedComponentAtItsTargetIsUpToDate() {
+        ComponentEntry c = new ComponentEntry(1, "Java", "Java", "2 Critical", 2, "1.8.0_381", "8u381",
+                "Vulnerable");
+        c.resolve();
+        assertEquals("Up to Date", c.newStatus);
+    }
+
+    @Test
+    void clearedComponentKeepsAStatusItDoesNotDerive() {
+        ComponentEntry c = new ComponentEntry(1, "Java", "Java", "1", 0, "11.0.12", "11.0.21", "Decommissioned");
+        c.resolve();
+        assertEquals("Decommissioned", c.newStatus);
+    }
+
+    @Test
+    void unchangedComponentIsNotWritten() {
+        ComponentEntry c = new ComponentEntry(1, "Java", "Java", "0", 0, "17.0.8", "17.0.8", "Up to Date");
+        assertFalse(c.resolve());
+    }
+
+    @Test
+    void serverStatusFollowsItsComponents() {
+        Pass pass = new Pass(index);
+        finding(pass, "web01", "", "/apps/opt/mw/java", "Java");
+        web01.components.forEach(ComponentEntry::resolve);
+        assertTrue(web01.resolve());
+        assertEquals("Vulnerable", web01.newStatus);
+
+        app02JavaA.resolve();
+        app02JavaB.resolve();
+        app02.resolve();
+        assertEquals("Up to Date", app02.newStatus);
+    }
+
+    private ServerEntry server(long id, String hostname, String ip) {
+        ServerEntry server = new ServerEntry(id, "Up to Date");
+        index.addServer(server, hostname, ip);
+        return server;
+    }
+
+    private ComponentEntry component(ServerEntry server, long id, String type, String installPath,
+            String currentVersion, String targetVersion, String status) {
+        ComponentEntry component = new ComponentEntry(id, type, type, "0", 0, currentVersion, targetVersion,
+                status);
+        index.addComponent(server, component, installPath);
+        return component;
+    }
+
+    private void finding(Pass pass, String hostname, String ip, String directory, String software) {
+        pass.match(++nextFindingId, hostname, ip, directory, software, null, null, 0, 0);
+    }
+}
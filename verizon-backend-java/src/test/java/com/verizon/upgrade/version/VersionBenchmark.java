@@ -0,0 +1,117 @@
+package com.verizon.upgrade.version;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link VersionCatalog} against the string sort and linear nearest-version
+ * scan it replaced, which are kept here as the baseline. Not run by the test
+ * phase; run it with
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main VersionBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionBenchmark {
+
+    // Lookups per invocation, as one scan resolves many findings against the same catalog
+    private static final int LOOKUPS = 256;
+
+    @Param({"10", "100", "1000"})
+    int versions;
+
+    private List<String> available;
+    private List<String> fixes;
+    private List<String> sortedStrings;
+    private VersionCatalog catalog;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        available = new ArrayList<>();
+        for (int i = 0; i < versions; i++) {
+            switch (i % 3) {
+                case 0:
+                    available.add("2.4." + i);
+                    break;
+                case 1:
+                    available.add("1.8.0_" + i);
+                    break;
+                default:
+                    available.add("17.0." + i);
+            }
+        }
+        fixes = new ArrayList<>();
+        for (int i = 0; i < LOOKUPS; i++) {
+            int n = random.nextInt(versions + 10);
+            fixes.add(n % 3 == 0 ? "2.4." + n : n % 3 == 1 ? "8u" + n : "17.0." + n);
+        }
+        sortedStrings = sortStrings(available);
+        catalog = new VersionCatalog(available);
+    }
+
+    @Benchmark
+    public List<String> buildStringSort() {
+        return sortStrings(available);
+    }
+
+    @Benchmark
+    public VersionCatalog buildCatalog() {
+        return new VersionCatalog(available);
+    }
+
+    @Benchmark
+    public void resolveStringScan(Blackhole bh) {
+        for (String fix : fixes)
+            bh.consume(findNearestVersion(sortedStrings, fix));
+    }
+
+    @Benchmark
+    public void resolveCatalog(Blackhole bh) {
+        for (String fix : fixes)
+            bh.consume(catalog.resolve(fix));
+    }
+
+    // ArtifactVersionIndex before Version: lexical order, newest first
+    private static List<String> sortStrings(List<String> versions) {
+        List<String> sorted = new ArrayList<>(versions);
+        sorted.sort(Comparator.reverseOrder());
+        return sorted;
+    }
+
+    // VulnerabilityService before VersionCatalog
+    private static String findNearestVersion(List<String> available, String target) {
+        if (available == null || available.isEmpty())
+            return "";
+        if (target == null || target.isEmpty())
+            return available.get(0);
+
+        // Exact match
+        if (available.contains(target))
+            return target;
+
+        // Try to find same major version
+        String major = target.split("\\.")[0];
+        for (String v : available) {
+            String vMajor = v.split("\\.")[0];
+            if (vMajor.equals(major))
+                return v;
+        }
+
+        // Return latest available as fallback
+        return available.get(0);
+    }
+}
@@ -0,0 +1,41 @@
+package com.verizon.upgrade.version;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionCatalogTest {
+
+    @Test
+    void listsNewestFirstWithoutDuplicatesOrBlanks() {
+        VersionCatalog catalog = new VersionCatalog(Arrays.asList("2.4.58", "2.4.65", null, " ", "2.4.9", "2.4.58.0"));
+        assertEquals(List.of("2.4.65", "2.4.58", "2.4.9"), catalog.newestFirst());
+        assertFalse(catalog.isEmpty());
+        assertTrue(VersionCatalog.EMPTY.isEmpty());
+    }
+
+    @Test
+    void resolvesLowestVersionAtOrAboveTheFix() {
+        VersionCatalog catalog = new VersionCatalog(List.of("2.4.58", "2.4.62", "2.4.65"));
+        assertEquals("2.4.58", catalog.resolve("2.4.58"));
+        assertEquals("2.4.62", catalog.resolve("2.4.59"));
+        assertEquals("2.4.65", catalog.resolve("2.4.63"));
+        assertEquals("", catalog.resolve("2.4.66"));
+        assertEquals("2.4.65", catalog.resolve("unknown"));
+        assertEquals("", VersionCatalog.EMPTY.resolve("2.4.58"));
+    }
+
+    @Test
+    void resolvesAcrossJavaSpellings() {
+        VersionCatalog legacy = new VersionCatalog(List.of("1.8.0_202", "1.8.0_221", "11.0.21"));
+        assertEquals("1.8.0_221", legacy.resolve("8u211"));
+        assertEquals("1.8.0_202", legacy.resolve("8u202"));
+
+        VersionCatalog modern = new VersionCatalog(List.of("8u202", "8u221", "11.0.21"));
+        assertEquals("8u221", modern.resolve("1.8.0_211"));
+        assertEquals("11.0.21", modern.resolve("1.8.0_231"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.verizon.upgrade.version;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionTest {
+
+    @ParameterizedTest(name = "{0} < {1}")
+    @CsvSource({
+            "2.4.9, 2.4.10",
+            "2.4.58, 2.4.65",
+            "2.4, 2.4.1",
+            "11.0.21, 17.0.1",
+            "1.1.1, 1.1.1w",
+            "1.1.1v, 1.1.1w",
+            "2.4.0-rc1, 2.4.0",
+            "2.4.0-rc1, 2.4.0-rc2",
+            "21-ea, 21",
+            "2.4.0-alpha, 2.4.0-beta",
+            "8u202, 8u211",
+            "1.8.0_202, 1.8.0_211",
+            "1.8.0_211, 11.0.2",
+            "8u211, 11.0.2",
+            "1.7.0_80, 8u20",
+            "jdk-17.0.8, jdk-17.0.10",
+            "v2.4.57, 2.4.58",
+    })
+    void ordersLowerBeforeHigher(String lower, String higher) {
+        assertTrue(Version.parse(lower).compareTo(Version.parse(higher)) < 0);
+        assertTrue(Version.parse(higher).compareTo(Version.parse(lower)) > 0);
+    }
+
+    @ParameterizedTest(name = "{0} == {1}")
+    @CsvSource({
+            "2.4, 2.4.0",
+            "2.4.0, 2.4.0.0",
+            "17.0.8-ga, 17.0.8",
+            "1.8.0_211, 8u211",
+            "1.8.0_211, 8.0.211",
+            "jdk1.8.0_211, 8u211",
+    })
+    void treatsEquivalentSpellingsAsEqual(String a, String b) {
+        Version va = Version.parse(a);
+        Version vb = Version.parse(b);
+        assertEquals(0, va.compareTo(vb));
+        assertEquals(va, vb);
+        assertEquals(va.hashCode(), vb.hashCode());
+    }
+
+    @Test
+    void keepsLegacyPrefixWithoutUpdateNumber() {
+        // Only the "_" update form marks a 1.x Java version; OpenSSL 1.1.1 must stay 1.1.1
+        assertTrue(Version.parse("1.1.1w").compareTo(Version.parse("3.0.0")) < 0);
+        assertTrue(Version.parse("1.8.0").compareTo(Version.parse("2.0")) < 0);
+    }
+
+    @Test
+    void sortsMixedList() {
+        List<String> raw = List.of("11.0.21", "1.8.0_211", "2.4.0", "8u202", "17.0.1", "1.8.0_181", "21-ea");
+        List<Version> versions = raw.stream().map(Version::parse).collect(Collectors.toCollection(ArrayList::new));
+        Collections.sort(versions);
+        assertEquals(List.of("2.4.0", "1.8.0_181", "8u202", "1.8.0_211", "11.0.21", "17.0.1", "21-ea"),
+                versions.stream().map(Version::getRaw).collect(Collectors.toList()));
+    }
+
+    @Test
+    void reportsValidity() {
+        assertTrue(Version.parse("2.4.58").isValid());
+        assertFalse(Version.parse("latest").isValid());
+        assertFalse(Version.parse("").isValid());
+        assertFalse(Version.parse(null).isValid());
+    }
+
+    @Test
+    void saturatesHugeComponents() {
+        // Overlong components clamp instead of overflowing to negative
+        assertTrue(Version.parse("99999999999999.1").compareTo(Version.parse("20240101.1")) > 0);
+    }
+}